@@ -0,0 +1,214 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.benchmarks;
+
+import gg.solarmc.loader.impl.ScaledDecimals;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares holding online balances as {@code BigDecimal} against scaled longs, over the
+ * handling of a withdrawal or deposit result. Each operation starts from the new balance
+ * as the driver yields it, updates the online balance and the leaderboard index key, and
+ * ends with the public balance the caller reads back. <br>
+ * <br>
+ * The driver parses a NUMERIC(15, 3) value from its text form, which is repeated here.
+ * {@link ScaledBalance} mirrors {@code OnlineCredits}, and {@link DecimalBalance} mirrors it
+ * as it was before balances were scaled. Both count deferred deposits, which the accumulator
+ * holds as scaled longs. <br>
+ * <br>
+ * Run {@link #main(String[])} to include the allocation profile, or pass {@code -prof gc}
+ * to the benchmarks jar.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceRepresentationBenchmark {
+
+	// Successive new balances differ, as after successful operations
+	private static final String[] CHANGED_BALANCES = {"1250.375", "1209.875"};
+	private static final String UNCHANGED_BALANCE = "1250.375";
+	private static final long PENDING_DEPOSITS = ScaledDecimals.toScaled(new BigDecimal("2.500"));
+
+	private DecimalBalance decimalBalance;
+	private ScaledBalance scaledBalance;
+	private int operation;
+
+	/**
+	 * Mirrors the online balance as a decimal
+	 */
+	private static final class DecimalBalance {
+
+		private volatile BigDecimal currentBalance;
+		private volatile long pendingDeposits;
+		private volatile BigDecimal indexKey;
+
+		DecimalBalance(BigDecimal currentBalance) {
+			this.currentBalance = currentBalance;
+		}
+
+		synchronized void updateBalance(BigDecimal newBalance) {
+			currentBalance = newBalance;
+		}
+
+		void updateIndex(BigDecimal newBalance) {
+			indexKey = newBalance;
+		}
+
+		BigDecimal currentBalance() {
+			long pendingDeposits = this.pendingDeposits;
+			BigDecimal balance = currentBalance;
+			return (pendingDeposits == 0L) ? balance : balance.add(ScaledDecimals.toDecimal(pendingDeposits));
+		}
+	}
+
+	/**
+	 * Mirrors the online balance as a scaled long
+	 */
+	private static final class ScaledBalance {
+
+		private volatile long currentBalance;
+		private volatile long pendingDeposits;
+		private volatile ReadBalance lastRead;
+		private volatile long indexKey;
+
+		private record ReadBalance(long scaled, BigDecimal decimal) { }
+
+		ScaledBalance(BigDecimal currentBalance) {
+			this.currentBalance = ScaledDecimals.toScaled(currentBalance);
+		}
+
+		synchronized void updateBalance(BigDecimal newBalance) {
+			currentBalance = ScaledDecimals.toScaled(newBalance);
+		}
+
+		void updateIndex(BigDecimal newBalance) {
+			indexKey = ScaledDecimals.toScaled(newBalance);
+		}
+
+		BigDecimal currentBalance() {
+			long scaled = currentBalance + pendingDeposits;
+			ReadBalance lastRead = this.lastRead;
+			if (lastRead != null && lastRead.scaled() == scaled) {
+				return lastRead.decimal();
+			}
+			BigDecimal decimal = ScaledDecimals.toDecimal(scaled);
+			this.lastRead = new ReadBalance(scaled, decimal);
+			return decimal;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		decimalBalance = new DecimalBalance(new BigDecimal(UNCHANGED_BALANCE));
+		scaledBalance = new ScaledBalance(new BigDecimal(UNCHANGED_BALANCE));
+	}
+
+	private String changedBalance() {
+		operation ^= 1;
+		return CHANGED_BALANCES[operation];
+	}
+
+	private void handleDecimal(String driverValue, Blackhole blackhole) {
+		BigDecimal newBalance = new BigDecimal(driverValue);
+		decimalBalance.updateBalance(newBalance);
+		decimalBalance.updateIndex(newBalance);
+		// The result carries the driver's value
+		blackhole.consume(newBalance);
+		blackhole.consume(decimalBalance.currentBalance());
+	}
+
+	private void handleScaled(String driverValue, Blackhole blackhole) {
+		BigDecimal newBalance = new BigDecimal(driverValue);
+		scaledBalance.updateBalance(newBalance);
+		scaledBalance.updateIndex(newBalance);
+		blackhole.consume(newBalance);
+		blackhole.consume(scaledBalance.currentBalance());
+	}
+
+	@Benchmark
+	public void decimalWithdrawal(Blackhole blackhole) {
+		handleDecimal(changedBalance(), blackhole);
+	}
+
+	@Benchmark
+	public void scaledWithdrawal(Blackhole blackhole) {
+		handleScaled(changedBalance(), blackhole);
+	}
+
+	/**
+	 * A failed withdrawal, which leaves the balance as it was
+	 *
+	 * @param blackhole the blackhole
+	 */
+	@Benchmark
+	public void decimalFailedWithdrawal(Blackhole blackhole) {
+		handleDecimal(UNCHANGED_BALANCE, blackhole);
+	}
+
+	@Benchmark
+	public void scaledFailedWithdrawal(Blackhole blackhole) {
+		handleScaled(UNCHANGED_BALANCE, blackhole);
+	}
+
+	/**
+	 * A deposit while deferred deposits are pending, which the read balance includes
+	 *
+	 * @param blackhole the blackhole
+	 */
+	@Benchmark
+	public void decimalDepositWithPending(Blackhole blackhole) {
+		decimalBalance.pendingDeposits = PENDING_DEPOSITS;
+		handleDecimal(changedBalance(), blackhole);
+	}
+
+	@Benchmark
+	public void scaledDepositWithPending(Blackhole blackhole) {
+		scaledBalance.pendingDeposits = PENDING_DEPOSITS;
+		handleScaled(changedBalance(), blackhole);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(BalanceRepresentationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the withdraw procedure with the conditional update under concurrent withdrawals,
+ * against a local MariaDB whose schema has been migrated. <br>
+ * <br>
+ * The database is given by the system properties {@code benchmark.jdbcUrl},
+ * {@code benchmark.user} and {@code benchmark.password}. Each withdrawal is its own transaction.
+ * With a single account, every thread contends on the same row.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class WithdrawBenchmark {
+
+	private static final BigDecimal WITHDRAW_AMOUNT = new BigDecimal("0.001");
+
+	private static Connection connect() throws SQLException {
+		return DriverManager.getConnection(
+				System.getProperty("benchmark.jdbcUrl", "jdbc:mariadb://localhost:3306/solar_benchmark"),
+				System.getProperty("benchmark.user", "root"),
+				System.getProperty("benchmark.password", ""));
+	}
+
+	@State(Scope.Benchmark)
+	public static class Accounts {
+
+		@Param({"1", "64"})
+		public int accountCount;
+
+		int[] userIds;
+
+		@Setup(Level.Trial)
+		public void createAccounts() throws SQLException {
+			userIds = new int[accountCount];
+			try (Connection connection = connect();
+				 PreparedStatement insertUser = connection.prepareStatement(
+						 "INSERT INTO user_ids (uuid) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+				 PreparedStatement insertCredits = connection.prepareStatement(
+						 "INSERT INTO credits (user_id, balance) VALUES (?, 999999999999)")) {
+				for (int n = 0; n < accountCount; n++) {
+					UUID uuid = UUID.randomUUID();
+					insertUser.setBytes(1, ByteBuffer.allocate(16)
+							.putLong(uuid.getMostSignificantBits())
+							.putLong(uuid.getLeastSignificantBits()).array());
+					insertUser.executeUpdate();
+					try (ResultSet generatedKeys = insertUser.getGeneratedKeys()) {
+						generatedKeys.next();
+						userIds[n] = generatedKeys.getInt(1);
+					}
+					insertCredits.setInt(1, userIds[n]);
+					insertCredits.executeUpdate();
+				}
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void deleteAccounts() throws SQLException {
+			try (Connection connection = connect();
+				 PreparedStatement deleteUser = connection.prepareStatement("DELETE FROM user_ids WHERE id = ?")) {
+				for (int userId : userIds) {
+					deleteUser.setInt(1, userId);
+					deleteUser.executeUpdate();
+				}
+			}
+		}
+
+		int randomUserId() {
+			return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Session {
+
+		Connection connection;
+		CallableStatement withdrawProcedure;
+		PreparedStatement conditionalUpdate;
+		PreparedStatement selectBalance;
+
+		@Setup(Level.Trial)
+		public void open() throws SQLException {
+			connection = connect();
+			connection.setAutoCommit(false);
+			withdrawProcedure = connection.prepareCall("{CALL credits_withdraw_balance(?, ?, ?, ?)}");
+			withdrawProcedure.registerOutParameter(3, Types.DECIMAL);
+			withdrawProcedure.registerOutParameter(4, Types.BOOLEAN);
+			conditionalUpdate = connection.prepareStatement(
+					"UPDATE credits SET balance = balance - ? WHERE user_id = ? AND balance >= ?");
+			selectBalance = connection.prepareStatement("SELECT balance FROM credits WHERE user_id = ?");
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws SQLException {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	public BigDecimal routine(Accounts accounts, Session session) throws SQLException {
+		CallableStatement withdrawProcedure = session.withdrawProcedure;
+		withdrawProcedure.setInt(1, accounts.randomUserId());
+		withdrawProcedure.setBigDecimal(2, WITHDRAW_AMOUNT);
+		withdrawProcedure.execute();
+		BigDecimal newBalance = withdrawProcedure.getBigDecimal(3);
+		session.connection.commit();
+		return newBalance;
+	}
+
+	@Benchmark
+	public BigDecimal conditionalUpdate(Accounts accounts, Session session) throws SQLException {
+		int userId = accounts.randomUserId();
+		PreparedStatement conditionalUpdate = session.conditionalUpdate;
+		conditionalUpdate.setBigDecimal(1, WITHDRAW_AMOUNT);
+		conditionalUpdate.setInt(2, userId);
+		conditionalUpdate.setBigDecimal(3, WITHDRAW_AMOUNT);
+		conditionalUpdate.executeUpdate();
+		PreparedStatement selectBalance = session.selectBalance;
+		selectBalance.setInt(1, userId);
+		BigDecimal newBalance;
+		try (ResultSet resultSet = selectBalance.executeQuery()) {
+			resultSet.next();
+			newBalance = resultSet.getBigDecimal(1);
+		}
+		session.connection.commit();
+		return newBalance;
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding a full kit of 41 slots (36 inventory slots, 4 armour slots
+ * and the off hand) through {@link KitContentsCodec}, with an {@link ItemSerializer} working on
+ * streams against a {@link ByteArrayItemSerializer} receiving regions of the packed contents.
+ * Both serializers write the same format, so only the path through the codec differs. <br>
+ * <br>
+ * Lives in the kitpvp package, since the codec is package-private. Run {@link #main(String[])}
+ * to include the allocation profile, or pass {@code -prof gc} to the benchmarks jar.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KitContentsCodecBenchmark {
+
+	private static final int SLOTS = 41;
+
+	@Param({"false", "true"})
+	public boolean compress;
+
+	private Set<ItemInSlot> contents;
+	private KitContentsCodec streamCodec;
+	private KitContentsCodec regionCodec;
+	private byte[] packed;
+
+	@Setup
+	public void setup() {
+		contents = new HashSet<>();
+		for (int slot = 0; slot < SLOTS; slot++) {
+			// Typical item metadata is a few hundred bytes of enchantments and lore
+			byte[] metadata = new byte[192 + slot * 4];
+			Arrays.fill(metadata, (byte) slot);
+			contents.add(new ItemInSlot(slot,
+					new SampleItem("DIAMOND_SWORD", "Sword of slot " + slot, 1 + slot % 64, metadata)));
+		}
+		streamCodec = new KitContentsCodec(new StreamSerializer(), compress);
+		regionCodec = new KitContentsCodec(new RegionSerializer(), compress);
+		packed = streamCodec.encode(contents);
+		if (!regionCodec.decode(packed).equals(streamCodec.decode(packed))) {
+			throw new IllegalStateException("Serializers disagree");
+		}
+	}
+
+	@Benchmark
+	public byte[] encodeWithStreams() {
+		return streamCodec.encode(contents);
+	}
+
+	@Benchmark
+	public byte[] encodeWithRegions() {
+		return regionCodec.encode(contents);
+	}
+
+	@Benchmark
+	public Set<ItemInSlot> decodeWithStreams() {
+		return streamCodec.decode(packed);
+	}
+
+	@Benchmark
+	public Set<ItemInSlot> decodeWithRegions() {
+		return regionCodec.decode(packed);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(KitContentsCodecBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+	record SampleItem(String material, String displayName, int amount, byte[] metadata) implements KitItem {
+
+		@Override
+		public String getMaterial() {
+			return material;
+		}
+
+		@Override
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		@Override
+		public int getAmount() {
+			return amount;
+		}
+
+		@Override
+		public Object getItem() {
+			return this;
+		}
+
+		@Override
+		public <T> T getItem(Class<T> type) {
+			return type.cast(this);
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof SampleItem other && material.equals(other.material)
+					&& displayName.equals(other.displayName) && amount == other.amount
+					&& Arrays.equals(metadata, other.metadata);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * material.hashCode() + displayName.hashCode()) + amount;
+		}
+	}
+
+	/**
+	 * Writes the item fields through data streams. Strings are length-prefixed UTF-8
+	 */
+	static final class StreamSerializer implements ItemSerializer {
+
+		private static void writeString(DataOutputStream output, String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+
+		private static String readString(DataInputStream input) throws IOException {
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void serialize(KitItem item, OutputStream output) throws IOException {
+			SampleItem sample = (SampleItem) item;
+			DataOutputStream dataOutput = new DataOutputStream(output);
+			writeString(dataOutput, sample.material());
+			writeString(dataOutput, sample.displayName());
+			dataOutput.writeInt(sample.amount());
+			dataOutput.writeInt(sample.metadata().length);
+			dataOutput.write(sample.metadata());
+			dataOutput.flush();
+		}
+
+		@Override
+		public KitItem deserialize(InputStream input) throws IOException {
+			DataInputStream dataInput = new DataInputStream(input);
+			String material = readString(dataInput);
+			String displayName = readString(dataInput);
+			int amount = dataInput.readInt();
+			byte[] metadata = new byte[dataInput.readInt()];
+			dataInput.readFully(metadata);
+			return new SampleItem(material, displayName, amount, metadata);
+		}
+	}
+
+	/**
+	 * Writes the same format as {@link StreamSerializer}, directly on byte arrays
+	 */
+	static final class RegionSerializer implements ByteArrayItemSerializer {
+
+		private static String readString(ByteBuffer buffer) {
+			int length = buffer.getInt();
+			String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+
+		@Override
+		public byte[] serialize(KitItem item) {
+			SampleItem sample = (SampleItem) item;
+			byte[] material = sample.material().getBytes(StandardCharsets.UTF_8);
+			byte[] displayName = sample.displayName().getBytes(StandardCharsets.UTF_8);
+			byte[] metadata = sample.metadata();
+			return ByteBuffer.allocate(4 * Integer.BYTES + material.length + displayName.length + metadata.length)
+					.putInt(material.length).put(material)
+					.putInt(displayName.length).put(displayName)
+					.putInt(sample.amount())
+					.putInt(metadata.length).put(metadata)
+					.array();
+		}
+
+		@Override
+		public KitItem deserialize(byte[] data, int offset, int length) {
+			ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+			String material = readString(buffer);
+			String displayName = readString(buffer);
+			int amount = buffer.getInt();
+			byte[] metadata = new byte[buffer.getInt()];
+			buffer.get(metadata);
+			return new SampleItem(material, displayName, amount, metadata);
+		}
+	}
+}
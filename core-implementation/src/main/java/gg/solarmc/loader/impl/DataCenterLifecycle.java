@@ -32,11 +32,14 @@ import java.util.concurrent.TimeUnit;
 
 class DataCenterLifecycle implements AutoCloseable {
 
+	private final TransactionSource transactionSource;
 	private final ExecutorService executor;
 	private final HikariDataSource dataSource;
 	private final Set<DataGroup<?, ?, ?>> groups;
 
-	DataCenterLifecycle(ExecutorService executor, HikariDataSource dataSource, Set<DataGroup<?, ?, ?>> groups) {
+	DataCenterLifecycle(TransactionSource transactionSource, ExecutorService executor,
+						HikariDataSource dataSource, Set<DataGroup<?, ?, ?>> groups) {
+		this.transactionSource = transactionSource;
 		this.executor = executor;
 		this.dataSource = dataSource;
 		this.groups = Set.copyOf(groups);
@@ -49,6 +52,8 @@ class DataCenterLifecycle implements AutoCloseable {
 	@Override
 	public void close() throws Exception {
 		Set<Exception> exceptions = new HashSet<>();
+		// Refuse new transactions, then let those already begun finish
+		transactionSource.beginClosing();
 		try {
 			executor.shutdown();
 			boolean awaited = executor.awaitTermination(10L, TimeUnit.SECONDS);
@@ -61,11 +66,7 @@ class DataCenterLifecycle implements AutoCloseable {
 		} catch (RuntimeException ex) {
 			exceptions.add(ex);
 		}
-		try {
-			dataSource.close();
-		} catch (RuntimeException ex) {
-			exceptions.add(ex);
-		}
+		// Managers write their remaining data using transactions run on this thread
 		for (DataGroup<?, ?, ?> group : groups) {
 			try {
 				group.manager().close();
@@ -73,6 +74,11 @@ class DataCenterLifecycle implements AutoCloseable {
 				exceptions.add(ex);
 			}
 		}
+		try {
+			dataSource.close();
+		} catch (RuntimeException ex) {
+			exceptions.add(ex);
+		}
 		if (!exceptions.isEmpty()) {
 			// Throw the first exception. Add the rest of the exceptions as suppressed exceptions
 			Iterator<Exception> exceptionIterator = exceptions.iterator();
@@ -109,7 +109,7 @@ public class IcarusLauncher {
 
 		Map<DataKey<?, ?, ?>, DataGroup<?, ?, ?>> groupsMap = transactionSource.transact((transaction) -> {
 			return new DataGroupLoader(
-					new DataKeyInitializationContextImpl(omnibus, futuresFactory, folder, transaction)
+					new DataKeyInitializationContextImpl(omnibus, futuresFactory, folder, transaction, transactionSource)
 			).loadGroups();
 		}).join();
 		Set<DataGroup<?, ?, ?>> groupsSet = Set.copyOf(groupsMap.values());
@@ -118,7 +118,7 @@ public class IcarusLauncher {
 				transactionSource,
 				new DataManagementCenter(groupsMap),
 				groupsSet,
-				new DataCenterLifecycle(executor, dataSource, groupsSet));
+				new DataCenterLifecycle(transactionSource, executor, dataSource, groupsSet));
 	}
 
 }
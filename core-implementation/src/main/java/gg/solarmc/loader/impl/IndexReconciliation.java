@@ -0,0 +1,91 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reconciliation protocol shared by in-memory indexes which are periodically rebuilt from
+ * a scan of the database. <br>
+ * <br>
+ * While a reconciliation is in progress, the keys updated in the index are noted, so that
+ * those updates take precedence over the possibly older scanned values. Each reconciliation
+ * is identified by a generation. Beginning a reconciliation supersedes any still in progress,
+ * whose results are then discarded. <br>
+ * <br>
+ * Not thread safe. The owning index must guard all calls with the same lock as its updates.
+ *
+ * @param <K> the key type of the index
+ */
+public final class IndexReconciliation<K> {
+
+	private long generation;
+	private Set<K> updatedDuringReconcile;
+
+	/**
+	 * Notes that a key was updated in the index
+	 *
+	 * @param key the key
+	 */
+	public void updated(K key) {
+		if (updatedDuringReconcile != null) {
+			updatedDuringReconcile.add(key);
+		}
+	}
+
+	/**
+	 * Begins a reconciliation, superseding any in progress
+	 *
+	 * @return the generation of the reconciliation
+	 */
+	public long begin() {
+		updatedDuringReconcile = new HashSet<>();
+		return ++generation;
+	}
+
+	/**
+	 * Abandons a reconciliation. Does nothing if it has been superseded
+	 *
+	 * @param generation the generation of the reconciliation
+	 */
+	public void cancel(long generation) {
+		if (generation == this.generation) {
+			updatedDuringReconcile = null;
+		}
+	}
+
+	/**
+	 * Finishes a reconciliation
+	 *
+	 * @param generation the generation of the reconciliation
+	 * @return the keys updated since it began, whose scanned values must be ignored, or null
+	 * if it has been superseded or abandoned and the scanned values must all be discarded
+	 */
+	public Set<K> finish(long generation) {
+		if (generation != this.generation) {
+			return null;
+		}
+		Set<K> updated = updatedDuringReconcile;
+		updatedDuringReconcile = null;
+		return updated;
+	}
+
+}
@@ -56,6 +56,15 @@ public interface LoginHandler {
      */
     OnlineSolarPlayer loginUserNow(Transaction transaction, int userId, UserDetails userDetails);
 
+    /**
+     * Conducts the logout of a user, allowing data loaders to write any state
+     * held in memory for the user
+     *
+     * @param userId the user's ID
+     * @return a future completed once the logout has been conducted
+     */
+    CentralisedFuture<?> logoutUser(int userId);
+
     /**
      * Creates an offline solar player
      *
@@ -20,33 +20,96 @@
 package gg.solarmc.loader.impl;
 
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.TransactionOptions;
 import org.jooq.ConnectionProvider;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
- * Implementation of transaction created from {@code TransactionSource}
+ * Implementation of transaction created from {@code TransactionSource}. <br>
+ * <br>
+ * The connection is not borrowed from the data source until it is first needed, that is,
+ * when the {@link Connection} property is requested or a query is executed through the
+ * {@link DSLContext}. Transactions served entirely from caches never use a connection. The
+ * {@link TransactionOptions} are applied to the connection when it is acquired.
  */
 final class SQLTransaction implements Transaction, AutoCloseable {
 
-    private final Connection connection;
+    private final DataSource dataSource;
+    private final TransactionOptions options;
+    private Connection connection;
+    private int previousIsolation = -1;
+    private boolean readOnly;
+    private DSLContext context;
+    private TransactionMemo memo;
+    private TransactionCallbacks callbacks;
 
-    SQLTransaction(Connection connection) {
-        this.connection = connection;
+    SQLTransaction(DataSource dataSource, TransactionOptions options) {
+        this.dataSource = dataSource;
+        this.options = options;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            Connection connection = dataSource.getConnection();
+            try {
+                if (readOnly) {
+                    connection.setReadOnly(true);
+                }
+                applyOptions(connection);
+            } catch (SQLException ex) {
+                try {
+                    connection.close();
+                } catch (SQLException suppressed) { ex.addSuppressed(suppressed); }
+                throw ex;
+            }
+            this.connection = connection;
+        }
+        return connection;
+    }
+
+    private void applyOptions(Connection connection) throws SQLException {
+        if (options.isolation() == TransactionOptions.Isolation.READ_COMMITTED) {
+            previousIsolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        }
+        if (options.consistentSnapshot()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+        }
+    }
+
+    /**
+     * Whether a connection has been acquired by this transaction
+     *
+     * @return true if a connection was acquired
+     */
+    boolean hasConnection() {
+        return connection != null;
     }
 
     @Override
     public void markReadOnly() {
-        try {
-            connection.setReadOnly(true);
-        } catch (SQLException ex) {
-            throw handler().handle(ex);
+        readOnly = true;
+        if (connection != null) {
+            try {
+                connection.setReadOnly(true);
+            } catch (SQLException ex) {
+                throw handler().handle(ex);
+            }
         }
     }
 
@@ -54,13 +117,26 @@ final class SQLTransaction implements Transaction, AutoCloseable {
     @SuppressWarnings("unchecked")
     public <T> T getProperty(Class<T> propertyClass) {
         if (propertyClass.equals(Connection.class)) {
-            return (T) connection;
+            try {
+                return (T) connection();
+            } catch (SQLException ex) {
+                throw handler().handle(ex);
+            }
         }
         if (propertyClass.equals(DSLContext.class)) {
-            return (T) DSL.using(
-                    new JooqConnectionProvider(),
-                    SQLDialect.MARIADB,
-                    new Settings().withRenderSchema(false));
+            return (T) context();
+        }
+        if (propertyClass.equals(TransactionMemo.class)) {
+            if (memo == null) {
+                memo = new TransactionMemo();
+            }
+            return (T) memo;
+        }
+        if (propertyClass.equals(TransactionCallbacks.class)) {
+            if (callbacks == null) {
+                callbacks = new TransactionCallbacks();
+            }
+            return (T) callbacks;
         }
         if (propertyClass.equals(SQLExceptionHandler.class)) {
             return (T) handler();
@@ -69,13 +145,91 @@ final class SQLTransaction implements Transaction, AutoCloseable {
                 "Transaction implementation SQLTransaction does not provide property of " + propertyClass.getName());
     }
 
+    private DSLContext context() {
+        if (context == null) {
+            context = DSL.using(new DefaultConfiguration()
+                    .set(new JooqConnectionProvider())
+                    .set(SQLDialect.MARIADB)
+                    .set(new Settings().withRenderSchema(false))
+                    .set(new DefaultExecuteListenerProvider(new MemoInvalidation())));
+        }
+        return context;
+    }
+
     private SQLExceptionHandler handler() {
         return new SQLExceptionHandler();
     }
 
+    /**
+     * Commits the transaction, if a connection was acquired
+     *
+     * @throws SQLException if committing failed
+     */
+    void commit() throws SQLException {
+        if (connection != null) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Runs actions registered with {@link TransactionCallbacks} to run before committing.
+     * To be called once the transaction's work is done, before committing
+     *
+     */
+    void runBeforeCommit() {
+        if (callbacks != null) {
+            callbacks.runBeforeCommit();
+        }
+    }
+
+    /**
+     * Runs actions registered with {@link TransactionCallbacks}. To be called after committing.
+     * Failures are logged rather than thrown, since the transaction has already committed
+     *
+     */
+    void runAfterCommit() {
+        if (callbacks != null) {
+            callbacks.runAfterCommit();
+        }
+    }
+
+    /**
+     * Runs rollback actions registered with {@link TransactionCallbacks}. To be called
+     * if the transaction did not commit. Any failure is added as suppressed to the given exception
+     *
+     * @param cause the exception preventing the commit
+     */
+    void runAfterRollback(RuntimeException cause) {
+        if (callbacks != null) {
+            callbacks.runAfterRollback(cause);
+        }
+    }
+
+    /**
+     * Rolls back the transaction, if a connection was acquired. Any failure
+     * is added as suppressed to the given exception
+     *
+     * @param cause the exception causing the rollback
+     */
+    void rollback(RuntimeException cause) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException suppressed) { cause.addSuppressed(suppressed); }
+        }
+    }
+
     @Override
     public void close() throws SQLException {
-        connection.close();
+        Connection connection = this.connection;
+        if (connection != null) {
+            try (connection) {
+                // Restore the isolation level before returning the connection to the pool
+                if (previousIsolation != -1) {
+                    connection.setTransactionIsolation(previousIsolation);
+                }
+            }
+        }
     }
 
     /*
@@ -86,10 +240,24 @@ final class SQLTransaction implements Transaction, AutoCloseable {
 
         @Override
         public Connection acquire() throws DataAccessException {
-            return connection;
+            try {
+                return connection();
+            } catch (SQLException ex) {
+                throw new DataAccessException("Unable to acquire connection", ex);
+            }
         }
 
         @Override
         public void release(Connection connection) throws DataAccessException { }
     }
+
+    private final class MemoInvalidation extends DefaultExecuteListener {
+
+        @Override
+        public void executeEnd(ExecuteContext ctx) {
+            if (memo != null) {
+                memo.afterExecute(ctx);
+            }
+        }
+    }
 }
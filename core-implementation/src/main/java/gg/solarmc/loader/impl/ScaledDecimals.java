@@ -0,0 +1,88 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.impl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Utilities for monetary amounts held as longs scaled by {@link #SCALE}, matching the
+ * {@code NUMERIC(15, 3)} columns used throughout the schema. <br>
+ * <br>
+ * A scaled long is the amount multiplied by 10^3, so that {@code 12.345} is held as {@code 12345}.
+ * Conversion to and from {@code BigDecimal} should happen only at the JDBC boundary and at
+ * the public API, where the {@code BigDecimal} is a view of the scaled value.
+ *
+ */
+public final class ScaledDecimals {
+
+	/**
+	 * The number of decimal places retained
+	 */
+	public static final int SCALE = 3;
+
+	private ScaledDecimals() {}
+
+	/**
+	 * Converts a decimal to a scaled long. Excess decimal places are rounded half-up,
+	 * as the database does when storing into a {@code NUMERIC(15, 3)} column
+	 *
+	 * @param value the decimal value
+	 * @return the scaled long
+	 * @throws ArithmeticException if the value does not fit in a long once scaled
+	 */
+	public static long toScaled(BigDecimal value) {
+		return value.setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE).longValueExact();
+	}
+
+	/**
+	 * Converts a scaled long back to a decimal. The result always has a scale of {@link #SCALE}
+	 *
+	 * @param scaled the scaled long
+	 * @return the decimal value
+	 */
+	public static BigDecimal toDecimal(long scaled) {
+		return BigDecimal.valueOf(scaled, SCALE);
+	}
+
+	/**
+	 * Adds two scaled longs
+	 *
+	 * @param augend the first scaled long
+	 * @param addend the second scaled long
+	 * @return the scaled sum
+	 * @throws ArithmeticException if the sum overflows
+	 */
+	public static long add(long augend, long addend) {
+		return Math.addExact(augend, addend);
+	}
+
+	/**
+	 * Subtracts one scaled long from another
+	 *
+	 * @param minuend the scaled long subtracted from
+	 * @param subtrahend the scaled long to subtract
+	 * @return the scaled difference
+	 * @throws ArithmeticException if the difference overflows
+	 */
+	public static long subtract(long minuend, long subtrahend) {
+		return Math.subtractExact(minuend, subtrahend);
+	}
+}
@@ -23,6 +23,7 @@ import gg.solarmc.loader.DataCenter;
 import gg.solarmc.loader.OnlineSolarPlayer;
 import gg.solarmc.loader.SolarPlayer;
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.TransactionOptions;
 import gg.solarmc.loader.data.DataKey;
 import gg.solarmc.loader.data.DataManager;
 import org.jooq.DSLContext;
@@ -74,6 +75,16 @@ public final class SimpleDataCenter implements DataCenter {
 		return icarus.transactionSource().transact(actor);
 	}
 
+	@Override
+	public CentralisedFuture<?> runTransact(TransactionOptions options, DataCenter.TransactionRunner runner) {
+		return icarus.transactionSource().runTransact(options, runner);
+	}
+
+	@Override
+	public <R> CentralisedFuture<R> transact(TransactionOptions options, DataCenter.TransactionActor<R> actor) {
+		return icarus.transactionSource().transact(options, actor);
+	}
+
 	@Override
 	public <M extends DataManager> M getDataManager(DataKey<?, ?, M> key) {
 		return icarus.dataManagement().getDataManager(key);
@@ -118,7 +118,8 @@ public interface SolarDataConfig {
 		int maxLifetimeMinutes();
 
 		@ConfKey("pool-size")
-		@ConfComments("Connection pool size. More is not always better.")
+		@ConfComments({"Connection pool size. More is not always better.",
+				"This is also the number of threads running transactions; further transactions are queued."})
 		@ConfDefault.DefaultInteger(8)
 		int poolSize();
 
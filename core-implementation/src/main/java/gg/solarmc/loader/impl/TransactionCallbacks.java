@@ -0,0 +1,117 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.impl;
+
+import gg.solarmc.loader.Transaction;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allows actions to be deferred until a transaction is about to commit, has committed or
+ * has rolled back. Obtained as a property of the transaction with {@link Transaction#getProperty(Class)} <br>
+ * <br>
+ * Commit actions are not run if the transaction is rolled back, and vice versa. Actions run
+ * on the thread which completed the transaction, and so should be brief. <br>
+ * <br>
+ * Once the transaction has committed or rolled back, its outcome is settled. Failures of
+ * actions run after commit are logged, and the transaction still yields its value. Failures
+ * of actions run after rollback are added as suppressed exceptions to the rollback's cause.
+ */
+public final class TransactionCallbacks {
+
+	private List<Runnable> beforeCommit;
+	private final List<Runnable> afterCommit = new ArrayList<>();
+	private List<Runnable> afterRollback;
+
+	TransactionCallbacks() {}
+
+	/**
+	 * Adds an action to run within the transaction once all other work in it is done, just
+	 * before it commits. The action may use the transaction. If it fails, the transaction is
+	 * rolled back
+	 *
+	 * @param action the action
+	 */
+	public void beforeCommit(Runnable action) {
+		if (beforeCommit == null) {
+			beforeCommit = new ArrayList<>();
+		}
+		beforeCommit.add(action);
+	}
+
+	/**
+	 * Adds an action to run once the transaction has committed. If it fails, the failure
+	 * is logged and the remaining actions still run
+	 *
+	 * @param action the action
+	 */
+	public void afterCommit(Runnable action) {
+		afterCommit.add(action);
+	}
+
+	/**
+	 * Adds an action to run if the transaction fails to commit, whether because it was
+	 * rolled back or because committing failed
+	 *
+	 * @param action the action
+	 */
+	public void afterRollback(Runnable action) {
+		if (afterRollback == null) {
+			afterRollback = new ArrayList<>();
+		}
+		afterRollback.add(action);
+	}
+
+	void runBeforeCommit() {
+		if (beforeCommit != null) {
+			// Actions may add further actions
+			for (int n = 0; n < beforeCommit.size(); n++) {
+				beforeCommit.get(n).run();
+			}
+		}
+	}
+
+	void runAfterCommit() {
+		for (Runnable action : afterCommit) {
+			try {
+				action.run();
+			} catch (RuntimeException ex) {
+				LoggerFactory.getLogger(getClass()).error(
+						"Action after commit failed. The transaction remains committed", ex);
+			}
+		}
+	}
+
+	void runAfterRollback(RuntimeException cause) {
+		if (afterRollback == null) {
+			return;
+		}
+		for (Runnable action : afterRollback) {
+			try {
+				action.run();
+			} catch (RuntimeException ex) {
+				cause.addSuppressed(ex);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.impl;
+
+import gg.solarmc.loader.Transaction;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteType;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.Table;
+import org.jooq.exception.TooManyRowsException;
+import org.jooq.impl.DSL;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Memoizes query results for the duration of a single transaction. Obtained as a property
+ * of the transaction with {@link Transaction#getProperty(Class)} <br>
+ * <br>
+ * Results are keyed by the rendered SQL and its bind values. An entry is discarded whenever
+ * the transaction writes to a table named in the entry's SQL, or to one of the tables it was
+ * declared to depend upon. Routine calls, DDL, and selects without a {@code FROM} clause (which
+ * are typically function calls with side effects) discard all entries. <br>
+ * <br>
+ * Only statements executed through the transaction's {@code DSLContext} are seen; writes made
+ * directly through the {@code Connection} property do not invalidate anything. <br>
+ * <br>
+ * The memoized records are never handed out. Each call returns new records holding the values
+ * as fetched, so callers may modify them without affecting other callers.
+ */
+public final class TransactionMemo {
+
+	private static final Pattern WRITE_TARGET = Pattern.compile(
+			"^\\s*(?:insert\\s+(?:ignore\\s+)?into|replace\\s+into|update|delete\\s+from)\\s+(?:`[^`]+`\\.)?`([^`]+)`",
+			Pattern.CASE_INSENSITIVE);
+
+	private final Map<QueryKey, MemoizedResult> results = new HashMap<>();
+
+	TransactionMemo() {}
+
+	/**
+	 * Fetches the results of the query, or retrieves them if the same query
+	 * was already fetched in this transaction
+	 *
+	 * @param query the query, which must be attached to the transaction's {@code DSLContext}
+	 * @param dependsOn additional tables the results depend on, which do not appear in the SQL
+	 *                  (such as the base tables of a view)
+	 * @param <R> the record type
+	 * @return the results, a new copy on each call
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends Record> Result<R> fetch(ResultQuery<R> query, Table<?>...dependsOn) {
+		QueryKey key = new QueryKey(query.getSQL(), bindValuesKey(query.getBindValues()));
+		MemoizedResult memoized = results.get(key);
+		if (memoized != null) {
+			return copy((Result<R>) memoized.result());
+		}
+		Result<R> result = query.fetch();
+		Set<String> dependencies;
+		if (dependsOn.length == 0) {
+			dependencies = Set.of();
+		} else {
+			String[] tableNames = new String[dependsOn.length];
+			for (int n = 0; n < dependsOn.length; n++) {
+				tableNames[n] = dependsOn[n].getName();
+			}
+			dependencies = Set.copyOf(List.of(tableNames));
+		}
+		results.put(key, new MemoizedResult(result, dependencies));
+		return copy(result);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <R extends Record> Result<R> copy(Result<R> result) {
+		Result<R> copy = (Result<R>) DSL.using(result.configuration()).newResult(result.fields());
+		for (R record : result) {
+			// The original values are those fetched, even if the memoized record were changed
+			copy.add((R) record.original());
+		}
+		return copy;
+	}
+
+	/**
+	 * Fetches at most one record using {@link #fetch(ResultQuery, Table[])}
+	 *
+	 * @param query the query, which must be attached to the transaction's {@code DSLContext}
+	 * @param dependsOn additional tables the result depends on
+	 * @param <R> the record type
+	 * @return the record, or null if there is none
+	 * @throws TooManyRowsException if the query yields more than one record
+	 */
+	public <R extends Record> R fetchOne(ResultQuery<R> query, Table<?>...dependsOn) {
+		Result<R> result = fetch(query, dependsOn);
+		if (result.size() > 1) {
+			throw new TooManyRowsException("Query yielded " + result.size() + " records");
+		}
+		return (result.isEmpty()) ? null : result.get(0);
+	}
+
+	private static List<Object> bindValuesKey(List<Object> bindValues) {
+		// Arrays, such as binary UUIDs, need content-based equality
+		List<Object> key = new ArrayList<>(bindValues.size());
+		for (Object bindValue : bindValues) {
+			key.add((bindValue instanceof byte[] bytes) ? ByteBuffer.wrap(bytes) : bindValue);
+		}
+		return key;
+	}
+
+	void afterExecute(ExecuteContext context) {
+		if (results.isEmpty()) {
+			return;
+		}
+		ExecuteType type = context.type();
+		switch (type) {
+			case READ -> {
+				String sql = context.sql();
+				if (sql == null || !sql.toLowerCase(Locale.ROOT).contains(" from ")) {
+					results.clear();
+				}
+			}
+			case WRITE -> invalidateWrite(context.sql());
+			case BATCH -> {
+				String[] batchSql = context.batchSQL();
+				if (batchSql.length == 0) {
+					invalidateWrite(context.sql());
+				}
+				for (String sql : batchSql) {
+					invalidateWrite(sql);
+				}
+			}
+			default -> results.clear();
+		}
+	}
+
+	private void invalidateWrite(String sql) {
+		Matcher matcher;
+		if (sql == null || !(matcher = WRITE_TARGET.matcher(sql)).find()) {
+			results.clear();
+			return;
+		}
+		String tableName = matcher.group(1);
+		String quotedTableName = '`' + tableName + '`';
+		results.entrySet().removeIf((entry) -> {
+			return entry.getKey().sql().contains(quotedTableName)
+					|| entry.getValue().dependencies().contains(tableName);
+		});
+	}
+
+	private record QueryKey(String sql, List<Object> bindValues) { }
+
+	private record MemoizedResult(Result<?> result, Set<String> dependencies) { }
+
+}
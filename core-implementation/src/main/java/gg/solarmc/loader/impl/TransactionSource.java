@@ -21,6 +21,8 @@ package gg.solarmc.loader.impl;
 
 import gg.solarmc.loader.DataCenter;
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.TransactionOptions;
+import gg.solarmc.loader.data.Transactor;
 import org.jooq.DSLContext;
 import space.arim.omnibus.util.concurrent.CentralisedFuture;
 import space.arim.omnibus.util.concurrent.FactoryOfTheFuture;
@@ -30,6 +32,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Objects;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
@@ -37,12 +41,25 @@ import java.util.function.Supplier;
  * <br> <br>
  * The transactions provided will have properties available for at least {@link Connection} and {@link DSLContext}
  * and objects, accessible via {@link Transaction#getProperty(Class)}
+ * <br> <br>
+ * Transactions use blocking JDBC. The executor is sized to the connection pool, so each executor
+ * thread holds at most one connection, and transactions beyond the pool size wait in the executor's
+ * queue rather than occupying threads of their own. There is no non-blocking engine, since data
+ * modules use the {@link Connection} and {@link DSLContext} properties synchronously.
+ * <br> <br>
+ * A connection is borrowed only once a transaction first uses the database, so that transactions
+ * answered from caches neither occupy a pool slot nor commit.
+ * <br> <br>
+ * Once closing has begun, new transactions are refused, except those of the closing thread, which
+ * are run on that thread. Data managers use them to write their remaining data while closing.
  */
-public class TransactionSource {
+public class TransactionSource implements Transactor {
 
 	private final FactoryOfTheFuture futuresFactory;
 	private final Executor executor;
 	private final DataSource dataSource;
+	private final LongAdder connectionFreeTransactions = new LongAdder();
+	private volatile Thread closingThread;
 
 	TransactionSource(FactoryOfTheFuture futuresFactory, Executor executor, DataSource dataSource) {
 		this.futuresFactory = futuresFactory;
@@ -50,58 +67,127 @@ public class TransactionSource {
 		this.dataSource = dataSource;
 	}
 
+	@Override
 	public CentralisedFuture<?> runTransact(DataCenter.TransactionRunner runner) {
-		Objects.requireNonNull(runner, "runner");
-		return runAsync(() -> {
-			try (Connection connection = dataSource.getConnection()) {
-				SQLTransaction transaction = new SQLTransaction(connection);
+		return runTransact(TransactionOptions.defaults(), runner);
+	}
 
-				try {
-					runner.runTransactUsing(transaction);
-				} catch (RuntimeException ex) {
-					try {
-						connection.rollback();
-					} catch (SQLException suppressed) { ex.addSuppressed(suppressed); }
-					throw ex;
-				}
-				connection.commit();
+	@Override
+	public <R> CentralisedFuture<R> transact(DataCenter.TransactionActor<R> actor) {
+		return transact(TransactionOptions.defaults(), actor);
+	}
 
-			} catch (SQLException ex) {
-				throw new UncheckedSQLException(ex);
-			}
+	public CentralisedFuture<?> runTransact(TransactionOptions options, DataCenter.TransactionRunner runner) {
+		Objects.requireNonNull(options, "options");
+		Objects.requireNonNull(runner, "runner");
+		return runAsync(() -> {
+			runTransactionNow(options, (transaction) -> {
+				runner.runTransactUsing(transaction);
+				return null;
+			});
 		});
 	}
 
-	public <R> CentralisedFuture<R> transact(DataCenter.TransactionActor<R> actor) {
+	public <R> CentralisedFuture<R> transact(TransactionOptions options, DataCenter.TransactionActor<R> actor) {
+		Objects.requireNonNull(options, "options");
 		Objects.requireNonNull(actor, "actor");
-		return supplyAsync(() -> {
-			try (Connection connection = dataSource.getConnection()) {
-				SQLTransaction transaction = new SQLTransaction(connection);
+		return supplyAsync(() -> runTransactionNow(options, actor));
+	}
 
-				R value;
+	private <R> R runTransactionNow(TransactionOptions options, DataCenter.TransactionActor<R> actor) {
+		try (SQLTransaction transaction = new SQLTransaction(dataSource, options)) {
+
+			R value;
+			try {
+				value = actor.transactUsing(transaction);
+				transaction.runBeforeCommit();
+			} catch (RuntimeException ex) {
+				transaction.rollback(ex);
+				transaction.runAfterRollback(ex);
+				throw ex;
+			}
+			if (transaction.hasConnection()) {
 				try {
-					value = actor.transactUsing(transaction);
-				} catch (RuntimeException ex) {
-					try {
-						connection.rollback();
-					} catch (SQLException suppressed) { ex.addSuppressed(suppressed); }
-					throw ex;
+					transaction.commit();
+				} catch (SQLException ex) {
+					UncheckedSQLException failure = new UncheckedSQLException(ex);
+					transaction.runAfterRollback(failure);
+					throw failure;
 				}
-				connection.commit();
-				return value;
-
-			} catch (SQLException ex) {
-				throw new UncheckedSQLException(ex);
+			} else {
+				connectionFreeTransactions.increment();
 			}
-		});
+			transaction.runAfterCommit();
+			return value;
+
+		} catch (SQLException ex) {
+			throw new UncheckedSQLException(ex);
+		}
+	}
+
+	/**
+	 * Gets the number of transactions which completed successfully without ever
+	 * acquiring a connection, because they were served entirely from caches
+	 *
+	 * @return the number of connection-free transactions so far
+	 */
+	public long connectionFreeTransactionCount() {
+		return connectionFreeTransactions.sum();
+	}
+
+	/**
+	 * Creates an already completed future
+	 *
+	 * @param value the value
+	 * @param <T> the value type
+	 * @return a completed future
+	 */
+	public <T> CentralisedFuture<T> completedFuture(T value) {
+		return futuresFactory.completedFuture(value);
+	}
+
+	/**
+	 * Begins closing. Transactions begun afterward by other threads are refused, and those begun
+	 * by the current thread are run on it, since the executor is then shut down
+	 *
+	 */
+	void beginClosing() {
+		closingThread = Thread.currentThread();
+	}
+
+	private <T> CentralisedFuture<T> failedFuture(RuntimeException ex) {
+		CentralisedFuture<T> future = futuresFactory.newIncompleteFuture();
+		future.completeExceptionally(ex);
+		return future;
 	}
 
 	private CentralisedFuture<?> runAsync(Runnable action) {
-		return futuresFactory.runAsync(action, executor);
+		return supplyAsync(() -> {
+			action.run();
+			return null;
+		});
 	}
 
 	private <T> CentralisedFuture<T> supplyAsync(Supplier<T> supplier) {
-		return futuresFactory.supplyAsync(supplier, executor);
+		Thread closingThread = this.closingThread;
+		if (closingThread == null) {
+			try {
+				return futuresFactory.supplyAsync(supplier, executor);
+			} catch (RejectedExecutionException ex) {
+				// Closing began in the meantime
+				return failedFuture(ex);
+			}
+		}
+		if (closingThread != Thread.currentThread()) {
+			return failedFuture(new IllegalStateException("The data center is closing"));
+		}
+		T value;
+		try {
+			value = supplier.get();
+		} catch (RuntimeException ex) {
+			return failedFuture(ex);
+		}
+		return futuresFactory.completedFuture(value);
 	}
 
 }
@@ -21,6 +21,7 @@ package gg.solarmc.loader.impl.launch;
 
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.data.DataKeyInitializationContext;
+import gg.solarmc.loader.data.Transactor;
 import space.arim.omnibus.Omnibus;
 import space.arim.omnibus.util.concurrent.FactoryOfTheFuture;
 
@@ -32,13 +33,15 @@ public class DataKeyInitializationContextImpl implements DataKeyInitializationCo
 	private final FactoryOfTheFuture futuresFactory;
 	private final Path configFolder;
 	private final Transaction transaction;
+	private final Transactor transactor;
 
 	public DataKeyInitializationContextImpl(Omnibus omnibus, FactoryOfTheFuture futuresFactory,
-									 Path configFolder, Transaction transaction) {
+									 Path configFolder, Transaction transaction, Transactor transactor) {
 		this.omnibus = omnibus;
 		this.futuresFactory = futuresFactory;
 		this.configFolder = configFolder;
 		this.transaction = transaction;
+		this.transactor = transactor;
 	}
 
 	@Override
@@ -60,4 +63,9 @@ public class DataKeyInitializationContextImpl implements DataKeyInitializationCo
 	public Transaction transaction() {
 		return transaction;
 	}
+
+	@Override
+	public Transactor transactor() {
+		return transactor;
+	}
 }
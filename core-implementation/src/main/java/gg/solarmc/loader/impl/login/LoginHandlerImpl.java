@@ -22,6 +22,7 @@ package gg.solarmc.loader.impl.login;
 import gg.solarmc.loader.OnlineSolarPlayer;
 import gg.solarmc.loader.SolarPlayer;
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.AsyncDataLoader;
 import gg.solarmc.loader.data.DataKey;
 import gg.solarmc.loader.data.DataLoader;
 import gg.solarmc.loader.data.DataObject;
@@ -40,6 +41,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 final class LoginHandlerImpl implements LoginHandler {
 
@@ -62,19 +65,86 @@ final class LoginHandlerImpl implements LoginHandler {
     public CentralisedFuture<OnlineSolarPlayer> loginUser(UserDetails userDetails) {
         return transactionSource.transact((transaction) -> {
             int userId = idRetrieval.retrieveUserId(transaction, userDetails);
-            return loginUserNow(transaction, userId, userDetails);
+            return new PartialLogin(userId, loadInTransaction(transaction, userId, userDetails, false));
+        }).thenCompose((partialLogin) -> {
+            int userId = partialLogin.userId();
+            // Start every async loader before waiting on any of them
+            CentralisedFuture<Map<DataKey<?, ?, ?>, DataObject>> futureData =
+                    transactionSource.completedFuture(partialLogin.storedData());
+            for (DataGroup<?, ?, ?> group : groups) {
+                if (group.loader() instanceof AsyncDataLoader<?, ?> asyncLoader) {
+                    futureData = futureData.thenCombine(
+                            asyncLoader.loadDataAsync(transactionSource, userId),
+                            (storedData, data) -> {
+                                storedData.put(group.key(), data);
+                                return storedData;
+                            });
+                }
+            }
+            return futureData.thenApply((storedData) -> createOnlineUser(userId, userDetails, storedData))
+                    .<CentralisedFuture<OnlineSolarPlayer>>handle((user, failure) -> {
+                        if (failure == null) {
+                            return transactionSource.completedFuture(user);
+                        }
+                        // The login transaction committed, so loaders may already hold the user's data
+                        return logoutUser(userId).<OnlineSolarPlayer>handle((ignore, logoutFailure) -> {
+                            if (logoutFailure != null) {
+                                failure.addSuppressed(logoutFailure);
+                            }
+                            throw (failure instanceof CompletionException completionEx) ?
+                                    completionEx : new CompletionException(failure);
+                        });
+                    })
+                    .thenCompose(Function.identity());
         });
     }
 
     @Override
     public OnlineSolarPlayer loginUserNow(Transaction transaction, int userId, UserDetails userDetails) {
+        return createOnlineUser(userId, userDetails, loadInTransaction(transaction, userId, userDetails, true));
+    }
+
+    /**
+     * Performs the login steps which take place within the login transaction: updates the
+     * name and address history, then loads the data of each synchronous loader
+     *
+     * @param transaction the login transaction
+     * @param userId the user ID
+     * @param userDetails the user details
+     * @param includeAsyncLoaders whether to also load, within the transaction, the data of async loaders
+     * @return the loaded data, a mutable map
+     */
+    private Map<DataKey<?, ?, ?>, DataObject> loadInTransaction(Transaction transaction, int userId,
+                                                                UserDetails userDetails, boolean includeAsyncLoaders) {
         nameAddressHistoryUpdate.update(transaction, userDetails);
-        SolarPlayerData data = loadDataWith(userId, (loader, id) -> loader.loadData(transaction, id));
+        Map<DataKey<?, ?, ?>, DataObject> storedData = new HashMap<>();
+        for (DataGroup<?, ?, ?> group : groups) {
+            if (includeAsyncLoaders || !(group.loader() instanceof AsyncDataLoader)) {
+                storedData.put(group.key(), group.loader().loadData(transaction, userId));
+            }
+        }
+        return storedData;
+    }
+
+    private OnlineSolarPlayer createOnlineUser(int userId, UserDetails userDetails,
+                                               Map<DataKey<?, ?, ?>, DataObject> storedData) {
+        SolarPlayerData data = (storedData.isEmpty()) ? SolarPlayerData.empty() : new SolarPlayerData(storedData);
         return new OnlineSolarPlayerImpl(
                 new SolarPlayerId(userId, userDetails.mcUuid(), userDetails.mcUsername()),
                 data);
     }
 
+    private record PartialLogin(int userId, Map<DataKey<?, ?, ?>, DataObject> storedData) { }
+
+    @Override
+    public CentralisedFuture<?> logoutUser(int userId) {
+        return transactionSource.runTransact((transaction) -> {
+            for (DataGroup<?, ?, ?> group : groups) {
+                group.loader().unloadData(transaction, userId);
+            }
+        });
+    }
+
     @Override
     public SolarPlayer createOfflineUser(int userId, UUID mcUuid, String mcUsername) {
         SolarPlayerData data = loadDataWith(userId, DataLoader::createOfflineData);
@@ -0,0 +1,86 @@
+package gg.solarmc.loader.impl.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.UserDetails;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DataGenerator;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gg.solarmc.loader.schema.tables.UserIds.USER_IDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(DatabaseExtension.class)
+public class AsyncDataLoaderIT {
+
+    @TempDir
+    public Path folder;
+
+    private DataCenterInfo dataCenterInfo(SolarDataConfig.DatabaseCredentials credentials,
+                                          AsyncTestKey.Loading loading) {
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(AsyncTestKey.Loading.class, (byte) 0, loading, "Loading");
+        return DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+    }
+
+    @Test
+    public void loadAfterLoginTransaction(SolarDataConfig.DatabaseCredentials credentials) {
+        DataCenterInfo dataCenterInfo = dataCenterInfo(credentials, (transactor, userId) -> {
+            return transactor.transact((transaction) -> {
+                // The user's ID has been committed
+                int storedUsers = transaction.getProperty(DSLContext.class)
+                        .fetchCount(USER_IDS, USER_IDS.ID.eq(userId));
+                return new AsyncTestKey.Data(userId, "async " + storedUsers);
+            });
+        });
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        assertEquals(new AsyncTestKey.Data(user.getUserId(), "async 1"), user.getData(AsyncTestKey.INSTANCE));
+    }
+
+    @Test
+    public void loadWithinExistingTransaction(SolarDataConfig.DatabaseCredentials credentials) {
+        DataCenterInfo dataCenterInfo = dataCenterInfo(credentials, (transactor, userId) -> {
+            throw new AssertionError("Async load used within a transaction");
+        });
+        UserDetails userDetails = DataGenerator.newRandomUser();
+        int userId = dataCenterInfo.transact((transaction) -> {
+            return transaction.getProperty(DSLContext.class)
+                    .insertInto(USER_IDS).columns(USER_IDS.UUID).values(userDetails.mcUuidAsBytes())
+                    .returningResult(USER_IDS.ID)
+                    .fetchOne().value1();
+        });
+        OnlineSolarPlayer user = dataCenterInfo.transact((transaction) -> {
+            return dataCenterInfo.loginHandler().loginUserNow(transaction, userId, userDetails);
+        });
+        assertEquals(new AsyncTestKey.Data(userId, "transaction"), user.getData(AsyncTestKey.INSTANCE));
+    }
+
+    @Test
+    public void failedLoadLogsUserOut(SolarDataConfig.DatabaseCredentials credentials) {
+        IllegalStateException failure = new IllegalStateException("Failed async load");
+        AtomicInteger failedUserId = new AtomicInteger();
+        DataCenterInfo dataCenterInfo = dataCenterInfo(credentials, (transactor, userId) -> {
+            failedUserId.set(userId);
+            return transactor.transact((transaction) -> {
+                throw failure;
+            });
+        });
+        CompletionException thrown = assertThrows(CompletionException.class, dataCenterInfo::loginNewRandomUser);
+        assertSame(failure, thrown.getCause());
+        AsyncTestKey.Manager manager = dataCenterInfo.dataCenter().getDataManager(AsyncTestKey.INSTANCE);
+        assertEquals(Set.of(failedUserId.get()), manager.unloadedUsers());
+    }
+}
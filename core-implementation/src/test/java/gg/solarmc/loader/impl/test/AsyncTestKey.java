@@ -0,0 +1,98 @@
+package gg.solarmc.loader.impl.test;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.AsyncDataLoader;
+import gg.solarmc.loader.data.DataKey;
+import gg.solarmc.loader.data.DataKeyInitializationContext;
+import gg.solarmc.loader.data.DataKeySpi;
+import gg.solarmc.loader.data.DataLoader;
+import gg.solarmc.loader.data.DataManager;
+import gg.solarmc.loader.data.DataObject;
+import gg.solarmc.loader.data.Transactor;
+import space.arim.omnibus.util.concurrent.CentralisedFuture;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Test-only data module whose loader is an {@link AsyncDataLoader}. The async load is done by
+ * the {@link Loading} provided in the Omnibus registry, or by an empty transaction if none is
+ * provided, so that the module is harmless to tests which do not use it
+ */
+public final class AsyncTestKey implements DataKey<AsyncTestKey.Data, AsyncTestKey.Data, AsyncTestKey.Manager> {
+
+    public static final AsyncTestKey INSTANCE = new AsyncTestKey();
+
+    private AsyncTestKey() {}
+
+    public record Data(int userId, String source) implements DataObject { }
+
+    public interface Loading {
+
+        CentralisedFuture<Data> loadDataAsync(Transactor transactor, int userId);
+
+    }
+
+    public static final class Manager implements DataManager {
+
+        private final Loading loading;
+        private final Set<Integer> unloadedUsers = ConcurrentHashMap.newKeySet();
+
+        Manager(Loading loading) {
+            this.loading = loading;
+        }
+
+        public Set<Integer> unloadedUsers() {
+            return Set.copyOf(unloadedUsers);
+        }
+    }
+
+    @Override
+    public DataLoader<Data, Data> createLoader(Manager dataManager, DataKeyInitializationContext context) {
+        return new Loader(dataManager);
+    }
+
+    @Override
+    public Manager createDataManager(DataKeyInitializationContext context) {
+        return new Manager(context.omnibus().getRegistry().getProvider(Loading.class).orElseGet(() -> {
+            return (transactor, userId) -> transactor.transact((transaction) -> new Data(userId, "async"));
+        }));
+    }
+
+    private record Loader(Manager manager) implements AsyncDataLoader<Data, Data> {
+
+        @Override
+        public CentralisedFuture<Data> loadDataAsync(Transactor transactor, int userId) {
+            return manager.loading.loadDataAsync(transactor, userId);
+        }
+
+        @Override
+        public Data loadData(Transaction transaction, int userId) {
+            return new Data(userId, "transaction");
+        }
+
+        @Override
+        public Data createOfflineData(int userId) {
+            return new Data(userId, "offline");
+        }
+
+        @Override
+        public void unloadData(Transaction transaction, int userId) {
+            manager.unloadedUsers.add(userId);
+        }
+
+        @Override
+        public void wipeAllData(Transaction transaction) {
+            manager.unloadedUsers.clear();
+        }
+    }
+
+    public static final class Spi implements DataKeySpi {
+
+        @Override
+        public Iterable<DataKey<?, ?, ?>> getKeys() {
+            return List.of(INSTANCE);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package gg.solarmc.loader.impl.test;
+
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.TransactionMemo;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.schema.tables.records.UserIdsRecord;
+import org.jooq.DSLContext;
+import org.jooq.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import space.arim.omnibus.util.UUIDUtil;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static gg.solarmc.loader.schema.tables.UserIds.USER_IDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@ExtendWith(DatabaseExtension.class)
+public class TransactionMemoIT {
+
+    private DataCenterInfo dataCenterInfo;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+    }
+
+    @Test
+    public void memoizeUntilWrite() {
+        UUID uuid = UUID.randomUUID();
+        dataCenterInfo.runTransact((tx) -> {
+            DSLContext context = tx.getProperty(DSLContext.class);
+            TransactionMemo memo = tx.getProperty(TransactionMemo.class);
+
+            Result<UserIdsRecord> first = memo.fetch(
+                    context.selectFrom(USER_IDS).where(USER_IDS.UUID.eq(UUIDUtil.toByteArray(uuid))));
+            assertEquals(0, first.size());
+
+            // Not seen by the memo
+            try (PreparedStatement statement = tx.getProperty(Connection.class)
+                    .prepareStatement("INSERT INTO user_ids (uuid) VALUES (?)")) {
+                statement.setBytes(1, UUIDUtil.toByteArray(uuid));
+                statement.execute();
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+            Result<UserIdsRecord> memoized = memo.fetch(
+                    context.selectFrom(USER_IDS).where(USER_IDS.UUID.eq(UUIDUtil.toByteArray(uuid))));
+            assertNotSame(first, memoized);
+            assertEquals(0, memoized.size());
+
+            context.insertInto(USER_IDS).columns(USER_IDS.UUID).values(UUIDUtil.toByteArray(UUID.randomUUID())).execute();
+
+            Result<UserIdsRecord> afterWrite = memo.fetch(
+                    context.selectFrom(USER_IDS).where(USER_IDS.UUID.eq(UUIDUtil.toByteArray(uuid))));
+            assertEquals(1, afterWrite.size());
+        });
+    }
+
+    @Test
+    public void modifiedRecordsNotMemoized() {
+        UUID uuid = UUID.randomUUID();
+        dataCenterInfo.runTransact((tx) -> {
+            DSLContext context = tx.getProperty(DSLContext.class);
+            TransactionMemo memo = tx.getProperty(TransactionMemo.class);
+            context.insertInto(USER_IDS).columns(USER_IDS.UUID).values(UUIDUtil.toByteArray(uuid)).execute();
+
+            UserIdsRecord record = memo.fetchOne(
+                    context.selectFrom(USER_IDS).where(USER_IDS.UUID.eq(UUIDUtil.toByteArray(uuid))));
+            record.setUuid(UUIDUtil.toByteArray(UUID.randomUUID()));
+
+            UserIdsRecord again = memo.fetchOne(
+                    context.selectFrom(USER_IDS).where(USER_IDS.UUID.eq(UUIDUtil.toByteArray(uuid))));
+            assertNotSame(record, again);
+            assertArrayEquals(UUIDUtil.toByteArray(uuid), again.getUuid());
+        });
+    }
+
+    @Test
+    public void memoIsPerTransaction() {
+        TransactionMemo memo = dataCenterInfo.transact((tx) -> tx.getProperty(TransactionMemo.class));
+        dataCenterInfo.runTransact((tx) -> {
+            assertSame(tx.getProperty(TransactionMemo.class), tx.getProperty(TransactionMemo.class));
+            assertNotSame(memo, tx.getProperty(TransactionMemo.class));
+        });
+    }
+}
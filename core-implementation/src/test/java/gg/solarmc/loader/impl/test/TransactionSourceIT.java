@@ -0,0 +1,139 @@
+package gg.solarmc.loader.impl.test;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.TransactionOptions;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import gg.solarmc.loader.impl.TransactionSource;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import space.arim.omnibus.util.concurrent.CentralisedFuture;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DatabaseExtension.class)
+public class TransactionSourceIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private TransactionSource transactionSource;
+
+    @BeforeEach
+    public void setTransactionSource(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        transactionSource = dataCenterInfo.icarus().transactionSource();
+    }
+
+    @Test
+    public void connectionFreeTransaction() {
+        long initialCount = transactionSource.connectionFreeTransactionCount();
+        assertEquals("cached", transactionSource.transact((tx) -> {
+            tx.markReadOnly();
+            tx.getProperty(DSLContext.class);
+            return "cached";
+        }).join());
+        assertEquals(initialCount + 1, transactionSource.connectionFreeTransactionCount());
+    }
+
+    @Test
+    public void transactionUsingConnection() {
+        long initialCount = transactionSource.connectionFreeTransactionCount();
+        assertEquals(1, transactionSource.transact((tx) -> {
+            tx.markReadOnly();
+            return tx.getProperty(DSLContext.class).select(DSL.inline(1)).fetchSingle().value1();
+        }).join());
+        assertEquals(initialCount, transactionSource.connectionFreeTransactionCount());
+    }
+
+    @Test
+    public void failedConnectionFreeTransaction() {
+        long initialCount = transactionSource.connectionFreeTransactionCount();
+        assertThrows(Exception.class, () -> transactionSource.runTransact((tx) -> {
+            throw new IllegalStateException("Failed");
+        }).join());
+        assertEquals(initialCount, transactionSource.connectionFreeTransactionCount());
+    }
+
+    @Test
+    public void failedAfterCommitActionKeepsResult() {
+        AtomicBoolean laterActionRan = new AtomicBoolean();
+        assertEquals(1, transactionSource.transact((tx) -> {
+            TransactionCallbacks callbacks = tx.getProperty(TransactionCallbacks.class);
+            callbacks.afterCommit(() -> {
+                throw new IllegalStateException("Failed after commit");
+            });
+            callbacks.afterCommit(() -> laterActionRan.set(true));
+            return tx.getProperty(DSLContext.class).select(DSL.inline(1)).fetchSingle().value1();
+        }).join());
+        assertTrue(laterActionRan.get());
+    }
+
+    @Test
+    @Timeout(30)
+    public void closeFinishesTransactionsInProgress() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CentralisedFuture<Integer> inProgress = transactionSource.transact((tx) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return tx.getProperty(DSLContext.class).select(DSL.inline(1)).fetchSingle().value1();
+        });
+        started.await();
+        CompletableFuture<?> closing = CompletableFuture.runAsync(dataCenterInfo::close);
+        // Transactions begun once closing has begun are refused
+        while (!transactionSource.runTransact((tx) -> { }).isCompletedExceptionally()) {
+            TimeUnit.MILLISECONDS.sleep(10L);
+        }
+        assertFalse(closing.isDone());
+        release.countDown();
+        assertEquals(1, inProgress.join());
+        closing.join();
+    }
+
+    private static String sessionIsolation(Transaction transaction) {
+        return transaction.getProperty(DSLContext.class)
+                .select(DSL.field("@@SESSION.tx_isolation", String.class))
+                .fetchSingle().value1();
+    }
+
+    @Test
+    public void readCommitted() {
+        assertEquals("READ-COMMITTED", transactionSource.transact(
+                TransactionOptions.readCommitted(), TransactionSourceIT::sessionIsolation).join());
+        // Each pooled connection must have been restored
+        for (int n = 0; n < 4; n++) {
+            assertEquals("REPEATABLE-READ", transactionSource.transact(TransactionSourceIT::sessionIsolation).join());
+        }
+    }
+
+    @Test
+    public void consistentSnapshot() {
+        assertEquals("REPEATABLE-READ", transactionSource.transact(
+                TransactionOptions.consistentSnapshot(), TransactionSourceIT::sessionIsolation).join());
+    }
+
+    @Test
+    public void consistentSnapshotRequiresRepeatableRead() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionOptions(TransactionOptions.Isolation.READ_COMMITTED, true));
+    }
+}
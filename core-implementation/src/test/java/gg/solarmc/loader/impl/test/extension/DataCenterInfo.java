@@ -69,6 +69,15 @@ public record DataCenterInfo(FactoryOfTheFuture futuresFactory, Icarus icarus,
         return loginUser(new UserDetails(user.getMcUuid(), user.getMcUsername(), DataGenerator.randomAddress()));
     }
 
+    /**
+     * Logs out the given user
+     *
+     * @param user the user
+     */
+    public void logoutUser(OnlineSolarPlayer user) {
+        loginHandler.logoutUser(user.getUserId()).join();
+    }
+
     /**
      * Shortcut for {@link DataCenter#transact(DataCenter.TransactionActor)}
      *
@@ -5,9 +5,12 @@ open module gg.solarmc.loader.impl.test {
     exports gg.solarmc.loader.impl.test.extension;
 
     requires transitive org.junit.jupiter.api;
+    requires org.jooq;
     requires org.mockito;
     requires org.mockito.junit.jupiter;
     requires net.bytebuddy; // required by mockito
     requires org.slf4j;
     requires space.arim.omnibus;
+
+    provides gg.solarmc.loader.data.DataKeySpi with gg.solarmc.loader.impl.test.AsyncTestKey.Spi;
 }
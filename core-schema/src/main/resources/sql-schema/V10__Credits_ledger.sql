@@ -0,0 +1,12 @@
+
+-- Written only if the ledger is enabled in the credits configuration
+CREATE TABLE credits_ledger (
+  entry_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  user_id INT NOT NULL,
+  delta NUMERIC(15, 3) NOT NULL,
+  reason VARCHAR(64) NULL,
+  -- Unix seconds
+  time_recorded BIGINT NOT NULL,
+  FOREIGN KEY (user_id) REFERENCES user_ids (id) ON DELETE CASCADE,
+  INDEX user_history_index (user_id, entry_id)
+);
@@ -0,0 +1,11 @@
+
+-- Feed of balance changes, polled by each node to refresh its cached balances
+-- Rows are written alongside each balance change, only by nodes with the feed enabled
+-- Rows are pruned once older than the retention period
+CREATE TABLE credits_changes (
+  seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+  user_id INT NOT NULL,
+  -- Unix seconds
+  time_recorded BIGINT NOT NULL,
+  INDEX time_recorded_index (time_recorded)
+);
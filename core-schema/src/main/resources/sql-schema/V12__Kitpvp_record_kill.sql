@@ -0,0 +1,71 @@
+
+-- Records an entire kill in one call. Assisters and bounty currencies are JSON arrays
+-- of user IDs and serialized currencies respectively. The new assists and the claimed
+-- bounties are returned as comma-separated 'key:value' pairs
+CREATE PROCEDURE kitpvp_record_kill
+  (killer_identifier INT,
+  victim_identifier INT,
+  assister_identifiers TEXT,
+  bounty_currencies TEXT,
+  experience_amount INT,
+  -- Unix seconds
+  claim_time BIGINT,
+  OUT new_killer_kills INT,
+  OUT new_killer_current_killstreak INT,
+  OUT new_killer_highest_killstreak INT,
+  OUT new_killer_experience INT,
+  OUT new_victim_deaths INT,
+  OUT previous_victim_killstreak INT,
+  OUT new_assister_assists TEXT,
+  OUT claimed_bounties TEXT)
+  MODIFIES SQL DATA
+  BEGIN
+    DECLARE locked_participants INT;
+    -- Lock every participant in user ID order before updating any, so that kills sharing
+    -- participants in different roles, such as trades and team fights, cannot deadlock
+    SELECT COUNT(*) INTO locked_participants
+      FROM kitpvp_statistics
+      WHERE user_id IN (SELECT participant.id FROM JSON_TABLE(
+        JSON_MERGE_PRESERVE(JSON_ARRAY(killer_identifier, victim_identifier), assister_identifiers),
+        '$[*]' COLUMNS (id INT PATH '$')) AS participant)
+      ORDER BY user_id
+      FOR UPDATE;
+
+    -- Requires simultaneous assignment, NOT default right-to-left behavior
+    UPDATE kitpvp_statistics
+      SET kills = kills + 1, current_killstreak = current_killstreak + 1,
+        highest_killstreak = GREATEST(highest_killstreak, current_killstreak + 1),
+        experience = experience + experience_amount
+      WHERE user_id = killer_identifier;
+    SELECT kills, current_killstreak, highest_killstreak, experience
+      INTO new_killer_kills, new_killer_current_killstreak, new_killer_highest_killstreak, new_killer_experience
+      FROM kitpvp_statistics
+      WHERE user_id = killer_identifier;
+
+    SELECT current_killstreak INTO previous_victim_killstreak
+      FROM kitpvp_statistics WHERE user_id = victim_identifier;
+    UPDATE kitpvp_statistics SET deaths = deaths + 1, current_killstreak = 0
+      WHERE user_id = victim_identifier;
+    SELECT deaths INTO new_victim_deaths
+      FROM kitpvp_statistics WHERE user_id = victim_identifier;
+
+    UPDATE kitpvp_statistics SET assists = assists + 1
+      WHERE user_id IN (SELECT assister.id FROM JSON_TABLE(assister_identifiers, '$[*]' COLUMNS (id INT PATH '$')) AS assister);
+    SELECT GROUP_CONCAT(CONCAT(user_id, ':', assists) SEPARATOR ',') INTO new_assister_assists
+      FROM kitpvp_statistics
+      WHERE user_id IN (SELECT assister.id FROM JSON_TABLE(assister_identifiers, '$[*]' COLUMNS (id INT PATH '$')) AS assister);
+
+    SELECT GROUP_CONCAT(CONCAT(bounty_currency, ':', bounty_amount) SEPARATOR ',') INTO claimed_bounties
+      FROM kitpvp_bounties
+      WHERE user_id = victim_identifier AND bounty_amount > 0
+      AND bounty_currency IN (SELECT currency.id FROM JSON_TABLE(bounty_currencies, '$[*]' COLUMNS (id TINYINT PATH '$')) AS currency)
+      FOR UPDATE;
+    INSERT INTO kitpvp_bounty_logs (time_claimed, killer_id, victim_id, bounty_amount, bounty_currency)
+      SELECT claim_time, killer_identifier, victim_identifier, bounty_amount, bounty_currency
+      FROM kitpvp_bounties
+      WHERE user_id = victim_identifier AND bounty_amount > 0
+      AND bounty_currency IN (SELECT currency.id FROM JSON_TABLE(bounty_currencies, '$[*]' COLUMNS (id TINYINT PATH '$')) AS currency);
+    DELETE FROM kitpvp_bounties
+      WHERE user_id = victim_identifier
+      AND bounty_currency IN (SELECT currency.id FROM JSON_TABLE(bounty_currencies, '$[*]' COLUMNS (id TINYINT PATH '$')) AS currency);
+  END;
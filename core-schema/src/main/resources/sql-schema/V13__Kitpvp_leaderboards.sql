@@ -0,0 +1,8 @@
+
+-- Kills per death, counting no deaths as one death
+ALTER TABLE kitpvp_statistics
+  ADD COLUMN kill_death_ratio NUMERIC(15, 4) GENERATED ALWAYS AS (kills / GREATEST(deaths, 1)) STORED,
+  ADD INDEX deaths_index (deaths),
+  ADD INDEX assists_index (assists),
+  ADD INDEX experience_index (experience),
+  ADD INDEX kill_death_ratio_index (kill_death_ratio);
@@ -0,0 +1,23 @@
+
+-- Kit contents packed into one row per kit
+-- The format is documented and read by KitContentsCodec in the kitpvp module
+CREATE TABLE kitpvp_kits_packed_contents (
+  kit_id INT NOT NULL PRIMARY KEY,
+  contents MEDIUMBLOB NOT NULL,
+  FOREIGN KEY (kit_id) REFERENCES kitpvp_kits_ids (kit_id) ON DELETE CASCADE
+);
+
+-- Convert existing contents to format version 1, uncompressed
+-- Each item becomes its slot as a byte, its length as a 4-byte big endian integer, and itself
+SET SESSION group_concat_max_len = 4294967295;
+
+INSERT INTO kitpvp_kits_packed_contents (kit_id, contents)
+  SELECT ids.kit_id, CONCAT(CHAR(1, 0), COALESCE(GROUP_CONCAT(
+    CONCAT(CHAR(contents.slot), UNHEX(LPAD(HEX(LENGTH(contents.item)), 8, '0')), contents.item)
+    ORDER BY contents.slot SEPARATOR ''), ''))
+  FROM kitpvp_kits_ids ids
+  LEFT JOIN kitpvp_kits_contents contents ON contents.kit_id = ids.kit_id
+  GROUP BY ids.kit_id;
+
+-- kitpvp_kits_contents is no longer written, but is kept until the converted contents are
+-- verified in production. A later migration drops it
@@ -0,0 +1,7 @@
+
+-- Lets bounties in one currency be listed by seeking on the index, highest first
+-- Listings order by amount then user ID, both descending, so that the index is scanned
+-- backwards on versions which do not honour descending key parts
+ALTER TABLE kitpvp_bounties
+  ADD INDEX bounty_ranking_index (bounty_currency, bounty_amount, user_id),
+  DROP INDEX bounty_amount_index;
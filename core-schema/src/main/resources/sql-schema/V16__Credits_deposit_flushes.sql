@@ -0,0 +1,6 @@
+
+-- Writes of deferred deposits which committed, referred to by the local deposit journal
+-- Rows are deleted once the journal no longer refers to them
+CREATE TABLE credits_deposit_flushes (
+  flush_id BIGINT AUTO_INCREMENT PRIMARY KEY
+);
@@ -0,0 +1,32 @@
+
+-- Rows are locked in user ID order so that opposing transfers cannot deadlock
+CREATE PROCEDURE credits_transfer_balance
+  (sender_id INT,
+  recipient_id INT,
+  transfer_amount NUMERIC(15, 3),
+  OUT sender_balance NUMERIC(15, 3),
+  OUT recipient_balance NUMERIC(15, 3),
+  OUT successful BOOLEAN)
+  MODIFIES SQL DATA
+  BEGIN
+    IF sender_id < recipient_id THEN
+      SELECT balance INTO sender_balance FROM credits WHERE user_id = sender_id FOR UPDATE;
+      SELECT balance INTO recipient_balance FROM credits WHERE user_id = recipient_id FOR UPDATE;
+    ELSE
+      SELECT balance INTO recipient_balance FROM credits WHERE user_id = recipient_id FOR UPDATE;
+      SELECT balance INTO sender_balance FROM credits WHERE user_id = sender_id FOR UPDATE;
+    END IF;
+    IF sender_balance IS NULL OR recipient_balance IS NULL THEN
+      -- A missing account yields a null balance, which the caller reports as an error
+      SET successful = FALSE;
+    ELSEIF sender_balance >= transfer_amount THEN
+      SET successful = TRUE;
+      SET sender_balance = sender_balance - transfer_amount;
+      SET recipient_balance = recipient_balance + transfer_amount;
+      UPDATE credits SET balance = sender_balance WHERE user_id = sender_id;
+      UPDATE credits SET balance = recipient_balance WHERE user_id = recipient_id;
+    ELSE
+      -- New balances are always balances after operation
+      SET successful = FALSE;
+    END IF;
+  END;
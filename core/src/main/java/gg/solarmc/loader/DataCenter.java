@@ -37,6 +37,15 @@ public interface DataCenter {
 	 */
 	CentralisedFuture<?> runTransact(TransactionRunner runner);
 
+	/**
+	 * Runs a transaction which does not return a result, using the given options
+	 *
+	 * @param options the transaction options
+	 * @param runner the transaction body
+	 * @return a future completed once the transaction is complete
+	 */
+	CentralisedFuture<?> runTransact(TransactionOptions options, TransactionRunner runner);
+
 	/**
 	 * Transactor which does not return a result
 	 */
@@ -56,6 +65,16 @@ public interface DataCenter {
 	 */
 	<R> CentralisedFuture<R> transact(TransactionActor<R> actor);
 
+	/**
+	 * Runs a transaction using the given options
+	 *
+	 * @param options the transaction options
+	 * @param actor the transaction body
+	 * @param <R> the result type
+	 * @return a future completed once the transaction is complete, yielding the transaction result
+	 */
+	<R> CentralisedFuture<R> transact(TransactionOptions options, TransactionActor<R> actor);
+
 	/**
 	 * Transactor returning a result
 	 *
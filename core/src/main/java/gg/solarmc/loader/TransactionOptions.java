@@ -0,0 +1,102 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader;
+
+import java.util.Objects;
+
+/**
+ * Options for a transaction, for use with {@link DataCenter#transact(TransactionOptions, DataCenter.TransactionActor)}. <br>
+ * <br>
+ * By default, transactions run at {@link Isolation#REPEATABLE_READ}. Plain reads, such as leaderboard
+ * and bounty listings, take no locks at either level, so they gain nothing from changing it. <br>
+ * <br>
+ * {@link #readCommitted()} matters for transactions which update or lock rows found through range
+ * conditions: at repeatable read, those take next-key locks which block concurrent inserts into the
+ * range, whereas at read committed only the matching rows are locked. Reporting which reads several
+ * tables and needs them to agree should use {@link #consistentSnapshot()}.
+ *
+ * @param isolation the isolation level
+ * @param consistentSnapshot whether to establish the read view when the transaction begins, rather than
+ *                           upon its first read. Requires {@link Isolation#REPEATABLE_READ}
+ */
+public record TransactionOptions(Isolation isolation, boolean consistentSnapshot) {
+
+	private static final TransactionOptions DEFAULTS = new TransactionOptions(Isolation.REPEATABLE_READ, false);
+	private static final TransactionOptions READ_COMMITTED = new TransactionOptions(Isolation.READ_COMMITTED, false);
+	private static final TransactionOptions CONSISTENT_SNAPSHOT = new TransactionOptions(Isolation.REPEATABLE_READ, true);
+
+	/**
+	 * Creates from the given details
+	 *
+	 * @param isolation the isolation level
+	 * @param consistentSnapshot whether to use a consistent snapshot
+	 * @throws IllegalArgumentException if a consistent snapshot is requested without repeatable read
+	 */
+	public TransactionOptions {
+		Objects.requireNonNull(isolation, "isolation");
+		if (consistentSnapshot && isolation != Isolation.REPEATABLE_READ) {
+			throw new IllegalArgumentException("A consistent snapshot requires repeatable read isolation");
+		}
+	}
+
+	/**
+	 * The options used when none are specified
+	 *
+	 * @return the default options
+	 */
+	public static TransactionOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Options using {@link Isolation#READ_COMMITTED}
+	 *
+	 * @return read committed options
+	 */
+	public static TransactionOptions readCommitted() {
+		return READ_COMMITTED;
+	}
+
+	/**
+	 * Options using {@link Isolation#REPEATABLE_READ} with a consistent snapshot
+	 *
+	 * @return consistent snapshot options
+	 */
+	public static TransactionOptions consistentSnapshot() {
+		return CONSISTENT_SNAPSHOT;
+	}
+
+	/**
+	 * Transaction isolation levels
+	 *
+	 */
+	public enum Isolation {
+		/**
+		 * Each read sees data committed as of that read. Locking reads and writes lock only
+		 * the matching rows, without gap locks
+		 */
+		READ_COMMITTED,
+		/**
+		 * All reads see data as of the first read in the transaction. The default
+		 */
+		REPEATABLE_READ
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.data;
+
+import space.arim.omnibus.util.concurrent.CentralisedFuture;
+
+/**
+ * Alternative to {@link DataLoader} for data modules whose login reads do not need to take
+ * place within the login transaction. <br>
+ * <br>
+ * The framework first completes the login transaction, including all synchronous loaders,
+ * then starts every async loader at once and waits for all of them before the user
+ * is considered logged in. Each async loader may therefore use one or more transactions
+ * of its own, which run concurrently with those of other modules. <br>
+ * <br>
+ * If any async loader fails, so does the login. Since the login transaction has committed
+ * by then, the user is first logged out again, calling {@link #unloadData(gg.solarmc.loader.Transaction, int)}
+ * of every loader, including async loaders whose data was never loaded. <br>
+ * <br>
+ * {@link #loadData(gg.solarmc.loader.Transaction, int)} must still be implemented, since it
+ * is used when a user is logged in within an existing transaction.
+ *
+ * @param <D> the data object
+ * @param <O> the offline data object
+ */
+public interface AsyncDataLoader<D extends O, O extends DataObject> extends DataLoader<D, O> {
+
+	/**
+	 * Performs the data load for a specific user, asynchronously. The same considerations
+	 * as to first logins apply as with {@link #loadData(gg.solarmc.loader.Transaction, int)}. <br>
+	 * <br>
+	 * By the time this is called, the user's ID has been committed.
+	 *
+	 * @param transactor the transactor with which to start transactions
+	 * @param userId the user's ID
+	 * @return a future yielding the online data object
+	 */
+	CentralisedFuture<D> loadDataAsync(Transactor transactor, int userId);
+
+}
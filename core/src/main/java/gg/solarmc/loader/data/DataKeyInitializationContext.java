@@ -44,4 +44,13 @@ public interface DataKeyInitializationContext {
 	 */
 	Transaction transaction();
 
+	/**
+	 * A transactor for starting transactions outside of the initialization process,
+	 * such as for background work. Usable after initialization has completed and
+	 * until the data manager is closed
+	 *
+	 * @return the transactor
+	 */
+	Transactor transactor();
+
 }
@@ -48,6 +48,15 @@ public interface DataLoader<D extends O, O extends DataObject> {
 	 */
 	O createOfflineData(int userId);
 
+	/**
+	 * Called when a user logs out, so that any state held in memory for the user
+	 * may be written. Does nothing by default.
+	 *
+	 * @param transaction the enclosing transaction
+	 * @param userId the user's ID
+	 */
+	default void unloadData(Transaction transaction, int userId) {}
+
 	/**
 	 * Drops any and all data relating to this loader for all users. Used for testing purposes. <br>
 	 * <br>
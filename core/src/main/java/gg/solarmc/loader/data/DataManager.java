@@ -51,6 +51,13 @@ public interface DataManager extends AutoCloseable {
 	 */
 	default void clearCaches() { }
 
+	/**
+	 * Closes this data manager. Called once transactions already begun have finished. Transactions
+	 * begun by the data manager while closing are run on the closing thread, so they may be joined.
+	 *
+	 * @throws Exception if closing failed
+	 * @implSpec The default implementation does nothing
+	 */
 	@Override
 	default void close() throws Exception { }
 }
@@ -0,0 +1,48 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.data;
+
+import gg.solarmc.loader.DataCenter;
+import space.arim.omnibus.util.concurrent.CentralisedFuture;
+
+/**
+ * Starts new transactions, each with its own connection. Given to {@link AsyncDataLoader}s
+ * so that they may perform their reads independently of the login transaction.
+ */
+public interface Transactor {
+
+	/**
+	 * Runs a transaction which does not return a result
+	 *
+	 * @param runner the transaction body
+	 * @return a future completed once the transaction is complete
+	 */
+	CentralisedFuture<?> runTransact(DataCenter.TransactionRunner runner);
+
+	/**
+	 * Runs a transaction returning a result
+	 *
+	 * @param actor the transaction body
+	 * @param <R> the result type
+	 * @return a future completed once the transaction is complete, yielding the transaction result
+	 */
+	<R> CentralisedFuture<R> transact(DataCenter.TransactionActor<R> actor);
+
+}
@@ -23,6 +23,7 @@ package gg.solarmc.loader.clans;
 
 import gg.solarmc.loader.SolarPlayer;
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.impl.TransactionMemo;
 import gg.solarmc.loader.schema.tables.records.ClansClanInfoRecord;
 import org.jooq.DSLContext;
 import org.jooq.Record1;
@@ -209,8 +210,10 @@ public class Clan {
      * @return the record
      */
     private ClansClanInfoRecord getInformation(Transaction transaction) {
-        ClansClanInfoRecord rec =  transaction.getProperty(DSLContext.class)
-                .fetchOne(CLANS_CLAN_INFO,CLANS_CLAN_INFO.CLAN_ID.eq(this.clanId));
+        ClansClanInfoRecord rec = transaction.getProperty(TransactionMemo.class).fetchOne(
+                transaction.getProperty(DSLContext.class)
+                        .selectFrom(CLANS_CLAN_INFO)
+                        .where(CLANS_CLAN_INFO.CLAN_ID.eq(this.clanId)));
 
         assert rec != null : "nullity check failed for record get!";
 
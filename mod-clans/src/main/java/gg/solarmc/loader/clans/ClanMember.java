@@ -22,6 +22,7 @@
 package gg.solarmc.loader.clans;
 
 import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.impl.TransactionMemo;
 import org.jooq.DSLContext;
 
 import java.util.Set;
@@ -59,11 +60,12 @@ public record ClanMember(int userId) {
     }
 
     static Set<ClanMember> fetchMembers(Transaction transaction, int clanId) {
-        return Set.copyOf(transaction.getProperty(DSLContext.class)
-                .select(CLANS_CLAN_MEMBERSHIP.USER_ID)
-                .from(CLANS_CLAN_MEMBERSHIP)
-                .where(CLANS_CLAN_MEMBERSHIP.CLAN_ID.eq(clanId))
-                .fetchSet((rec1) -> new ClanMember(rec1.value1())));
+        return Set.copyOf(transaction.getProperty(TransactionMemo.class).fetch(
+                transaction.getProperty(DSLContext.class)
+                        .select(CLANS_CLAN_MEMBERSHIP.USER_ID)
+                        .from(CLANS_CLAN_MEMBERSHIP)
+                        .where(CLANS_CLAN_MEMBERSHIP.CLAN_ID.eq(clanId)))
+                .intoSet((rec1) -> new ClanMember(rec1.value1())));
     }
 
 }
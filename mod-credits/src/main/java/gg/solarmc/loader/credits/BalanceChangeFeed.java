@@ -0,0 +1,194 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.Transactor;
+import gg.solarmc.loader.schema.tables.records.CreditsChangesRecord;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep2;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static gg.solarmc.loader.schema.tables.CreditsChanges.CREDITS_CHANGES;
+
+/**
+ * Writes and consumes the feed of balance changes, so that balances changed by other nodes
+ * are reflected in cached balances. A change is written in the same transaction as the balance
+ * change itself, so it becomes visible exactly when the balance does. <br>
+ * <br>
+ * Each poll reads the changes after the last sequence number seen, using the primary key,
+ * so that a poll finding no changes is cheap. Sequence numbers are allocated before the writing
+ * transaction commits, so a gap in the sequence may be filled later; gaps are therefore
+ * rechecked until they expire. <br>
+ * <br>
+ * Only used from the feed thread, except for initialization.
+ */
+final class BalanceChangeFeed implements AutoCloseable {
+
+	private final Transactor transactor;
+	private final ScheduledExecutorService scheduler;
+	private final Clock clock;
+	private volatile CreditsManager manager;
+
+	private long lastSeq;
+	// Sequence number to expiry time in epoch millis
+	private final Map<Long, Long> gaps = new HashMap<>();
+	private long nextPruneMillis;
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int MAX_GAPS = 1000;
+	private static final Duration GAP_EXPIRY = Duration.ofMinutes(1L);
+	private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(1L);
+	static final Duration RETENTION = Duration.ofMinutes(10L);
+
+	BalanceChangeFeed(Transactor transactor, ScheduledExecutorService scheduler, Clock clock) {
+		this.transactor = transactor;
+		this.scheduler = scheduler;
+		this.clock = clock;
+	}
+
+	/**
+	 * Begins from the latest change. Called before the feed is started
+	 *
+	 * @param transaction the transaction
+	 */
+	void initialize(Transaction transaction) {
+		Long maxSeq = transaction.getProperty(DSLContext.class)
+				.select(CREDITS_CHANGES.SEQ.max())
+				.from(CREDITS_CHANGES)
+				.fetchSingle().value1();
+		lastSeq = (maxSeq == null) ? 0L : maxSeq;
+	}
+
+	void start(CreditsManager manager, Duration pollInterval) {
+		this.manager = manager;
+		long intervalMillis = pollInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Records that the balances of the given users are changed by the given transaction
+	 *
+	 * @param transaction the transaction making the change
+	 * @param userIds the user IDs
+	 */
+	void record(Transaction transaction, Collection<Integer> userIds) {
+		if (userIds.isEmpty()) {
+			return;
+		}
+		Field<Long> now = DSL.field("UNIX_TIMESTAMP()", Long.class);
+		InsertValuesStep2<CreditsChangesRecord, Integer, Long> insert = transaction.getProperty(DSLContext.class)
+				.insertInto(CREDITS_CHANGES)
+				.columns(CREDITS_CHANGES.USER_ID, CREDITS_CHANGES.TIME_RECORDED);
+		for (Integer userId : userIds) {
+			insert = insert.values(DSL.val(userId), now);
+		}
+		insert.execute();
+	}
+
+	private Logger logger() {
+		return LoggerFactory.getLogger(getClass());
+	}
+
+	private void poll() {
+		try {
+			transactor.runTransact(this::pollUsing).join();
+		} catch (RuntimeException ex) {
+			logger().warn("Failed to poll credits balance changes", ex);
+		}
+	}
+
+	private void pollUsing(Transaction transaction) {
+		long now = clock.millis();
+		gaps.values().removeIf((expiry) -> expiry <= now);
+
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		Condition newChanges = CREDITS_CHANGES.SEQ.gt(lastSeq);
+		Result<Record2<Long, Integer>> changes = context
+				.select(CREDITS_CHANGES.SEQ, CREDITS_CHANGES.USER_ID)
+				.from(CREDITS_CHANGES)
+				.where((gaps.isEmpty()) ? newChanges : newChanges.or(CREDITS_CHANGES.SEQ.in(gaps.keySet())))
+				.orderBy(CREDITS_CHANGES.SEQ)
+				.limit(BATCH_SIZE)
+				.fetch();
+		Set<Integer> changedUsers = new HashSet<>();
+		for (Record2<Long, Integer> change : changes) {
+			long seq = change.value1();
+			if (seq > lastSeq) {
+				for (long missing = lastSeq + 1; missing < seq && gaps.size() < MAX_GAPS; missing++) {
+					gaps.put(missing, now + GAP_EXPIRY.toMillis());
+				}
+				lastSeq = seq;
+			} else {
+				gaps.remove(seq);
+			}
+			changedUsers.add(change.value2());
+		}
+		if (!changedUsers.isEmpty()) {
+			manager.refreshOnlineBalances(transaction, changedUsers);
+		}
+		if (now >= nextPruneMillis) {
+			nextPruneMillis = now + PRUNE_INTERVAL.toMillis();
+			prune(transaction);
+		}
+	}
+
+	/**
+	 * Deletes changes older than the retention period. Uses the database clock, as does recording
+	 *
+	 * @param transaction the transaction
+	 */
+	static void prune(Transaction transaction) {
+		transaction.getProperty(DSLContext.class)
+				.deleteFrom(CREDITS_CHANGES)
+				.where(CREDITS_CHANGES.TIME_RECORDED.lt(
+						DSL.field("UNIX_TIMESTAMP()", Long.class).minus(RETENTION.toSeconds())))
+				.execute();
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdown();
+		try {
+			if (!scheduler.awaitTermination(10L, TimeUnit.SECONDS)) {
+				logger().warn("Failed to await termination of credits balance change polling");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,311 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import gg.solarmc.loader.impl.IndexReconciliation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory ranking of balances, ordered by balance descending then user ID ascending. <br>
+ * <br>
+ * Implemented as a treap whose nodes track their subtree size, so that paging, ranking and
+ * updates all take logarithmic time. The index reflects operations committed on this node and
+ * is periodically reconciled with the database; between reconciliations it is approximate. <br>
+ * <br>
+ * Reconciliation follows {@link IndexReconciliation}. <br>
+ * <br>
+ * Balances are held as longs scaled per {@link gg.solarmc.loader.impl.ScaledDecimals}.
+ */
+final class BalanceIndex {
+
+	private final Map<Integer, Long> balances = new HashMap<>();
+	private final SplittableRandom random = new SplittableRandom();
+	private Node root;
+	private final IndexReconciliation<Integer> reconciliation = new IndexReconciliation<>();
+
+	private static final class Node {
+
+		final int userId;
+		final long balance;
+		final int priority;
+		int size = 1;
+		Node left;
+		Node right;
+
+		Node(int userId, long balance, int priority) {
+			this.userId = userId;
+			this.balance = balance;
+			this.priority = priority;
+		}
+	}
+
+	record RankedBalance(int userId, long balance) { }
+
+	/*
+	 * Negative if the key comes before the node
+	 */
+	private static int compare(long balance, int userId, Node node) {
+		int balanceComparison = Long.compare(node.balance, balance);
+		if (balanceComparison != 0) {
+			return balanceComparison;
+		}
+		return Integer.compare(userId, node.userId);
+	}
+
+	private static int size(Node node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	private static void recalculateSize(Node node) {
+		node.size = 1 + size(node.left) + size(node.right);
+	}
+
+	private static Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			recalculateSize(left);
+			return left;
+		} else {
+			right.left = merge(left, right.left);
+			recalculateSize(right);
+			return right;
+		}
+	}
+
+	/*
+	 * Splits into nodes before the key and nodes after the key
+	 */
+	private static Node[] split(Node node, long balance, int userId) {
+		if (node == null) {
+			return new Node[] {null, null};
+		}
+		if (compare(balance, userId, node) > 0) {
+			Node[] split = split(node.right, balance, userId);
+			node.right = split[0];
+			recalculateSize(node);
+			split[0] = node;
+			return split;
+		} else {
+			Node[] split = split(node.left, balance, userId);
+			node.left = split[1];
+			recalculateSize(node);
+			split[1] = node;
+			return split;
+		}
+	}
+
+	private static Node erase(Node node, long balance, int userId) {
+		if (node == null) {
+			return null;
+		}
+		int comparison = compare(balance, userId, node);
+		if (comparison == 0) {
+			return merge(node.left, node.right);
+		}
+		if (comparison < 0) {
+			node.left = erase(node.left, balance, userId);
+		} else {
+			node.right = erase(node.right, balance, userId);
+		}
+		recalculateSize(node);
+		return node;
+	}
+
+	/**
+	 * Sets the balance of a user, adding the user if not present
+	 *
+	 * @param userId the user ID
+	 * @param balance the new balance
+	 */
+	synchronized void update(int userId, long balance) {
+		reconciliation.updated(userId);
+		updateNow(userId, balance);
+	}
+
+	private void updateNow(int userId, long balance) {
+		Long previous = balances.put(userId, balance);
+		if (previous != null) {
+			root = erase(root, previous, userId);
+		}
+		Node[] split = split(root, balance, userId);
+		root = merge(merge(split[0], new Node(userId, balance, random.nextInt())), split[1]);
+	}
+
+	private void removeNow(int userId) {
+		Long previous = balances.remove(userId);
+		if (previous != null) {
+			root = erase(root, previous, userId);
+		}
+	}
+
+	/**
+	 * Gets a page of balances
+	 *
+	 * @param offset the number of highest balances to skip
+	 * @param limit the maximum number of balances
+	 * @return the balances, highest first
+	 */
+	synchronized List<RankedBalance> range(int offset, int limit) {
+		List<RankedBalance> page = new ArrayList<>(Math.min(limit, Math.max(0, size(root) - offset)));
+		collect(root, offset, limit, page);
+		return page;
+	}
+
+	private static void collect(Node node, int offset, int limit, List<RankedBalance> page) {
+		if (node == null || page.size() >= limit) {
+			return;
+		}
+		int leftSize = size(node.left);
+		if (offset < leftSize) {
+			collect(node.left, offset, limit, page);
+			if (page.size() >= limit) {
+				return;
+			}
+		}
+		if (offset <= leftSize) {
+			page.add(new RankedBalance(node.userId, node.balance));
+		}
+		collect(node.right, Math.max(0, offset - leftSize - 1), limit, page);
+	}
+
+	/**
+	 * Gets the rank of a user. Users with equal balances share a rank
+	 *
+	 * @param userId the user ID
+	 * @return the rank, where 1 is the highest balance, or 0 if the user is not indexed
+	 */
+	synchronized int rank(int userId) {
+		Long balance = balances.get(userId);
+		if (balance == null) {
+			return 0;
+		}
+		return countBefore(balance, Integer.MIN_VALUE) + 1;
+	}
+
+	/**
+	 * Gets the percentage of users whose balance is lower than that of the given user
+	 *
+	 * @param userId the user ID
+	 * @return the percentage, from 0 inclusive to 100 exclusive, or an empty optional if the user is not indexed
+	 */
+	synchronized OptionalDouble percentile(int userId) {
+		Long balance = balances.get(userId);
+		if (balance == null) {
+			return OptionalDouble.empty();
+		}
+		int atLeast = countBefore(balance, Integer.MAX_VALUE);
+		return OptionalDouble.of(100.0 * (size(root) - atLeast) / size(root));
+	}
+
+	/**
+	 * Counts the users whose balance is strictly greater than the given amount
+	 *
+	 * @param balance the balance
+	 * @return the number of users with a greater balance
+	 */
+	synchronized int countGreaterThan(long balance) {
+		return countBefore(balance, Integer.MIN_VALUE);
+	}
+
+	private int countBefore(long balance, int userId) {
+		int count = 0;
+		Node node = root;
+		while (node != null) {
+			int comparison = compare(balance, userId, node);
+			if (comparison < 0) {
+				node = node.left;
+			} else {
+				count += size(node.left);
+				if (comparison == 0) {
+					break;
+				}
+				count++;
+				node = node.right;
+			}
+		}
+		return count;
+	}
+
+	synchronized int size() {
+		return size(root);
+	}
+
+	/**
+	 * Begins a reconciliation, superseding any in progress. Updates made until it is
+	 * finished take precedence over the scanned balances
+	 *
+	 * @return the generation of the reconciliation
+	 */
+	synchronized long beginReconcile() {
+		return reconciliation.begin();
+	}
+
+	/**
+	 * Abandons a reconciliation begun with {@link #beginReconcile()}. Does nothing
+	 * if it has been superseded
+	 *
+	 * @param generation the generation of the reconciliation
+	 */
+	synchronized void cancelReconcile(long generation) {
+		reconciliation.cancel(generation);
+	}
+
+	/**
+	 * Finishes a reconciliation begun with {@link #beginReconcile()}. The scanned balances
+	 * are discarded if the reconciliation has been superseded or abandoned
+	 *
+	 * @param generation the generation of the reconciliation
+	 * @param scannedBalances all balances as scanned from the database
+	 */
+	synchronized void finishReconcile(long generation, Map<Integer, Long> scannedBalances) {
+		Set<Integer> updated = reconciliation.finish(generation);
+		if (updated == null) {
+			return;
+		}
+		for (Integer userId : List.copyOf(balances.keySet())) {
+			if (!scannedBalances.containsKey(userId) && !updated.contains(userId)) {
+				removeNow(userId);
+			}
+		}
+		scannedBalances.forEach((userId, balance) -> {
+			if (updated.contains(userId)) {
+				return;
+			}
+			Long current = balances.get(userId);
+			if (current == null || current != balance.longValue()) {
+				updateNow(userId, balance);
+			}
+		});
+	}
+
+}
@@ -21,11 +21,16 @@ package gg.solarmc.loader.credits;
 
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.data.DataObject;
+import gg.solarmc.loader.impl.ScaledDecimals;
+import gg.solarmc.loader.schema.routines.CreditsTransferBalance;
 import gg.solarmc.loader.schema.routines.CreditsWithdrawBalance;
 import org.jooq.DSLContext;
 import org.jooq.Record1;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
 import static gg.solarmc.loader.schema.Routines.creditsDepositBalance;
 import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
@@ -33,13 +38,43 @@ import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
 public abstract class Credits implements DataObject {
 
 	private final int userId;
+	private final CreditsManager manager;
 
-	Credits(int userId) {
+	Credits(int userId, CreditsManager manager) {
 		this.userId = userId;
+		this.manager = manager;
+	}
+
+	private void balanceChanged(Transaction transaction, BigDecimal newBalance) {
+		updateBalance(newBalance);
+		manager.balanceChanged(transaction, userId, newBalance);
 	}
 
 	abstract void updateBalance(BigDecimal newBalance);
 
+	long pendingDeposits() {
+		return manager.pendingDeposits(userId);
+	}
+
+	private static void checkReason(String reason) {
+		if (reason != null && reason.length() > LedgerWriter.MAX_REASON_LENGTH) {
+			throw new IllegalArgumentException("reason must be at most " + LedgerWriter.MAX_REASON_LENGTH + " characters");
+		}
+	}
+
+	/**
+	 * Gets the user's balance. For an online user, this is the cached current balance.
+	 * For an offline user, the balance is read from the database and cached briefly. <br>
+	 * <br>
+	 * Deferred deposits not yet written are included.
+	 *
+	 * @param transaction the transaction
+	 * @return the balance, or an empty optional if the user has no account
+	 */
+	public Optional<BigDecimal> getBalance(Transaction transaction) {
+		return manager.getBalance(transaction, userId);
+	}
+
 	/**
 	 * Withdraws from the user's account. Only succeeds if the user has enough balance.
 	 *
@@ -49,20 +84,64 @@ public abstract class Credits implements DataObject {
 	 * @throws IllegalArgumentException if {@code withdrawAmount} is negative or zero
 	 */
 	public WithdrawResult withdrawBalance(Transaction transaction, BigDecimal withdrawAmount) {
+		return withdrawBalance(transaction, withdrawAmount, null);
+	}
+
+	/**
+	 * Withdraws from the user's account, recording the given reason in the ledger if it is enabled.
+	 * Only succeeds if the user has enough balance.
+	 *
+	 * @param transaction the transaction
+	 * @param withdrawAmount the amount withdrawn
+	 * @param reason the reason for the ledger, may be null
+	 * @return a withdraw result indicating success or failure, as well as the new balance
+	 * @throws IllegalArgumentException if {@code withdrawAmount} is negative or zero, or the reason is too long
+	 */
+	public WithdrawResult withdrawBalance(Transaction transaction, BigDecimal withdrawAmount, String reason) {
 		if (withdrawAmount.compareTo(BigDecimal.ZERO) <= 0) {
 			throw new IllegalArgumentException("withdrawAmount must be positive");
 		}
+		checkReason(reason);
+		manager.flushPendingDeposits(transaction, userId);
+		WithdrawResult result = switch (manager.getConfiguration().withdrawMethod()) {
+			case ROUTINE -> withdrawUsingRoutine(transaction, withdrawAmount);
+			case CONDITIONAL_UPDATE -> withdrawUsingConditionalUpdate(transaction, withdrawAmount);
+		};
+		// New balance is always balance after operation
+		balanceChanged(transaction, result.newBalance());
+		if (result.isSuccessful()) {
+			manager.recordChange(transaction, userId, withdrawAmount.negate(), reason);
+		}
+		return result;
+	}
+
+	private WithdrawResult withdrawUsingRoutine(Transaction transaction, BigDecimal withdrawAmount) {
 		CreditsWithdrawBalance withdrawProcedure = new CreditsWithdrawBalance();
 		withdrawProcedure.setUserIdentifier(userId);
 		withdrawProcedure.setWithdrawAmount(withdrawAmount);
 		withdrawProcedure.execute(transaction.getProperty(DSLContext.class).configuration());
-		// New balance is always balance after operation
 		BigDecimal newBalance = withdrawProcedure.getNewBalance();
 		assert newBalance != null : "Remote routine returned null balance";
-		updateBalance(newBalance);
 		return new WithdrawResult(newBalance, withdrawProcedure.getSuccessful() == 1);
 	}
 
+	private WithdrawResult withdrawUsingConditionalUpdate(Transaction transaction, BigDecimal withdrawAmount) {
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		// If the update applied, the row stays locked, so the read sees exactly the new balance
+		int updateCount = context
+				.update(CREDITS)
+				.set(CREDITS.BALANCE, CREDITS.BALANCE.minus(withdrawAmount))
+				.where(CREDITS.USER_ID.eq(userId))
+				.and(CREDITS.BALANCE.ge(withdrawAmount))
+				.execute();
+		BigDecimal newBalance = context
+				.select(CREDITS.BALANCE)
+				.from(CREDITS)
+				.where(CREDITS.USER_ID.eq(userId))
+				.fetchSingle().value1();
+		return new WithdrawResult(newBalance, updateCount == 1);
+	}
+
 	/**
 	 * Deposits into the user's account. Cannot fail
 	 * @param transaction the transaction
@@ -71,33 +150,155 @@ public abstract class Credits implements DataObject {
 	 * @throws IllegalArgumentException if {@code depositAmount} is negative or zero
 	 */
 	public DepositResult depositBalance(Transaction transaction, BigDecimal depositAmount) {
+		return depositBalance(transaction, depositAmount, null);
+	}
+
+	/**
+	 * Deposits into the user's account, recording the given reason in the ledger if it is enabled.
+	 * Cannot fail
+	 *
+	 * @param transaction the transaction
+	 * @param depositAmount the amount to deposit
+	 * @param reason the reason for the ledger, may be null
+	 * @return a deposit result indicating the new balance
+	 * @throws IllegalArgumentException if {@code depositAmount} is negative or zero, or the reason is too long
+	 */
+	public DepositResult depositBalance(Transaction transaction, BigDecimal depositAmount, String reason) {
 		if (depositAmount.compareTo(BigDecimal.ZERO) <= 0) {
 			throw new IllegalArgumentException("depositAmount must be positive");
 		}
+		checkReason(reason);
 		Record1<BigDecimal> newBalanceRecord = transaction.getProperty(DSLContext.class)
 				.select(creditsDepositBalance(userId, depositAmount))
 				.fetchOne();
 		assert newBalanceRecord != null : "Remote routine returned null balance record";
 		BigDecimal newBalance = newBalanceRecord.value1();
-		updateBalance(newBalance);
+		balanceChanged(transaction, newBalance);
+		manager.recordChange(transaction, userId, depositAmount, reason);
 		return new DepositResult(newBalance);
 	}
 
+	/**
+	 * Deposits into the user's account without waiting on the database. Suited to frequent,
+	 * small amounts such as passive income. <br>
+	 * <br>
+	 * The amount is reflected immediately in {@link OnlineCredits#currentBalance()} and written
+	 * in the background, together with other deferred deposits. Pending amounts are always written
+	 * before a withdrawal, transfer or balance set on this account, and when the user logs out.
+	 *
+	 * @param depositAmount the amount to deposit
+	 * @throws IllegalArgumentException if {@code depositAmount} is negative or zero
+	 * @throws IllegalStateException if the data center is closed
+	 */
+	public void depositDeferred(BigDecimal depositAmount) {
+		long scaledAmount = ScaledDecimals.toScaled(depositAmount);
+		if (scaledAmount <= 0L) {
+			throw new IllegalArgumentException("depositAmount must be positive");
+		}
+		manager.depositDeferred(userId, scaledAmount);
+	}
+
+	/**
+	 * Transfers from this user's account to the recipient's account in a single round trip.
+	 * Only succeeds if this user has enough balance. <br>
+	 * <br>
+	 * Both accounts are locked in a consistent order, so concurrent transfers between
+	 * the same users cannot deadlock.
+	 *
+	 * @param transaction the transaction
+	 * @param recipient the account receiving the amount
+	 * @param transferAmount the amount transferred
+	 * @return a transfer result indicating success or failure, as well as both new balances
+	 * @throws IllegalArgumentException if {@code transferAmount} is negative or zero, or if the recipient
+	 * is this same user
+	 */
+	public TransferResult transferTo(Transaction transaction, Credits recipient, BigDecimal transferAmount) {
+		return transferTo(transaction, recipient, transferAmount, null);
+	}
+
+	/**
+	 * Transfers from this user's account to the recipient's account in a single round trip,
+	 * recording the given reason in the ledger for both users if it is enabled.
+	 * Only succeeds if this user has enough balance.
+	 *
+	 * @param transaction the transaction
+	 * @param recipient the account receiving the amount
+	 * @param transferAmount the amount transferred
+	 * @param reason the reason for the ledger, may be null
+	 * @return a transfer result indicating success or failure, as well as both new balances
+	 * @throws IllegalArgumentException if {@code transferAmount} is negative or zero, if the recipient
+	 * is this same user, or if the reason is too long
+	 * @throws IllegalStateException if either user has no account, in which case nothing is transferred
+	 */
+	public TransferResult transferTo(Transaction transaction, Credits recipient, BigDecimal transferAmount,
+									 String reason) {
+		if (transferAmount.compareTo(BigDecimal.ZERO) <= 0) {
+			throw new IllegalArgumentException("transferAmount must be positive");
+		}
+		checkReason(reason);
+		if (recipient.userId == userId) {
+			throw new IllegalArgumentException("Cannot transfer to oneself");
+		}
+		manager.flushPendingDeposits(transaction, userId, recipient.userId);
+		CreditsTransferBalance transferProcedure = new CreditsTransferBalance();
+		transferProcedure.setSenderId(userId);
+		transferProcedure.setRecipientId(recipient.userId);
+		transferProcedure.setTransferAmount(transferAmount);
+		transferProcedure.execute(transaction.getProperty(DSLContext.class).configuration());
+		// New balances are always balances after operation
+		BigDecimal newBalance = transferProcedure.getSenderBalance();
+		BigDecimal recipientNewBalance = transferProcedure.getRecipientBalance();
+		if (newBalance == null || recipientNewBalance == null) {
+			// Nothing was changed
+			throw new IllegalStateException("No credits account for user " +
+					((newBalance == null) ? userId : recipient.userId));
+		}
+		balanceChanged(transaction, newBalance);
+		recipient.balanceChanged(transaction, recipientNewBalance);
+		boolean successful = transferProcedure.getSuccessful() == 1;
+		if (successful) {
+			Map<Integer, BigDecimal> deltas = new LinkedHashMap<>(2);
+			deltas.put(userId, transferAmount.negate());
+			deltas.put(recipient.userId, transferAmount);
+			manager.recordChanges(transaction, deltas, reason);
+		}
+		return new TransferResult(newBalance, recipientNewBalance, successful);
+	}
+
 	/**
 	 * Sets the user's account balance. Cannot fail
 	 * @param transaction the transaction
 	 * @param newAmount amount to set to
 	 */
 	public void setBalance(Transaction transaction, BigDecimal newAmount) {
+		setBalance(transaction, newAmount, null);
+	}
+
+	/**
+	 * Sets the user's account balance, recording the difference with the previous balance
+	 * in the ledger, together with the given reason, if it is enabled. Cannot fail
+	 *
+	 * @param transaction the transaction
+	 * @param newAmount amount to set to
+	 * @param reason the reason for the ledger, may be null
+	 * @throws IllegalArgumentException if {@code newAmount} is negative or zero, or the reason is too long
+	 */
+	public void setBalance(Transaction transaction, BigDecimal newAmount, String reason) {
 		if (newAmount.compareTo(BigDecimal.ZERO) <= 0) {
 			throw new IllegalArgumentException("newAmount must be positive");
 		}
+		checkReason(reason);
+		// Deposits deferred before this call are superseded by it
+		manager.flushPendingDeposits(transaction, userId);
+		BigDecimal previousBalance = manager.lockBalanceBeforeSet(transaction, userId);
 		transaction.getProperty(DSLContext.class)
 				.update(CREDITS)
 				.set(CREDITS.BALANCE, newAmount)
 				.where(CREDITS.USER_ID.eq(userId))
 				.execute();
-		updateBalance(newAmount);
+		balanceChanged(transaction, newAmount);
+		BigDecimal delta = (previousBalance == null) ? BigDecimal.ZERO : newAmount.subtract(previousBalance);
+		manager.recordChange(transaction, userId, delta, reason);
 	}
 
 }
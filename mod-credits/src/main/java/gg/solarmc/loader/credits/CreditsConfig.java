@@ -21,12 +21,68 @@
 
 package gg.solarmc.loader.credits;
 
+import space.arim.dazzleconf.annote.ConfComments;
 import space.arim.dazzleconf.annote.ConfDefault;
 import space.arim.dazzleconf.annote.ConfHeader;
+import space.arim.dazzleconf.annote.ConfKey;
 
 @ConfHeader("Configuration details regarding credits")
 public interface CreditsConfig {
 
     @ConfDefault.DefaultDouble(50.0)
     double defaultBalance();
+
+    @ConfKey("enable-leaderboard-index")
+    @ConfComments({"Whether to keep an in-memory ranking of balances, used for top balances.",
+            "It is built at startup and reconciled with the database whenever caches are refreshed."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableLeaderboardIndex();
+
+    @ConfKey("enable-ledger")
+    @ConfComments({"Whether to record every change in balance made through deposits, withdrawals, transfers",
+            "and balance sets. Entries are written in the same transaction as the change, just before it commits."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableLedger();
+
+    @ConfKey("deferred-deposit-flush-interval-millis")
+    @ConfComments("How often deferred deposits, such as passive income, are written")
+    @ConfDefault.DefaultLong(5000L)
+    long deferredDepositFlushIntervalMillis();
+
+    @ConfKey("enable-deferred-deposit-journal")
+    @ConfComments({"Whether to also record deferred deposits in a local file until they are written,",
+            "so that they survive a crash. Amounts are applied exactly once, even if the crash",
+            "happens while they are being written."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableDeferredDepositJournal();
+
+    @ConfKey("enable-balance-change-feed")
+    @ConfComments({"Whether to poll for balance changes made by other servers, so that the cached balances",
+            "of online players stay up to date. Requires only the database.",
+            "Changes are only published by servers with the feed enabled, so enable it on all of them."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableBalanceChangeFeed();
+
+    @ConfKey("balance-change-poll-interval-millis")
+    @ConfComments("How often to poll for balance changes, if the feed is enabled")
+    @ConfDefault.DefaultLong(1000L)
+    long balanceChangePollIntervalMillis();
+
+    @ConfKey("offline-balance-cache-millis")
+    @ConfComments({"How long the balances of offline players are cached after being read.",
+            "Changes made through this server, or seen through the balance change feed, clear the cache."})
+    @ConfDefault.DefaultLong(5000L)
+    long offlineBalanceCacheMillis();
+
+    @ConfKey("withdraw-method")
+    @ConfComments({"How withdrawals are performed. ROUTINE calls the stored procedure.",
+            "CONDITIONAL_UPDATE uses a single UPDATE which only applies if the balance suffices,",
+            "followed by a read of the new balance."})
+    @ConfDefault.DefaultString("ROUTINE")
+    WithdrawMethod withdrawMethod();
+
+    enum WithdrawMethod {
+        ROUTINE,
+        CONDITIONAL_UPDATE
+    }
 }
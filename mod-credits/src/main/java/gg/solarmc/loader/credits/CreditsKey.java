@@ -33,6 +33,10 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class CreditsKey implements DataKey<OnlineCredits, Credits, CreditsManager> {
 
@@ -42,12 +46,44 @@ public class CreditsKey implements DataKey<OnlineCredits, Credits, CreditsManage
 
 	@Override
 	public DataLoader<OnlineCredits, Credits> createLoader(CreditsManager dataManager, DataKeyInitializationContext context) {
-		return new CreditsLoader(BigDecimal.valueOf(dataManager.getConfiguration().defaultBalance()));
+		return new CreditsLoader(dataManager, BigDecimal.valueOf(dataManager.getConfiguration().defaultBalance()));
 	}
 
 	@Override
 	public CreditsManager createDataManager(DataKeyInitializationContext context) {
-		return new CreditsManager(loadConfig(context.configFolder()));
+		CreditsConfig config = loadConfig(context.configFolder());
+		BalanceIndex balanceIndex = (config.enableLeaderboardIndex()) ? new BalanceIndex() : null;
+		Clock clock = context.omnibus().getRegistry().getProvider(Clock.class).orElseGet(Clock::systemUTC);
+		LedgerWriter ledger = (config.enableLedger()) ? new LedgerWriter(clock) : null;
+		DepositAccumulator depositAccumulator = new DepositAccumulator(
+				context.transactor(),
+				backgroundScheduler("DataLoader-CreditsDeposits"),
+				(config.enableDeferredDepositJournal()) ?
+						DepositJournal.open(context.configFolder().resolve("credits-deposits.journal")) : null);
+		depositAccumulator.initialize(context.transaction());
+		BalanceChangeFeed changeFeed = null;
+		if (config.enableBalanceChangeFeed()) {
+			changeFeed = new BalanceChangeFeed(
+					context.transactor(),
+					backgroundScheduler("DataLoader-CreditsChangeFeed"),
+					clock);
+			changeFeed.initialize(context.transaction());
+		}
+		CreditsManager manager = new CreditsManager(config, balanceIndex, ledger, depositAccumulator, changeFeed);
+		depositAccumulator.start(manager, Duration.ofMillis(config.deferredDepositFlushIntervalMillis()));
+		if (changeFeed != null) {
+			changeFeed.start(manager, Duration.ofMillis(config.balanceChangePollIntervalMillis()));
+		}
+		manager.refreshCaches(context.transaction());
+		return manager;
+	}
+
+	private static ScheduledExecutorService backgroundScheduler(String threadName) {
+		return Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	private CreditsConfig loadConfig(Path path) {
@@ -26,12 +26,17 @@ import org.jooq.DSLContext;
 import java.math.BigDecimal;
 
 import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
+import static gg.solarmc.loader.schema.tables.CreditsChanges.CREDITS_CHANGES;
+import static gg.solarmc.loader.schema.tables.CreditsDepositFlushes.CREDITS_DEPOSIT_FLUSHES;
+import static gg.solarmc.loader.schema.tables.CreditsLedger.CREDITS_LEDGER;
 
 class CreditsLoader implements DataLoader<OnlineCredits, Credits> {
 
+	private final CreditsManager manager;
 	private final BigDecimal defaultBigDecimalBalance;
 
-	CreditsLoader(BigDecimal defaultValue) {
+	CreditsLoader(CreditsManager manager, BigDecimal defaultValue) {
+		this.manager = manager;
 		defaultBigDecimalBalance = defaultValue;
 	}
 
@@ -50,18 +55,31 @@ class CreditsLoader implements DataLoader<OnlineCredits, Credits> {
 					.execute();
 			balance = defaultBigDecimalBalance;
 		}
-		return new OnlineCredits(userId, balance);
+		manager.balanceChanged(transaction, userId, balance);
+		OnlineCredits credits = new OnlineCredits(userId, manager, balance);
+		manager.registerOnline(userId, credits);
+		return credits;
 	}
 
 	@Override
 	public Credits createOfflineData(int userId) {
-		return new OfflineCredits(userId);
+		return new OfflineCredits(userId, manager);
+	}
+
+	@Override
+	public void unloadData(Transaction transaction, int userId) {
+		manager.flushPendingDeposits(transaction, userId);
+		// From now on the user's balance is that of an offline user
+		manager.unregisterOnline(userId);
 	}
 
 	@Override
 	public void wipeAllData(Transaction transaction) {
 		DSLContext context = transaction.getProperty(DSLContext.class);
 		context.deleteFrom(CREDITS).execute();
+		context.deleteFrom(CREDITS_LEDGER).execute();
+		context.deleteFrom(CREDITS_CHANGES).execute();
+		context.deleteFrom(CREDITS_DEPOSIT_FLUSHES).execute();
 	}
 
 }
@@ -19,35 +19,543 @@
 
 package gg.solarmc.loader.credits;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.data.DataManager;
+import gg.solarmc.loader.impl.ScaledDecimals;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.impl.DSL;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.Set;
 
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
 import static gg.solarmc.loader.schema.tables.CreditsWithNames.CREDITS_WITH_NAMES;
+import static gg.solarmc.loader.schema.tables.LatestNames.LATEST_NAMES;
 
 public class CreditsManager implements DataManager {
 
 	private final CreditsConfig configuration;
+	// Null if disabled
+	private final BalanceIndex balanceIndex;
+	// Null if disabled
+	private final LedgerWriter ledger;
+	private final DepositAccumulator depositAccumulator;
+	// Null if disabled
+	private final BalanceChangeFeed changeFeed;
+	// Users are removed when unloaded. Weak values only guard against users never unloaded
+	private final Cache<Integer, OnlineCredits> onlineCredits = Caffeine.newBuilder().weakValues().build();
+	private final Cache<Integer, BigDecimal> offlineBalances;
 
-	CreditsManager(CreditsConfig config) {
+	/**
+	 * Maximum users per statement for bulk operations
+	 */
+	private static final int BULK_CHUNK_SIZE = 1000;
+
+	CreditsManager(CreditsConfig config, BalanceIndex balanceIndex, LedgerWriter ledger,
+				   DepositAccumulator depositAccumulator, BalanceChangeFeed changeFeed) {
 		this.configuration = config;
+		this.balanceIndex = balanceIndex;
+		this.ledger = ledger;
+		this.depositAccumulator = depositAccumulator;
+		this.changeFeed = changeFeed;
+		offlineBalances = Caffeine.newBuilder()
+				.expireAfterWrite(Duration.ofMillis(config.offlineBalanceCacheMillis()))
+				.maximumSize(10_000L)
+				.build();
+	}
+
+	void depositDeferred(int userId, long scaledAmount) {
+		depositAccumulator.add(userId, scaledAmount);
+	}
+
+	long pendingDeposits(int userId) {
+		return depositAccumulator.pending(userId);
+	}
+
+	void flushPendingDeposits(Transaction transaction, int... userIds) {
+		depositAccumulator.flushUsers(transaction, userIds);
+	}
+
+	void recordChange(Transaction transaction, int userId, BigDecimal delta, String reason) {
+		recordChanges(transaction, Map.of(userId, delta), reason);
+	}
+
+	/**
+	 * Records changes in balance in the ledger and the feed of balance changes, if enabled
+	 *
+	 * @param transaction the transaction making the changes
+	 * @param deltas the change in balance of each user ID, in the order the changes were made
+	 * @param reason the reason for the ledger, may be null
+	 */
+	void recordChanges(Transaction transaction, Map<Integer, BigDecimal> deltas, String reason) {
+		if (ledger != null) {
+			List<LedgerWriter.Entry> entries = new ArrayList<>(deltas.size());
+			deltas.forEach((userId, delta) -> {
+				if (delta.signum() != 0) {
+					entries.add(new LedgerWriter.Entry(userId, delta, reason));
+				}
+			});
+			ledger.record(transaction, entries);
+		}
+		if (changeFeed != null) {
+			changeFeed.record(transaction, deltas.keySet());
+		}
+	}
+
+	/**
+	 * Gets the balance of a user about to be set, locking the account. Only needed for the ledger
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @return the balance, or null if the ledger is disabled or the user has no account
+	 */
+	BigDecimal lockBalanceBeforeSet(Transaction transaction, int userId) {
+		if (ledger == null) {
+			return null;
+		}
+		return transaction.getProperty(DSLContext.class)
+				.select(CREDITS.BALANCE)
+				.from(CREDITS)
+				.where(CREDITS.USER_ID.eq(userId))
+				.forUpdate()
+				.fetchOne(CREDITS.BALANCE);
+	}
+
+	/**
+	 * Begins listing a user's ledger history, most recent first. Gives the first page,
+	 * from which it is possible to navigate to older pages. <br>
+	 * <br>
+	 * Entries are only recorded while the ledger is enabled, and are written in the same
+	 * transaction as the change they record.
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @param pageSize the maximum number of entries on each page
+	 * @return the first page of entries, or an empty optional if there are none
+	 * @throws IllegalArgumentException if {@code pageSize} is not positive
+	 */
+	public Optional<LedgerPage> getHistory(Transaction transaction, int userId, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be positive");
+		}
+		return LedgerHistoryPage.fetchPage(transaction, userId, pageSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Notes a change of balance made in the given transaction. The leaderboard index is
+	 * only updated once the transaction commits
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @param newBalance the new balance, or null if the user has no account
+	 */
+	void balanceChanged(Transaction transaction, int userId, BigDecimal newBalance) {
+		offlineBalances.invalidate(userId);
+		if (newBalance == null) {
+			// The user has no account, such as after a withdrawal from a missing account
+			return;
+		}
+		transaction.getProperty(TransactionCallbacks.class).afterCommit(() -> {
+			// Another transaction may have cached the balance before this one committed
+			offlineBalances.invalidate(userId);
+			if (balanceIndex != null) {
+				balanceIndex.update(userId, ScaledDecimals.toScaled(newBalance));
+			}
+		});
+	}
+
+	void depositsRolledBack(Map<Integer, Long> scaledAmounts) {
+		scaledAmounts.forEach((userId, amount) -> {
+			offlineBalances.invalidate(userId);
+			OnlineCredits online = onlineCredits.getIfPresent(userId);
+			if (online != null) {
+				online.revertDeposit(amount);
+			}
+		});
+	}
+
+	void registerOnline(int userId, OnlineCredits credits) {
+		onlineCredits.put(userId, credits);
+	}
+
+	void unregisterOnline(int userId) {
+		onlineCredits.invalidate(userId);
+	}
+
+	/**
+	 * Rereads the balances of those of the given users who are online on this node, and
+	 * forgets the cached balances of the others
+	 *
+	 * @param transaction the transaction
+	 * @param userIds the user IDs
+	 */
+	void refreshOnlineBalances(Transaction transaction, Set<Integer> userIds) {
+		offlineBalances.invalidateAll(userIds);
+		List<Integer> onlineUserIds = new ArrayList<>();
+		for (Integer userId : userIds) {
+			if (onlineCredits.getIfPresent(userId) != null) {
+				onlineUserIds.add(userId);
+			}
+		}
+		if (onlineUserIds.isEmpty()) {
+			return;
+		}
+		Map<Integer, BigDecimal> balances = new HashMap<>(onlineUserIds.size());
+		for (List<Integer> chunk : chunks(onlineUserIds)) {
+			fetchNewBalances(transaction.getProperty(DSLContext.class), chunk, balances);
+		}
+		bulkBalancesChanged(transaction, balances);
+	}
+
+	/**
+	 * Deposits into the accounts of many users at once, using a few set-based statements
+	 * rather than one routine call per user. Users with no account are ignored.
+	 *
+	 * @param transaction the transaction
+	 * @param depositAmounts the amount to deposit for each user ID
+	 * @return the new balance of each user whose account was deposited into
+	 * @throws IllegalArgumentException if any deposit amount is negative or zero
+	 */
+	public Map<Integer, BigDecimal> depositAll(Transaction transaction, Map<Integer, BigDecimal> depositAmounts) {
+		for (BigDecimal depositAmount : depositAmounts.values()) {
+			if (depositAmount.compareTo(BigDecimal.ZERO) <= 0) {
+				throw new IllegalArgumentException("depositAmount must be positive");
+			}
+		}
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		Map<Integer, BigDecimal> newBalances = new HashMap<>(depositAmounts.size());
+		// Sorted, so that concurrent bulk deposits lock accounts in the same order
+		List<Integer> userIds = depositAmounts.keySet().stream().sorted().toList();
+		for (List<Integer> chunk : chunks(userIds)) {
+			Map<Integer, BigDecimal> chunkAmounts = new HashMap<>(chunk.size());
+			for (Integer userId : chunk) {
+				chunkAmounts.put(userId, depositAmounts.get(userId));
+			}
+			context.update(CREDITS)
+					.set(CREDITS.BALANCE, CREDITS.BALANCE.plus(DSL.case_(CREDITS.USER_ID).mapValues(chunkAmounts)))
+					.where(CREDITS.USER_ID.in(chunk))
+					.execute();
+			fetchNewBalances(context, chunk, newBalances);
+		}
+		Map<Integer, BigDecimal> deltas = new HashMap<>(newBalances.size());
+		for (Integer userId : newBalances.keySet()) {
+			deltas.put(userId, depositAmounts.get(userId));
+		}
+		recordChanges(transaction, deltas, null);
+		bulkBalancesChanged(transaction, newBalances);
+		return newBalances;
+	}
+
+	/**
+	 * Deposits the same amount into the accounts of many users at once, using a few set-based
+	 * statements rather than one routine call per user. Users with no account are ignored.
+	 *
+	 * @param transaction the transaction
+	 * @param userIds the user IDs
+	 * @param depositAmount the amount to deposit for each user
+	 * @return the new balance of each user whose account was deposited into
+	 * @throws IllegalArgumentException if {@code depositAmount} is negative or zero
+	 */
+	public Map<Integer, BigDecimal> depositAll(Transaction transaction, Collection<Integer> userIds,
+											   BigDecimal depositAmount) {
+		if (depositAmount.compareTo(BigDecimal.ZERO) <= 0) {
+			throw new IllegalArgumentException("depositAmount must be positive");
+		}
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		Map<Integer, BigDecimal> newBalances = new HashMap<>(userIds.size());
+		for (List<Integer> chunk : chunks(List.copyOf(Set.copyOf(userIds)))) {
+			context.update(CREDITS)
+					.set(CREDITS.BALANCE, CREDITS.BALANCE.plus(depositAmount))
+					.where(CREDITS.USER_ID.in(chunk))
+					.execute();
+			fetchNewBalances(context, chunk, newBalances);
+		}
+		Map<Integer, BigDecimal> deltas = new HashMap<>(newBalances.size());
+		for (Integer userId : newBalances.keySet()) {
+			deltas.put(userId, depositAmount);
+		}
+		recordChanges(transaction, deltas, null);
+		bulkBalancesChanged(transaction, newBalances);
+		return newBalances;
+	}
+
+	private static List<List<Integer>> chunks(List<Integer> userIds) {
+		List<List<Integer>> chunks = new ArrayList<>();
+		for (int start = 0; start < userIds.size(); start += BULK_CHUNK_SIZE) {
+			chunks.add(userIds.subList(start, Math.min(start + BULK_CHUNK_SIZE, userIds.size())));
+		}
+		return chunks;
+	}
+
+	private static void fetchNewBalances(DSLContext context, List<Integer> userIds,
+										 Map<Integer, BigDecimal> newBalances) {
+		context.select(CREDITS.USER_ID, CREDITS.BALANCE)
+				.from(CREDITS)
+				.where(CREDITS.USER_ID.in(userIds))
+				.fetch()
+				.forEach((record) -> newBalances.put(record.value1(), record.value2()));
+	}
+
+	private void bulkBalancesChanged(Transaction transaction, Map<Integer, BigDecimal> newBalances) {
+		newBalances.forEach((userId, newBalance) -> {
+			OnlineCredits online = onlineCredits.getIfPresent(userId);
+			if (online != null) {
+				online.updateBalance(newBalance);
+			}
+			balanceChanged(transaction, userId, newBalance);
+		});
 	}
 
+	/**
+	 * Gets the highest balances
+	 *
+	 * @param transaction the transaction
+	 * @param limit the maximum amount of entries
+	 * @return the top balances, highest first
+	 */
 	public List<TopBalanceEntry> getTopBalances(Transaction transaction, int limit) {
+		return getTopBalances(transaction, 0, limit);
+	}
+
+	/**
+	 * Gets a page of the highest balances. <br>
+	 * <br>
+	 * If the leaderboard index is enabled, balances are served from memory and only the
+	 * usernames are queried. Users without a known username are omitted.
+	 *
+	 * @param transaction the transaction
+	 * @param offset the number of highest balances to skip
+	 * @param limit the maximum amount of entries
+	 * @return the top balances, highest first
+	 * @throws IllegalArgumentException if {@code offset} is negative
+	 */
+	public List<TopBalanceEntry> getTopBalances(Transaction transaction, int offset, int limit) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative");
+		}
+		if (balanceIndex != null) {
+			return getTopBalancesFromIndex(transaction, offset, limit);
+		}
 		return transaction.getProperty(DSLContext.class)
 				.select(CREDITS_WITH_NAMES.USER_ID, CREDITS_WITH_NAMES.USERNAME, CREDITS_WITH_NAMES.BALANCE)
 				.from(CREDITS_WITH_NAMES)
-				.orderBy(CREDITS_WITH_NAMES.BALANCE.desc()).limit(limit)
+				.orderBy(CREDITS_WITH_NAMES.BALANCE.desc()).limit(limit).offset(offset)
 				.fetch((rowRecord) -> new TopBalanceEntry(
 						rowRecord.get(CREDITS_WITH_NAMES.USER_ID),
 						rowRecord.get(CREDITS_WITH_NAMES.USERNAME),
 						rowRecord.get(CREDITS_WITH_NAMES.BALANCE)));
 	}
 
+	private List<TopBalanceEntry> getTopBalancesFromIndex(Transaction transaction, int offset, int limit) {
+		List<BalanceIndex.RankedBalance> page = balanceIndex.range(offset, limit);
+		if (page.isEmpty()) {
+			return List.of();
+		}
+		List<Integer> userIds = new ArrayList<>(page.size());
+		for (BalanceIndex.RankedBalance rankedBalance : page) {
+			userIds.add(rankedBalance.userId());
+		}
+		Map<Integer, String> usernames = transaction.getProperty(DSLContext.class)
+				.select(LATEST_NAMES.USER_ID, LATEST_NAMES.USERNAME)
+				.from(LATEST_NAMES)
+				.where(LATEST_NAMES.USER_ID.in(userIds))
+				.fetchMap(LATEST_NAMES.USER_ID, LATEST_NAMES.USERNAME);
+		List<TopBalanceEntry> topBalances = new ArrayList<>(page.size());
+		for (BalanceIndex.RankedBalance rankedBalance : page) {
+			String username = usernames.get(rankedBalance.userId());
+			if (username != null) {
+				topBalances.add(new TopBalanceEntry(
+						rankedBalance.userId(), username, ScaledDecimals.toDecimal(rankedBalance.balance())));
+			}
+		}
+		return topBalances;
+	}
+
+	/**
+	 * Gets the balance of a user
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @return the balance, or an empty optional if the user has no account
+	 * @see #getBalances(Transaction, Collection)
+	 */
+	Optional<BigDecimal> getBalance(Transaction transaction, int userId) {
+		return Optional.ofNullable(getBalances(transaction, List.of(userId)).get(userId));
+	}
+
+	/**
+	 * Gets the balances of many users at once. <br>
+	 * <br>
+	 * The balances of users online on this node are taken from memory. Those of other users
+	 * are cached briefly, and read from the database using a few set-based queries if not cached.
+	 * Cached balances are forgotten when changed through this node, or when a change is seen
+	 * through the balance change feed. Deferred deposits not yet written are included.
+	 *
+	 * @param transaction the transaction
+	 * @param userIds the user IDs
+	 * @return the balance of each user who has an account
+	 */
+	public Map<Integer, BigDecimal> getBalances(Transaction transaction, Collection<Integer> userIds) {
+		Map<Integer, BigDecimal> balances = new HashMap<>(userIds.size());
+		List<Integer> uncachedUserIds = new ArrayList<>();
+		for (Integer userId : Set.copyOf(userIds)) {
+			OnlineCredits online = onlineCredits.getIfPresent(userId);
+			if (online != null) {
+				balances.put(userId, online.currentBalance());
+				continue;
+			}
+			BigDecimal cached = offlineBalances.getIfPresent(userId);
+			if (cached != null) {
+				balances.put(userId, withPendingDeposits(userId, cached));
+			} else {
+				uncachedUserIds.add(userId);
+			}
+		}
+		if (uncachedUserIds.isEmpty()) {
+			return balances;
+		}
+		Map<Integer, BigDecimal> fetchedBalances = new HashMap<>(uncachedUserIds.size());
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		for (List<Integer> chunk : chunks(uncachedUserIds)) {
+			fetchNewBalances(context, chunk, fetchedBalances);
+		}
+		offlineBalances.putAll(fetchedBalances);
+		fetchedBalances.forEach((userId, balance) -> balances.put(userId, withPendingDeposits(userId, balance)));
+		return balances;
+	}
+
+	private BigDecimal withPendingDeposits(int userId, BigDecimal storedBalance) {
+		long pending = pendingDeposits(userId);
+		if (pending == 0L) {
+			return storedBalance;
+		}
+		return ScaledDecimals.toDecimal(ScaledDecimals.add(ScaledDecimals.toScaled(storedBalance), pending));
+	}
+
+	/**
+	 * Gets the rank of a user by balance, where 1 is the highest balance. Users with equal
+	 * balances share a rank. <br>
+	 * <br>
+	 * If the leaderboard index is enabled, the rank is computed in memory without querying.
+	 * Otherwise, it is computed by counting the greater balances using the balance index.
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @return the rank, or an empty optional if the user has no account
+	 */
+	public OptionalInt getRank(Transaction transaction, int userId) {
+		if (balanceIndex != null) {
+			int rank = balanceIndex.rank(userId);
+			return (rank == 0) ? OptionalInt.empty() : OptionalInt.of(rank);
+		}
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		BigDecimal balance = fetchBalance(context, userId);
+		if (balance == null) {
+			return OptionalInt.empty();
+		}
+		int greaterCount = context
+				.selectCount()
+				.from(CREDITS)
+				.where(CREDITS.BALANCE.gt(balance))
+				.fetchSingle().value1();
+		return OptionalInt.of(greaterCount + 1);
+	}
+
+	/**
+	 * Gets the percentage of users whose balance is lower than that of the given user. <br>
+	 * <br>
+	 * If the leaderboard index is enabled, the percentile is computed in memory without querying.
+	 * Otherwise, it requires scanning the balance index, so the index should be enabled if this
+	 * is called frequently.
+	 *
+	 * @param transaction the transaction
+	 * @param userId the user ID
+	 * @return the percentage, from 0 inclusive to 100 exclusive, or an empty optional if the user has no account
+	 */
+	public OptionalDouble getPercentile(Transaction transaction, int userId) {
+		if (balanceIndex != null) {
+			return balanceIndex.percentile(userId);
+		}
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		BigDecimal balance = fetchBalance(context, userId);
+		if (balance == null) {
+			return OptionalDouble.empty();
+		}
+		Record2<Integer, Integer> counts = context
+				.select(DSL.count(), DSL.count().filterWhere(CREDITS.BALANCE.lt(balance)))
+				.from(CREDITS)
+				.fetchSingle();
+		return OptionalDouble.of(100.0 * counts.value2() / counts.value1());
+	}
+
+	private static BigDecimal fetchBalance(DSLContext context, int userId) {
+		return context
+				.select(CREDITS.BALANCE)
+				.from(CREDITS)
+				.where(CREDITS.USER_ID.eq(userId))
+				.fetchOne(CREDITS.BALANCE);
+	}
+
 	public CreditsConfig getConfiguration() {
 		return configuration;
 	}
 
+	/**
+	 * Prunes old entries from the feed of balance changes, whether or not the feed is enabled,
+	 * and reconciles the leaderboard index, if enabled, with a streaming scan of all balances
+	 *
+	 * @param transaction the transaction
+	 */
+	@Override
+	public void refreshCaches(Transaction transaction) {
+		BalanceChangeFeed.prune(transaction);
+		if (balanceIndex != null) {
+			reconcileIndex(transaction);
+		}
+	}
+
+	private void reconcileIndex(Transaction transaction) {
+		long generation = balanceIndex.beginReconcile();
+		Map<Integer, Long> scannedBalances = new HashMap<>();
+		try (Cursor<Record2<Integer, BigDecimal>> cursor = transaction.getProperty(DSLContext.class)
+				.select(CREDITS.USER_ID, CREDITS.BALANCE)
+				.from(CREDITS)
+				.fetchSize(1000)
+				.fetchLazy()) {
+			for (Record2<Integer, BigDecimal> record : cursor) {
+				scannedBalances.put(record.value1(), ScaledDecimals.toScaled(record.value2()));
+			}
+		} catch (RuntimeException ex) {
+			balanceIndex.cancelReconcile(generation);
+			throw ex;
+		}
+		balanceIndex.finishReconcile(generation, scannedBalances);
+	}
+
+	/**
+	 * Stops polling balance changes, then writes any deferred deposits
+	 *
+	 */
+	@Override
+	public void close() {
+		if (changeFeed != null) {
+			changeFeed.close();
+		}
+		depositAccumulator.close();
+	}
+
 }
@@ -0,0 +1,374 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.Transactor;
+import gg.solarmc.loader.impl.ScaledDecimals;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static gg.solarmc.loader.schema.tables.CreditsDepositFlushes.CREDITS_DEPOSIT_FLUSHES;
+
+/**
+ * Accumulates deferred deposits in memory and writes them in batches. <br>
+ * <br>
+ * Each user's pending amount is a striped counter, so that frequent small deposits
+ * neither contend with each other nor wait on the database. Pending amounts are written
+ * periodically, when the user logs out, before any operation on the user's account which
+ * depends on the balance, and when the manager is closed. A user's counters are discarded
+ * once everything deposited has been written. Deposits are refused once closed, since they
+ * would never be written. <br>
+ * <br>
+ * If a journal is used, every change is also written to it, and all changes are serialized
+ * so that the journal and the counters agree. Each write records a flush ID in the database,
+ * which the journal refers to, so that replaying the journal never repeats a committed write.
+ */
+final class DepositAccumulator implements AutoCloseable {
+
+	private final Transactor transactor;
+	private final ScheduledExecutorService scheduler;
+	// Null if disabled
+	private final DepositJournal journal;
+	private final ConcurrentMap<Integer, UserDeposits> deposits = new ConcurrentHashMap<>();
+	private volatile CreditsManager manager;
+	// Read locked while adding, so that no deposit is added once closing has begun
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	// Guarded by closeLock
+	private boolean closed;
+
+	// Guarded by this
+	private final Map<Long, Map<Integer, Long>> uncommittedFlushes = new HashMap<>();
+	// Guarded by this
+	private final Set<Long> committedFlushes = new HashSet<>();
+
+	DepositAccumulator(Transactor transactor, ScheduledExecutorService scheduler, DepositJournal journal) {
+		this.transactor = transactor;
+		this.scheduler = scheduler;
+		this.journal = journal;
+	}
+
+	private static final class UserDeposits {
+
+		/**
+		 * Amounts not yet written
+		 */
+		final LongAdder pending = new LongAdder();
+		/**
+		 * Amounts being written by a transaction which has not yet completed
+		 */
+		final AtomicLong inFlight = new AtomicLong();
+
+		long outstanding() {
+			return pending.sum() + inFlight.get();
+		}
+	}
+
+	/**
+	 * Amounts drained from the counters, to be written by one transaction
+	 */
+	private static final class Flush {
+
+		final Map<Integer, Long> amounts;
+		long flushId;
+		boolean balancesUpdated;
+
+		Flush(Map<Integer, Long> amounts) {
+			this.amounts = amounts;
+		}
+	}
+
+	/**
+	 * Replays the journal, if used. Called before the accumulator is started
+	 *
+	 * @param transaction the transaction
+	 */
+	void initialize(Transaction transaction) {
+		if (journal == null) {
+			return;
+		}
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		Map<Integer, Long> outstanding = journal.replay((flushIds) -> Set.copyOf(context
+				.select(CREDITS_DEPOSIT_FLUSHES.FLUSH_ID)
+				.from(CREDITS_DEPOSIT_FLUSHES)
+				.where(CREDITS_DEPOSIT_FLUSHES.FLUSH_ID.in(flushIds))
+				.fetch(CREDITS_DEPOSIT_FLUSHES.FLUSH_ID)));
+		outstanding.forEach(this::addNow);
+	}
+
+	void start(CreditsManager manager, Duration flushInterval) {
+		this.manager = manager;
+		long intervalMillis = flushInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds a deposit to be written later
+	 *
+	 * @param userId the user ID
+	 * @param amount the scaled amount
+	 * @throws IllegalStateException if closed
+	 */
+	void add(int userId, long amount) {
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Deferred deposits are no longer accepted");
+			}
+			if (journal == null) {
+				addNow(userId, amount);
+				return;
+			}
+			synchronized (this) {
+				journal.append(userId, amount);
+				addNow(userId, amount);
+			}
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	private void addNow(int userId, long amount) {
+		// Atomic with respect to the removal of settled counters
+		deposits.compute(userId, (id, userDeposits) -> {
+			if (userDeposits == null) {
+				userDeposits = new UserDeposits();
+			}
+			userDeposits.pending.add(amount);
+			return userDeposits;
+		});
+	}
+
+	/**
+	 * Gets the amount deposited for a user but not yet written
+	 *
+	 * @param userId the user ID
+	 * @return the scaled pending amount
+	 */
+	long pending(int userId) {
+		UserDeposits userDeposits = deposits.get(userId);
+		return (userDeposits == null) ? 0L : userDeposits.pending.sum();
+	}
+
+	private long drain(UserDeposits userDeposits) {
+		if (journal == null) {
+			return drainNow(userDeposits);
+		}
+		synchronized (this) {
+			return drainNow(userDeposits);
+		}
+	}
+
+	private static long drainNow(UserDeposits userDeposits) {
+		long amount = userDeposits.pending.sum();
+		if (amount != 0L) {
+			// Never let the amount go unaccounted for while it moves
+			userDeposits.inFlight.addAndGet(amount);
+			userDeposits.pending.add(-amount);
+		}
+		return amount;
+	}
+
+	private void settle(Flush flush) {
+		if (journal == null) {
+			settleNow(flush);
+			return;
+		}
+		synchronized (this) {
+			settleNow(flush);
+			uncommittedFlushes.remove(flush.flushId);
+			committedFlushes.add(flush.flushId);
+		}
+	}
+
+	private void settleNow(Flush flush) {
+		flush.amounts.forEach((userId, amount) -> {
+			deposits.computeIfPresent(userId, (id, userDeposits) -> {
+				userDeposits.inFlight.addAndGet(-amount);
+				return (userDeposits.outstanding() == 0L) ? null : userDeposits;
+			});
+		});
+	}
+
+	private void restore(Flush flush) {
+		if (journal == null) {
+			restoreNow(flush);
+		} else {
+			synchronized (this) {
+				restoreNow(flush);
+				// The settlement stays in the journal, but its flush ID was never committed
+				uncommittedFlushes.remove(flush.flushId);
+			}
+		}
+		if (flush.balancesUpdated) {
+			// The cached balances count the amounts, which are pending once more
+			manager.depositsRolledBack(flush.amounts);
+		}
+	}
+
+	private void restoreNow(Flush flush) {
+		flush.amounts.forEach((userId, amount) -> {
+			// Present as long as the amount is in flight
+			UserDeposits userDeposits = deposits.get(userId);
+			userDeposits.pending.add(amount);
+			userDeposits.inFlight.addAndGet(-amount);
+		});
+	}
+
+	/**
+	 * Writes the pending amounts of the given users within the given transaction. The
+	 * accounts are updated in a single statement, and so are locked in a consistent order
+	 *
+	 * @param transaction the transaction
+	 * @param userIds the user IDs
+	 */
+	void flushUsers(Transaction transaction, int... userIds) {
+		Map<Integer, Long> scaledAmounts = new HashMap<>();
+		for (int userId : userIds) {
+			UserDeposits userDeposits = deposits.get(userId);
+			if (userDeposits == null) {
+				continue;
+			}
+			long amount = drain(userDeposits);
+			if (amount != 0L) {
+				scaledAmounts.put(userId, amount);
+			}
+		}
+		if (scaledAmounts.isEmpty()) {
+			return;
+		}
+		Flush flush = new Flush(scaledAmounts);
+		TransactionCallbacks callbacks = transaction.getProperty(TransactionCallbacks.class);
+		callbacks.afterCommit(() -> settle(flush));
+		callbacks.afterRollback(() -> restore(flush));
+		if (journal != null) {
+			Record1<Long> flushIdRecord = transaction.getProperty(DSLContext.class)
+					.insertInto(CREDITS_DEPOSIT_FLUSHES)
+					.defaultValues()
+					.returningResult(CREDITS_DEPOSIT_FLUSHES.FLUSH_ID)
+					.fetchOne();
+			assert flushIdRecord != null : "No generated flush ID";
+			flush.flushId = flushIdRecord.value1();
+			synchronized (this) {
+				journal.appendSettlement(flush.flushId, scaledAmounts);
+				uncommittedFlushes.put(flush.flushId, scaledAmounts);
+			}
+		}
+		Map<Integer, BigDecimal> amounts = new HashMap<>(scaledAmounts.size());
+		scaledAmounts.forEach((userId, amount) -> amounts.put(userId, ScaledDecimals.toDecimal(amount)));
+		manager.depositAll(transaction, amounts);
+		flush.balancesUpdated = true;
+	}
+
+	private Logger logger() {
+		return LoggerFactory.getLogger(getClass());
+	}
+
+	private void flush() {
+		try {
+			transactor.runTransact(this::flushAll).join();
+		} catch (RuntimeException ex) {
+			// Pending amounts were restored and will be retried with the next flush
+			logger().warn("Failed to write deferred credits deposits", ex);
+			return;
+		}
+		if (journal != null) {
+			compactJournal();
+		}
+	}
+
+	private void flushAll(Transaction transaction) {
+		flushUsers(transaction, deposits.keySet().stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	private void compactJournal() {
+		List<Long> obsoleteFlushes;
+		synchronized (this) {
+			Map<Integer, Long> outstanding = new HashMap<>();
+			deposits.forEach((userId, userDeposits) -> outstanding.put(userId, userDeposits.outstanding()));
+			try {
+				journal.compact(outstanding, uncommittedFlushes);
+			} catch (RuntimeException ex) {
+				logger().warn("Failed to compact credits deposit journal", ex);
+				return;
+			}
+			// The compacted journal no longer refers to these
+			obsoleteFlushes = new ArrayList<>(committedFlushes);
+			committedFlushes.clear();
+		}
+		if (obsoleteFlushes.isEmpty()) {
+			return;
+		}
+		try {
+			transactor.runTransact((tx) -> {
+				tx.getProperty(DSLContext.class)
+						.deleteFrom(CREDITS_DEPOSIT_FLUSHES)
+						.where(CREDITS_DEPOSIT_FLUSHES.FLUSH_ID.in(obsoleteFlushes))
+						.execute();
+			}).join();
+		} catch (RuntimeException ex) {
+			// Harmless, since nothing refers to them
+			logger().warn("Failed to delete obsolete credits deposit flush IDs", ex);
+		}
+	}
+
+	@Override
+	public void close() {
+		closeLock.writeLock().lock();
+		try {
+			closed = true;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		scheduler.shutdown();
+		try {
+			if (!scheduler.awaitTermination(10L, TimeUnit.SECONDS)) {
+				logger().warn("Failed to await termination of deferred credits deposits flushing");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		if (journal != null) {
+			journal.close();
+		}
+	}
+
+}
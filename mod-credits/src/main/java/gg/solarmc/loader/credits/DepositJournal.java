@@ -0,0 +1,228 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Local file recording deferred deposits not yet written to the database. <br>
+ * <br>
+ * The file is a log of changes, one line per change, where amounts are scaled longs. Deposits
+ * append a positive {@code userId amount} line. Before a write of deposits commits, a negative
+ * {@code userId amount flushId} line is appended for each user, where the flush ID is recorded
+ * in the database by the same transaction. Summing the lines per user, counting only the negative
+ * lines whose flush committed, gives the outstanding amounts, so a crash at any point neither
+ * loses nor repeats a deposit. <br>
+ * <br>
+ * Lines are handed to the operating system as soon as they are written, so the journal survives
+ * a crash of the server process. A final line left incomplete by a crash is ignored. <br>
+ * <br>
+ * Not thread safe. Callers must synchronize.
+ */
+final class DepositJournal implements AutoCloseable {
+
+	private final Path path;
+	private BufferedWriter writer;
+
+	private DepositJournal(Path path, BufferedWriter writer) {
+		this.path = path;
+		this.writer = writer;
+	}
+
+	private static BufferedWriter openWriter(Path path) throws IOException {
+		return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Opens the journal, creating it if it does not exist
+	 *
+	 * @param path the journal file
+	 * @return the journal
+	 * @throws UncheckedIOException if opening failed
+	 */
+	static DepositJournal open(Path path) {
+		try {
+			return new DepositJournal(path, openWriter(path));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private record Line(int userId, long amount, long flushId) {
+
+		static final long NO_FLUSH = 0L;
+
+		static Line parse(String line) {
+			int separator = line.indexOf(' ');
+			if (separator == -1) {
+				throw new IllegalStateException("Malformed deposit journal line: " + line);
+			}
+			int userId = Integer.parseInt(line, 0, separator, 10);
+			int flushSeparator = line.indexOf(' ', separator + 1);
+			if (flushSeparator == -1) {
+				return new Line(userId, Long.parseLong(line, separator + 1, line.length(), 10), NO_FLUSH);
+			}
+			return new Line(userId,
+					Long.parseLong(line, separator + 1, flushSeparator, 10),
+					Long.parseLong(line, flushSeparator + 1, line.length(), 10));
+		}
+	}
+
+	/**
+	 * Reads the outstanding amounts left in the journal
+	 *
+	 * @param committedFlushes given the flush IDs found in the journal, determines which of them committed
+	 * @return the outstanding scaled amount for each user ID, excluding zero amounts
+	 * @throws UncheckedIOException if reading failed
+	 */
+	Map<Integer, Long> replay(UnaryOperator<Set<Long>> committedFlushes) {
+		String content;
+		try {
+			content = Files.readString(path, StandardCharsets.UTF_8);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		List<Line> lines = new ArrayList<>();
+		Set<Long> flushIds = new HashSet<>();
+		int lineStart = 0;
+		int lineEnd;
+		// Only complete lines count
+		while ((lineEnd = content.indexOf('\n', lineStart)) != -1) {
+			Line line = Line.parse(content.substring(lineStart, lineEnd));
+			lineStart = lineEnd + 1;
+			lines.add(line);
+			if (line.flushId() != Line.NO_FLUSH) {
+				flushIds.add(line.flushId());
+			}
+		}
+		Set<Long> committed = (flushIds.isEmpty()) ? Set.of() : committedFlushes.apply(flushIds);
+		Map<Integer, Long> outstanding = new HashMap<>();
+		for (Line line : lines) {
+			if (line.flushId() == Line.NO_FLUSH || committed.contains(line.flushId())) {
+				outstanding.merge(line.userId(), line.amount(), Long::sum);
+			}
+		}
+		outstanding.values().removeIf((amount) -> amount == 0L);
+		return outstanding;
+	}
+
+	private void write(String line) {
+		try {
+			writer.write(line);
+			writer.flush();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Appends a deposit for a user
+	 *
+	 * @param userId the user ID
+	 * @param amount the scaled amount
+	 * @throws UncheckedIOException if writing failed
+	 */
+	void append(int userId, long amount) {
+		write(userId + " " + amount + '\n');
+	}
+
+	/**
+	 * Appends the settlement of the deposits written by a flush which is about to commit
+	 *
+	 * @param flushId the flush ID, recorded in the database by the same transaction
+	 * @param amounts the scaled amount written for each user ID
+	 * @throws UncheckedIOException if writing failed
+	 */
+	void appendSettlement(long flushId, Map<Integer, Long> amounts) {
+		StringBuilder lines = new StringBuilder();
+		amounts.forEach((userId, amount) -> appendSettlementLine(lines, flushId, userId, amount));
+		write(lines.toString());
+	}
+
+	private static void appendSettlementLine(StringBuilder lines, long flushId, int userId, long amount) {
+		lines.append(userId).append(' ').append(-amount).append(' ').append(flushId).append('\n');
+	}
+
+	/**
+	 * Replaces the journal with one containing only the given outstanding amounts, and the
+	 * settlements of flushes which have not yet committed
+	 *
+	 * @param outstanding the outstanding scaled amount for each user ID, including amounts being written
+	 * @param uncommittedFlushes the scaled amounts of each flush whose settlement is journalled but
+	 * which has not yet committed, by flush ID
+	 * @throws UncheckedIOException if rewriting failed, in which case the existing journal remains usable
+	 */
+	void compact(Map<Integer, Long> outstanding, Map<Long, Map<Integer, Long>> uncommittedFlushes) {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try (BufferedWriter compacted = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				for (Map.Entry<Integer, Long> entry : outstanding.entrySet()) {
+					if (entry.getValue() != 0L) {
+						compacted.write(entry.getKey() + " " + entry.getValue() + '\n');
+					}
+				}
+				StringBuilder settlements = new StringBuilder();
+				uncommittedFlushes.forEach((flushId, amounts) -> {
+					amounts.forEach((userId, amount) -> appendSettlementLine(settlements, flushId, userId, amount));
+				});
+				compacted.write(settlements.toString());
+			}
+			writer.close();
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			reopen();
+		}
+	}
+
+	private void reopen() {
+		try {
+			writer.close();
+			writer = openWriter(path);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * An entry in the credits ledger, recording a change in a user's balance
+ *
+ * @param entryId the entry ID, increasing with time
+ * @param userId the user ID
+ * @param delta the change in balance, negative for withdrawals
+ * @param reason the reason given for the change, or null if none was given
+ * @param timeRecorded when the change was made, to the second
+ */
+public record LedgerEntry(long entryId, int userId, BigDecimal delta, String reason, Instant timeRecorded) {
+
+	public LedgerEntry {
+		Objects.requireNonNull(delta, "delta");
+		Objects.requireNonNull(timeRecorded, "timeRecorded");
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import gg.solarmc.loader.Transaction;
+import org.jooq.DSLContext;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static gg.solarmc.loader.schema.tables.CreditsLedger.CREDITS_LEDGER;
+
+/**
+ * Ledger page implementation using keyset paging on the entry ID
+ *
+ */
+record LedgerHistoryPage(int userId, int pageSize, List<LedgerEntry> itemsOnPage) implements LedgerPage {
+
+	static Optional<LedgerPage> fetchPage(Transaction tx, int userId, int pageSize, long beforeEntryId) {
+		List<LedgerEntry> entries = tx.getProperty(DSLContext.class)
+				.select(CREDITS_LEDGER.ENTRY_ID, CREDITS_LEDGER.DELTA,
+						CREDITS_LEDGER.REASON, CREDITS_LEDGER.TIME_RECORDED)
+				.from(CREDITS_LEDGER)
+				.where(CREDITS_LEDGER.USER_ID.eq(userId))
+				.and(CREDITS_LEDGER.ENTRY_ID.lessThan(beforeEntryId))
+				.orderBy(CREDITS_LEDGER.ENTRY_ID.desc())
+				.limit(pageSize)
+				.fetch((record) -> new LedgerEntry(
+						record.value1(), userId, record.value2(),
+						record.value3(), Instant.ofEpochSecond(record.value4())));
+		if (entries.isEmpty()) {
+			return Optional.empty();
+		}
+		return Optional.of(new LedgerHistoryPage(userId, pageSize, entries));
+	}
+
+	@Override
+	public Optional<LedgerPage> nextPage(Transaction tx) {
+		long lastEntryId = itemsOnPage.get(itemsOnPage.size() - 1).entryId();
+		return fetchPage(tx, userId, pageSize, lastEntryId);
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import gg.solarmc.loader.schema.tables.records.CreditsLedgerRecord;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep4;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.List;
+
+import static gg.solarmc.loader.schema.tables.CreditsLedger.CREDITS_LEDGER;
+
+/**
+ * Writes ledger entries within the transaction making the balance change, so that an entry
+ * exists exactly when the change it records has committed. <br>
+ * <br>
+ * Entries are not written as each change is made, but just before the transaction commits,
+ * using multi-row inserts, so that an operation changing many balances costs one round trip.
+ */
+final class LedgerWriter {
+
+	private final Clock clock;
+
+	static final int MAX_REASON_LENGTH = 64;
+	private static final int BATCH_SIZE = 500;
+
+	LedgerWriter(Clock clock) {
+		this.clock = clock;
+	}
+
+	record Entry(int userId, BigDecimal delta, String reason) { }
+
+	/**
+	 * Records changes in balance, to be written before the transaction commits
+	 *
+	 * @param transaction the transaction making the changes
+	 * @param entries the entries, in the order they should be written
+	 */
+	void record(Transaction transaction, List<Entry> entries) {
+		if (entries.isEmpty()) {
+			return;
+		}
+		long timeRecorded = clock.instant().getEpochSecond();
+		transaction.getProperty(TransactionCallbacks.class).beforeCommit(() -> {
+			for (int start = 0; start < entries.size(); start += BATCH_SIZE) {
+				writeBatch(transaction, entries.subList(start, Math.min(start + BATCH_SIZE, entries.size())), timeRecorded);
+			}
+		});
+	}
+
+	private static void writeBatch(Transaction transaction, List<Entry> batch, long timeRecorded) {
+		InsertValuesStep4<CreditsLedgerRecord, Integer, BigDecimal, String, Long> insert = transaction.getProperty(DSLContext.class)
+				.insertInto(CREDITS_LEDGER)
+				.columns(CREDITS_LEDGER.USER_ID, CREDITS_LEDGER.DELTA,
+						CREDITS_LEDGER.REASON, CREDITS_LEDGER.TIME_RECORDED);
+		for (Entry entry : batch) {
+			insert = insert.values(entry.userId(), entry.delta(), entry.reason(), timeRecorded);
+		}
+		insert.execute();
+	}
+
+}
@@ -23,8 +23,8 @@ import java.math.BigDecimal;
 
 final class OfflineCredits extends Credits {
 
-	OfflineCredits(int userId) {
-		super(userId);
+	OfflineCredits(int userId, CreditsManager manager) {
+		super(userId, manager);
 	}
 
 	@Override
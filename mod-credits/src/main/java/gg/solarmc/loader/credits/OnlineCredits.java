@@ -19,30 +19,57 @@
 
 package gg.solarmc.loader.credits;
 
+import gg.solarmc.loader.impl.ScaledDecimals;
+
 import java.math.BigDecimal;
 
 public final class OnlineCredits extends Credits {
 
-	private volatile BigDecimal currentBalance;
+	/**
+	 * Balance scaled by {@link ScaledDecimals#SCALE}
+	 */
+	private volatile long currentBalance;
+	/**
+	 * The last balance given out, reused until the balance changes
+	 */
+	private volatile ReadBalance lastRead;
+
+	private record ReadBalance(long scaled, BigDecimal decimal) { }
 
-	OnlineCredits(int userId, BigDecimal currentBalance) {
-		super(userId);
-		this.currentBalance = currentBalance;
+	OnlineCredits(int userId, CreditsManager manager, BigDecimal currentBalance) {
+		super(userId, manager);
+		this.currentBalance = ScaledDecimals.toScaled(currentBalance);
 	}
 
 	@Override
-	void updateBalance(BigDecimal newBalance) {
-		currentBalance = newBalance;
+	synchronized void updateBalance(BigDecimal newBalance) {
+		currentBalance = ScaledDecimals.toScaled(newBalance);
 	}
 
 	/**
-	 * The user's cached current balance. Should not be relied upon for correctness
+	 * Removes a written deposit from the cached balance after the write rolled back
+	 *
+	 * @param amount the scaled amount
+	 */
+	synchronized void revertDeposit(long amount) {
+		currentBalance -= amount;
+	}
+
+	/**
+	 * The user's cached current balance, including deferred deposits not yet written.
+	 * Should not be relied upon for correctness
 	 *
 	 * @return the cached current balance
 	 */
 	public BigDecimal currentBalance() {
-		return currentBalance;
+		long scaled = currentBalance + pendingDeposits();
+		ReadBalance lastRead = this.lastRead;
+		if (lastRead != null && lastRead.scaled() == scaled) {
+			return lastRead.decimal();
+		}
+		BigDecimal decimal = ScaledDecimals.toDecimal(scaled);
+		this.lastRead = new ReadBalance(scaled, decimal);
+		return decimal;
 	}
 
 }
-
@@ -0,0 +1,58 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.credits;
+
+import java.math.BigDecimal;
+
+public class TransferResult extends WithdrawResult {
+
+	private final BigDecimal recipientNewBalance;
+
+	TransferResult(BigDecimal newBalance, BigDecimal recipientNewBalance, boolean success) {
+		super(newBalance, success);
+		this.recipientNewBalance = recipientNewBalance;
+	}
+
+	/**
+	 * Gets the recipient's balance after the operation. If the transfer failed,
+	 * this will stay as the recipient's existing balance.
+	 *
+	 * @return the recipient's balance after the operation
+	 */
+	public BigDecimal recipientNewBalance() {
+		return recipientNewBalance;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		if (!super.equals(o)) return false;
+		TransferResult that = (TransferResult) o;
+		return recipientNewBalance.equals(that.recipientNewBalance);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = super.hashCode();
+		result = 31 * result + recipientNewBalance.hashCode();
+		return result;
+	}
+}
@@ -1,8 +1,10 @@
 module gg.solarmc.loader.credits {
 	exports gg.solarmc.loader.credits;
 
+	requires com.github.benmanes.caffeine;
 	requires transitive gg.solarmc.loader;
 	requires gg.solarmc.loader.impl;
+	requires org.slf4j;
 	requires space.arim.dazzleconf.ext.snakeyaml;
 
 	provides gg.solarmc.loader.data.DataKeySpi with gg.solarmc.loader.credits.CreditsKeySpi;
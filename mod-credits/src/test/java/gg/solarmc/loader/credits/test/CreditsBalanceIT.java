@@ -0,0 +1,121 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.Credits;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.CreditsManager;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import space.arim.omnibus.util.UUIDUtil;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
+import static gg.solarmc.loader.schema.tables.UserIds.USER_IDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsBalanceIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private CreditsManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+    }
+
+    private static BigDecimal decimal(int value) {
+        return BigDecimal.valueOf(value).setScale(3);
+    }
+
+    /*
+     * Creates an account for a user who has never logged in to this node
+     */
+    private int offlineUserWithBalance(int balance) {
+        return dataCenterInfo.transact((tx) -> {
+            DSLContext context = tx.getProperty(DSLContext.class);
+            int userId = context.insertInto(USER_IDS)
+                    .columns(USER_IDS.UUID).values(UUIDUtil.toByteArray(UUID.randomUUID()))
+                    .returningResult(USER_IDS.ID)
+                    .fetchSingle().value1();
+            context.insertInto(CREDITS)
+                    .columns(CREDITS.USER_ID, CREDITS.BALANCE).values(userId, BigDecimal.valueOf(balance))
+                    .execute();
+            return userId;
+        });
+    }
+
+    private Credits offlineCredits(int userId) {
+        return dataCenterInfo.loginHandler()
+                .createOfflineUser(userId, UUID.randomUUID(), "offline" + userId)
+                .getData(CreditsKey.INSTANCE);
+    }
+
+    private void setBalanceElsewhere(int userId, int balance) {
+        dataCenterInfo.runTransact((tx) -> {
+            tx.getProperty(DSLContext.class)
+                    .update(CREDITS)
+                    .set(CREDITS.BALANCE, BigDecimal.valueOf(balance))
+                    .where(CREDITS.USER_ID.eq(userId))
+                    .execute();
+        });
+    }
+
+    @Test
+    public void onlineBalance() {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        assertEquals(Optional.of(decimal(50)),
+                dataCenterInfo.transact((tx) -> user.getData(CreditsKey.INSTANCE).getBalance(tx)));
+    }
+
+    @Test
+    public void offlineBalanceCachedUntilLocalWrite() {
+        int userId = offlineUserWithBalance(80);
+        Credits credits = offlineCredits(userId);
+        assertEquals(Optional.of(decimal(80)), dataCenterInfo.transact(credits::getBalance));
+
+        setBalanceElsewhere(userId, 90);
+        assertEquals(Optional.of(decimal(80)), dataCenterInfo.transact(credits::getBalance));
+
+        dataCenterInfo.runTransact((tx) -> credits.depositBalance(tx, BigDecimal.TEN));
+        assertEquals(Optional.of(decimal(100)), dataCenterInfo.transact(credits::getBalance));
+    }
+
+    @Test
+    public void noAccount() {
+        assertEquals(Optional.empty(), dataCenterInfo.transact(offlineCredits(-1)::getBalance));
+    }
+
+    @Test
+    public void bulkBalances() {
+        OnlineSolarPlayer onlineUser = dataCenterInfo.loginNewRandomUser();
+        int offlineUserId1 = offlineUserWithBalance(10);
+        int offlineUserId2 = offlineUserWithBalance(20);
+        assertEquals(
+                Map.of(onlineUser.getUserId(), decimal(50), offlineUserId1, decimal(10), offlineUserId2, decimal(20)),
+                dataCenterInfo.transact((tx) -> manager.getBalances(
+                        tx, List.of(onlineUser.getUserId(), offlineUserId1, offlineUserId2, -1))));
+    }
+
+    @Test
+    public void loggedOutUserNoLongerOnline() {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.logoutUser(user);
+        setBalanceElsewhere(user.getUserId(), 70);
+        assertEquals(Map.of(user.getUserId(), decimal(70)),
+                dataCenterInfo.transact((tx) -> manager.getBalances(tx, List.of(user.getUserId()))));
+    }
+}
@@ -0,0 +1,92 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.OnlineCredits;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
+import static gg.solarmc.loader.schema.tables.CreditsChanges.CREDITS_CHANGES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsChangeFeedIT {
+
+    private DataCenterInfo dataCenterInfo;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        Files.writeString(folder.resolve("credits.yml"), """
+                defaultBalance: 50.0
+                enable-balance-change-feed: true
+                balance-change-poll-interval-millis: 20
+                """);
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+    }
+
+    private void setBalanceElsewhere(OnlineSolarPlayer user, int balance) {
+        // Simulate a change made by another node, which records it in the feed
+        dataCenterInfo.runTransact((tx) -> {
+            DSLContext context = tx.getProperty(DSLContext.class);
+            context.update(CREDITS)
+                    .set(CREDITS.BALANCE, BigDecimal.valueOf(balance))
+                    .where(CREDITS.USER_ID.eq(user.getUserId()))
+                    .execute();
+            context.insertInto(CREDITS_CHANGES)
+                    .columns(CREDITS_CHANGES.USER_ID, CREDITS_CHANGES.TIME_RECORDED)
+                    .values(user.getUserId(), System.currentTimeMillis() / 1000L)
+                    .execute();
+        });
+    }
+
+    private static void awaitBalance(OnlineCredits data, int balance) throws InterruptedException {
+        BigDecimal expected = BigDecimal.valueOf(balance).setScale(3);
+        for (int n = 0; n < 250 && !expected.equals(data.currentBalance()); n++) {
+            Thread.sleep(20L);
+        }
+        assertEquals(expected, data.currentBalance());
+    }
+
+    @Test
+    public void changeMadeElsewhere() throws InterruptedException {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits data = user.getData(CreditsKey.INSTANCE);
+        setBalanceElsewhere(user, 400);
+        awaitBalance(data, 400);
+        setBalanceElsewhere(user, 25);
+        awaitBalance(data, 25);
+    }
+
+    @Test
+    public void onlyAffectedUserChanges() throws InterruptedException {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer otherUser = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits otherData = otherUser.getData(CreditsKey.INSTANCE);
+        setBalanceElsewhere(user, 400);
+        awaitBalance(user.getData(CreditsKey.INSTANCE), 400);
+        assertEquals(BigDecimal.valueOf(50).setScale(3), otherData.currentBalance());
+    }
+
+    @Test
+    public void changeMadeThroughNodeIsRecorded() {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            user.getData(CreditsKey.INSTANCE).depositBalance(tx, BigDecimal.TEN);
+        });
+        int recorded = dataCenterInfo.transact((tx) -> tx.getProperty(DSLContext.class)
+                .fetchCount(CREDITS_CHANGES, CREDITS_CHANGES.USER_ID.eq(user.getUserId())));
+        assertEquals(1, recorded);
+    }
+}
@@ -0,0 +1,65 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.OnlineCredits;
+import gg.solarmc.loader.credits.WithdrawResult;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsConditionalWithdrawIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private OnlineCredits data;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        Files.writeString(folder.resolve("credits.yml"), """
+                defaultBalance: 50.0
+                withdraw-method: CONDITIONAL_UPDATE
+                """);
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        data = dataCenterInfo.loginNewRandomUser().getData(CreditsKey.INSTANCE);
+    }
+
+    private WithdrawResult withdraw(int amount) {
+        return dataCenterInfo.transact((tx) -> data.withdrawBalance(tx, BigDecimal.valueOf(amount)));
+    }
+
+    @Test
+    public void withdrawBalance() {
+        WithdrawResult result = withdraw(20);
+        assertTrue(result.isSuccessful());
+        assertEquals(BigDecimal.valueOf(30).setScale(3), result.newBalance());
+        assertEquals(result.newBalance(), data.currentBalance());
+    }
+
+    @Test
+    public void withdrawEntireBalance() {
+        WithdrawResult result = withdraw(50);
+        assertTrue(result.isSuccessful());
+        assertEquals(BigDecimal.ZERO.setScale(3), result.newBalance());
+    }
+
+    @Test
+    public void withdrawBalanceUnsuccessful() {
+        WithdrawResult result = withdraw(51);
+        assertFalse(result.isSuccessful());
+        assertEquals(BigDecimal.valueOf(50).setScale(3), result.newBalance());
+        assertEquals(result.newBalance(), data.currentBalance());
+    }
+}
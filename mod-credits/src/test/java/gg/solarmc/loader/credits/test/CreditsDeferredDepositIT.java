@@ -0,0 +1,170 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.OnlineCredits;
+import gg.solarmc.loader.credits.WithdrawResult;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsDeferredDepositIT {
+
+    private Path folder;
+    private DataCenterInfo dataCenterInfo;
+    private OnlineSolarPlayer user;
+    private OnlineCredits data;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        this.folder = folder;
+        // Long enough that only explicit flushes take place
+        Files.writeString(folder.resolve("credits.yml"), """
+                defaultBalance: 50.0
+                deferred-deposit-flush-interval-millis: 600000
+                enable-deferred-deposit-journal: true
+                """);
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        user = dataCenterInfo.loginNewRandomUser();
+        data = user.getData(CreditsKey.INSTANCE);
+    }
+
+    private BigDecimal storedBalance() {
+        return storedBalance(dataCenterInfo);
+    }
+
+    private BigDecimal storedBalance(DataCenterInfo dataCenterInfo) {
+        return dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(CREDITS.BALANCE).from(CREDITS)
+                    .where(CREDITS.USER_ID.eq(user.getUserId()))
+                    .fetchSingle().value1();
+        });
+    }
+
+    private static BigDecimal decimal(int value) {
+        return BigDecimal.valueOf(value).setScale(3);
+    }
+
+    @Test
+    public void reflectedImmediately() {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        data.depositDeferred(BigDecimal.valueOf(7));
+        assertEquals(decimal(62), data.currentBalance());
+        assertEquals(decimal(50), storedBalance());
+    }
+
+    @Test
+    public void withdrawalWritesPendingFirst() {
+        data.depositDeferred(BigDecimal.valueOf(100));
+        WithdrawResult result = dataCenterInfo.transact((tx) -> {
+            return data.withdrawBalance(tx, BigDecimal.valueOf(120));
+        });
+        assertTrue(result.isSuccessful());
+        assertEquals(decimal(30), result.newBalance());
+        assertEquals(decimal(30), data.currentBalance());
+    }
+
+    @Test
+    public void rollbackRestoresPending() {
+        data.depositDeferred(BigDecimal.valueOf(100));
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            data.withdrawBalance(tx, BigDecimal.valueOf(120));
+            throw new IllegalStateException("Abort");
+        }));
+        assertEquals(decimal(50), storedBalance());
+        // The amount is pending once more
+        dataCenterInfo.logoutUser(user);
+        assertEquals(decimal(150), storedBalance());
+    }
+
+    @Test
+    public void logoutWritesPending() {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        dataCenterInfo.logoutUser(user);
+        assertEquals(decimal(55), storedBalance());
+    }
+
+    @Test
+    public void rollbackCountsPendingOnce() {
+        data.depositDeferred(BigDecimal.valueOf(100));
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            // Fails, but writes the pending amount first
+            assertFalse(data.withdrawBalance(tx, BigDecimal.valueOf(1000)).isSuccessful());
+            throw new IllegalStateException("Abort");
+        }));
+        assertEquals(decimal(150), data.currentBalance());
+    }
+
+    @Test
+    public void journalled() throws IOException {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        assertEquals(List.of(user.getUserId() + " 5000"),
+                Files.readAllLines(folder.resolve("credits-deposits.journal")));
+        dataCenterInfo.logoutUser(user);
+        List<String> lines = Files.readAllLines(folder.resolve("credits-deposits.journal"));
+        assertEquals(2, lines.size());
+        assertEquals(user.getUserId() + " 5000", lines.get(0));
+        assertTrue(lines.get(1).startsWith(user.getUserId() + " -5000 "), lines.get(1));
+    }
+
+    private BigDecimal balanceAfterRestart(SolarDataConfig.DatabaseCredentials credentials) {
+        // Simulate a crash by starting anew without closing
+        DataCenterInfo restarted = DataCenterInfo.builder(folder, credentials).build();
+        try {
+            OnlineSolarPlayer relogged = restarted.reloginUser(user);
+            return relogged.getData(CreditsKey.INSTANCE).currentBalance();
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void replayDoesNotRepeatCommittedWrite(SolarDataConfig.DatabaseCredentials credentials) {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        dataCenterInfo.logoutUser(user);
+        assertEquals(decimal(55), balanceAfterRestart(credentials));
+        assertEquals(decimal(55), storedBalance());
+    }
+
+    @Test
+    public void replayIgnoresUncommittedWrite(SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        // As if the server crashed before the write committed
+        Files.writeString(folder.resolve("credits-deposits.journal"),
+                user.getUserId() + " -5000 " + Long.MAX_VALUE + "\n", StandardOpenOption.APPEND);
+        assertEquals(decimal(55), balanceAfterRestart(credentials));
+    }
+
+    @Test
+    public void closeWritesPending(SolarDataConfig.DatabaseCredentials credentials) {
+        data.depositDeferred(BigDecimal.valueOf(5));
+        dataCenterInfo.close();
+        assertThrows(IllegalStateException.class, () -> data.depositDeferred(BigDecimal.ONE));
+        DataCenterInfo restarted = DataCenterInfo.builder(folder, credentials).build();
+        try {
+            assertEquals(decimal(55), storedBalance(restarted));
+        } finally {
+            restarted.close();
+        }
+    }
+}
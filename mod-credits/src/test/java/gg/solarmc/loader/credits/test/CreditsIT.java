@@ -3,12 +3,15 @@ package gg.solarmc.loader.credits.test;
 import gg.solarmc.loader.OnlineSolarPlayer;
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.CreditsManager;
 import gg.solarmc.loader.credits.DepositResult;
 import gg.solarmc.loader.credits.OnlineCredits;
+import gg.solarmc.loader.credits.TransferResult;
 import gg.solarmc.loader.credits.WithdrawResult;
 import gg.solarmc.loader.impl.SolarDataConfig;
 import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
 import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,8 +21,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 import static gg.solarmc.loader.impl.test.extension.DataGenerator.randomNegativeInteger;
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -30,12 +36,14 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 public class CreditsIT {
 
     private DataCenterInfo dataCenterInfo;
+    private int userId;
     private OnlineCredits data;
 
     @BeforeEach
     public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
         dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
         OnlineSolarPlayer player = dataCenterInfo.loginNewRandomUser();
+        userId = player.getUserId();
         data = player.getData(CreditsKey.INSTANCE);
     }
 
@@ -111,4 +119,121 @@ public class CreditsIT {
                 () -> data.setBalance(tx, BigDecimal.valueOf(randomNegativeInteger())));
     }
 
+    @Test
+    public void transferBalance() {
+        OnlineCredits recipient = dataCenterInfo.loginNewRandomUser().getData(CreditsKey.INSTANCE);
+        BigDecimal previousBalance = data.currentBalance();
+        BigDecimal previousRecipientBalance = recipient.currentBalance();
+        BigDecimal transfer = BigDecimal.TEN;
+        assertTrue(previousBalance.compareTo(transfer) > 0);
+
+        TransferResult transferResult = dataCenterInfo.transact((tx) -> {
+            return data.transferTo(tx, recipient, transfer);
+        });
+        assertTrue(transferResult.isSuccessful());
+        assertEqualDecimals(previousBalance.subtract(transfer), transferResult.newBalance());
+        assertEqualDecimals(previousRecipientBalance.add(transfer), transferResult.recipientNewBalance());
+        assertEquals(transferResult.newBalance(), data.currentBalance());
+        assertEquals(transferResult.recipientNewBalance(), recipient.currentBalance());
+    }
+
+    @Test
+    public void transferBalanceUnsuccessful() {
+        OnlineCredits recipient = dataCenterInfo.loginNewRandomUser().getData(CreditsKey.INSTANCE);
+        BigDecimal previousBalance = data.currentBalance();
+        BigDecimal previousRecipientBalance = recipient.currentBalance();
+        BigDecimal transfer = BigDecimal.valueOf(Integer.MAX_VALUE);
+        assertTrue(transfer.compareTo(previousBalance) > 0);
+
+        TransferResult transferResult = dataCenterInfo.transact((tx) -> {
+            return data.transferTo(tx, recipient, transfer);
+        });
+        assertFalse(transferResult.isSuccessful());
+        assertEqualDecimals(previousBalance, transferResult.newBalance());
+        assertEqualDecimals(previousRecipientBalance, transferResult.recipientNewBalance());
+        assertEquals(transferResult.newBalance(), data.currentBalance());
+        assertEquals(transferResult.recipientNewBalance(), recipient.currentBalance());
+    }
+
+    @Test
+    public void transferBalanceRecipientWithoutAccount() {
+        OnlineSolarPlayer recipientPlayer = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits recipient = recipientPlayer.getData(CreditsKey.INSTANCE);
+        dataCenterInfo.runTransact((tx) -> {
+            tx.getProperty(DSLContext.class)
+                    .deleteFrom(CREDITS)
+                    .where(CREDITS.USER_ID.eq(recipientPlayer.getUserId()))
+                    .execute();
+        });
+        BigDecimal previousBalance = data.currentBalance();
+
+        assertThrows(Exception.class, () -> dataCenterInfo.transact((tx) -> {
+            return data.transferTo(tx, recipient, BigDecimal.TEN);
+        }));
+        BigDecimal storedBalance = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(CREDITS.BALANCE)
+                    .from(CREDITS)
+                    .where(CREDITS.USER_ID.eq(userId))
+                    .fetchSingle().value1();
+        });
+        assertEqualDecimals(previousBalance, storedBalance);
+    }
+
+    @Test
+    public void transferBalancePreconditions(@Mock Transaction tx) {
+        assertThrows(IllegalArgumentException.class,
+                () -> data.transferTo(tx, data, BigDecimal.TEN));
+        assertThrows(IllegalArgumentException.class,
+                () -> data.transferTo(tx, data, BigDecimal.valueOf(randomNegativeInteger())));
+    }
+
+    @Test
+    public void depositAll() {
+        OnlineCredits other = dataCenterInfo.loginNewRandomUser().getData(CreditsKey.INSTANCE);
+        OnlineSolarPlayer otherPlayer = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits third = otherPlayer.getData(CreditsKey.INSTANCE);
+        BigDecimal previousBalance = data.currentBalance();
+        BigDecimal previousOtherBalance = other.currentBalance();
+        BigDecimal previousThirdBalance = third.currentBalance();
+        CreditsManager manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+
+        Map<Integer, BigDecimal> newBalances = dataCenterInfo.transact((tx) -> {
+            return manager.depositAll(tx, Map.of(
+                    userId, BigDecimal.TEN, otherPlayer.getUserId(), BigDecimal.ONE));
+        });
+        assertEquals(2, newBalances.size());
+        assertEqualDecimals(previousBalance.add(BigDecimal.TEN), newBalances.get(userId));
+        assertEqualDecimals(previousThirdBalance.add(BigDecimal.ONE), newBalances.get(otherPlayer.getUserId()));
+        assertEquals(newBalances.get(userId), data.currentBalance());
+        assertEquals(newBalances.get(otherPlayer.getUserId()), third.currentBalance());
+        assertEquals(previousOtherBalance, other.currentBalance());
+    }
+
+    @Test
+    public void depositAllSameAmount() {
+        OnlineSolarPlayer otherPlayer = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits other = otherPlayer.getData(CreditsKey.INSTANCE);
+        BigDecimal previousBalance = data.currentBalance();
+        BigDecimal previousOtherBalance = other.currentBalance();
+        CreditsManager manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+
+        Map<Integer, BigDecimal> newBalances = dataCenterInfo.transact((tx) -> {
+            return manager.depositAll(tx, List.of(userId, otherPlayer.getUserId()), BigDecimal.TEN);
+        });
+        assertEqualDecimals(previousBalance.add(BigDecimal.TEN), data.currentBalance());
+        assertEqualDecimals(previousOtherBalance.add(BigDecimal.TEN), other.currentBalance());
+        assertEquals(Map.of(userId, data.currentBalance(), otherPlayer.getUserId(), other.currentBalance()),
+                newBalances);
+    }
+
+    @Test
+    public void depositAllPreconditions(@Mock Transaction tx) {
+        CreditsManager manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.depositAll(tx, Map.of(userId, BigDecimal.valueOf(randomNegativeInteger()))));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.depositAll(tx, List.of(userId), BigDecimal.ZERO));
+    }
+
 }
@@ -0,0 +1,126 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.CreditsManager;
+import gg.solarmc.loader.credits.TopBalanceEntry;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import static gg.solarmc.loader.schema.tables.Credits.CREDITS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsLeaderboardIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private CreditsManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        Files.writeString(folder.resolve("credits.yml"), """
+                defaultBalance: 50.0
+                enable-leaderboard-index: true
+                """);
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+    }
+
+    private OnlineSolarPlayer userWithBalance(int balance) {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            user.getData(CreditsKey.INSTANCE).setBalance(tx, BigDecimal.valueOf(balance));
+        });
+        return user;
+    }
+
+    private static TopBalanceEntry entry(OnlineSolarPlayer user, int balance) {
+        return new TopBalanceEntry(user.getUserId(), user.getMcUsername(), BigDecimal.valueOf(balance).setScale(3));
+    }
+
+    private List<TopBalanceEntry> topBalances(int offset, int limit) {
+        return dataCenterInfo.transact((tx) -> manager.getTopBalances(tx, offset, limit));
+    }
+
+    @Test
+    public void topBalances() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(300);
+        OnlineSolarPlayer user3 = userWithBalance(200);
+        assertEquals(List.of(entry(user2, 300), entry(user3, 200), entry(user1, 100)), topBalances(0, 3));
+        assertEquals(List.of(entry(user3, 200)), topBalances(1, 1));
+        assertEquals(List.of(entry(user1, 100)), topBalances(2, 5));
+        assertEquals(List.of(), topBalances(3, 5));
+    }
+
+    @Test
+    public void topBalancesAfterDeposit() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(200);
+        dataCenterInfo.runTransact((tx) -> {
+            user1.getData(CreditsKey.INSTANCE).depositBalance(tx, BigDecimal.valueOf(150));
+        });
+        assertEquals(List.of(entry(user1, 250), entry(user2, 200)), topBalances(0, 2));
+    }
+
+    @Test
+    public void rolledBackDepositNotIndexed() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(200);
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            user1.getData(CreditsKey.INSTANCE).depositBalance(tx, BigDecimal.valueOf(150));
+            throw new IllegalStateException("Abort");
+        }));
+        assertEquals(List.of(entry(user2, 200), entry(user1, 100)), topBalances(0, 2));
+    }
+
+    @Test
+    public void reconcileWithDatabase() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(200);
+        // Simulate a change made by another node
+        dataCenterInfo.runTransact((tx) -> {
+            tx.getProperty(DSLContext.class)
+                    .update(CREDITS)
+                    .set(CREDITS.BALANCE, BigDecimal.valueOf(500))
+                    .where(CREDITS.USER_ID.eq(user1.getUserId()))
+                    .execute();
+        });
+        assertEquals(List.of(entry(user2, 200), entry(user1, 100)), topBalances(0, 2));
+        dataCenterInfo.icarus().refreshCaches().join();
+        assertEquals(List.of(entry(user1, 500), entry(user2, 200)), topBalances(0, 2));
+    }
+
+    @Test
+    public void rankAndPercentile() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(300);
+        OnlineSolarPlayer user3 = userWithBalance(300);
+        OnlineSolarPlayer user4 = userWithBalance(200);
+        dataCenterInfo.runTransact((tx) -> {
+            assertEquals(OptionalInt.of(1), manager.getRank(tx, user2.getUserId()));
+            assertEquals(OptionalInt.of(1), manager.getRank(tx, user3.getUserId()));
+            assertEquals(OptionalInt.of(3), manager.getRank(tx, user4.getUserId()));
+            assertEquals(OptionalInt.of(4), manager.getRank(tx, user1.getUserId()));
+            assertEquals(OptionalDouble.of(50.0), manager.getPercentile(tx, user2.getUserId()));
+            assertEquals(OptionalDouble.of(25.0), manager.getPercentile(tx, user4.getUserId()));
+            assertEquals(OptionalDouble.of(0.0), manager.getPercentile(tx, user1.getUserId()));
+            assertEquals(OptionalInt.empty(), manager.getRank(tx, -1));
+        });
+    }
+}
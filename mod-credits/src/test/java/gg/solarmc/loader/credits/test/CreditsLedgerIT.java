@@ -0,0 +1,117 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.CreditsManager;
+import gg.solarmc.loader.credits.LedgerEntry;
+import gg.solarmc.loader.credits.LedgerPage;
+import gg.solarmc.loader.credits.OnlineCredits;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DatabaseExtension.class)
+public class CreditsLedgerIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private CreditsManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) throws IOException {
+        Files.writeString(folder.resolve("credits.yml"), """
+                defaultBalance: 50.0
+                enable-ledger: true
+                """);
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+    }
+
+    private List<LedgerEntry> history(int userId, int expectedEntries) {
+        List<LedgerEntry> entries = dataCenterInfo.transact((tx) -> {
+            return manager.getHistory(tx, userId, expectedEntries + 1)
+                    .map(LedgerPage::itemsOnPage).orElse(List.of());
+        });
+        assertEquals(expectedEntries, entries.size(), () -> "Entries: " + entries);
+        return entries;
+    }
+
+    private static void assertEntry(BigDecimal delta, String reason, LedgerEntry entry) {
+        assertEquals(0, delta.compareTo(entry.delta()), () -> "Expected " + delta + " but got " + entry.delta());
+        assertEquals(reason, entry.reason());
+    }
+
+    @Test
+    public void recordOperations() {
+        OnlineSolarPlayer player = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer recipient = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits credits = player.getData(CreditsKey.INSTANCE);
+        dataCenterInfo.runTransact((tx) -> {
+            credits.depositBalance(tx, BigDecimal.TEN, "Kill reward");
+            credits.withdrawBalance(tx, BigDecimal.ONE, "Shop purchase");
+            credits.transferTo(tx, recipient.getData(CreditsKey.INSTANCE), BigDecimal.ONE, null);
+        });
+        List<LedgerEntry> history = history(player.getUserId(), 3);
+        assertEntry(BigDecimal.ONE.negate(), null, history.get(0));
+        assertEntry(BigDecimal.ONE.negate(), "Shop purchase", history.get(1));
+        assertEntry(BigDecimal.TEN, "Kill reward", history.get(2));
+        assertEntry(BigDecimal.ONE, null, history(recipient.getUserId(), 1).get(0));
+    }
+
+    @Test
+    public void rolledBackOperationsNotRecorded() {
+        OnlineSolarPlayer player = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits credits = player.getData(CreditsKey.INSTANCE);
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            credits.depositBalance(tx, BigDecimal.TEN, "Rolled back");
+            throw new IllegalStateException("Roll back");
+        }));
+        dataCenterInfo.runTransact((tx) -> credits.depositBalance(tx, BigDecimal.ONE, "Committed"));
+        List<LedgerEntry> history = history(player.getUserId(), 1);
+        assertEntry(BigDecimal.ONE, "Committed", history.get(0));
+    }
+
+    @Test
+    public void recordSetBalance() {
+        OnlineSolarPlayer player = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits credits = player.getData(CreditsKey.INSTANCE);
+        dataCenterInfo.runTransact((tx) -> credits.setBalance(tx, BigDecimal.valueOf(20), "Reset"));
+        dataCenterInfo.runTransact((tx) -> credits.setBalance(tx, BigDecimal.valueOf(20)));
+        // Setting the same balance records nothing
+        assertEntry(BigDecimal.valueOf(-30), "Reset", history(player.getUserId(), 1).get(0));
+    }
+
+    @Test
+    public void historyPaging() {
+        OnlineSolarPlayer player = dataCenterInfo.loginNewRandomUser();
+        OnlineCredits credits = player.getData(CreditsKey.INSTANCE);
+        for (int n = 1; n <= 5; n++) {
+            BigDecimal amount = BigDecimal.valueOf(n);
+            dataCenterInfo.runTransact((tx) -> credits.depositBalance(tx, amount));
+        }
+        history(player.getUserId(), 5);
+        LedgerPage firstPage = dataCenterInfo.transact((tx) -> manager.getHistory(tx, player.getUserId(), 2))
+                .orElseThrow(AssertionError::new);
+        assertEquals(2, firstPage.itemsOnPage().size());
+        assertEntry(BigDecimal.valueOf(5), null, firstPage.itemsOnPage().get(0));
+        LedgerPage secondPage = dataCenterInfo.transact(firstPage::nextPage).orElseThrow(AssertionError::new);
+        assertEntry(BigDecimal.valueOf(3), null, secondPage.itemsOnPage().get(0));
+        LedgerPage thirdPage = dataCenterInfo.transact(secondPage::nextPage).orElseThrow(AssertionError::new);
+        assertEquals(1, thirdPage.itemsOnPage().size());
+        assertEntry(BigDecimal.ONE, null, thirdPage.itemsOnPage().get(0));
+        assertTrue(dataCenterInfo.transact(thirdPage::nextPage).isEmpty());
+    }
+}
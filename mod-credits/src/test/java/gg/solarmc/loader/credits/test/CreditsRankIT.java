@@ -0,0 +1,68 @@
+package gg.solarmc.loader.credits.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.credits.CreditsKey;
+import gg.solarmc.loader.credits.CreditsManager;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rank and percentile without the leaderboard index
+ */
+@ExtendWith(DatabaseExtension.class)
+public class CreditsRankIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private CreditsManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(CreditsKey.INSTANCE);
+    }
+
+    private OnlineSolarPlayer userWithBalance(int balance) {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            user.getData(CreditsKey.INSTANCE).setBalance(tx, BigDecimal.valueOf(balance));
+        });
+        return user;
+    }
+
+    @Test
+    public void rankAndPercentile() {
+        OnlineSolarPlayer user1 = userWithBalance(100);
+        OnlineSolarPlayer user2 = userWithBalance(300);
+        OnlineSolarPlayer user3 = userWithBalance(300);
+        OnlineSolarPlayer user4 = userWithBalance(200);
+        dataCenterInfo.runTransact((tx) -> {
+            assertEquals(OptionalInt.of(1), manager.getRank(tx, user2.getUserId()));
+            assertEquals(OptionalInt.of(1), manager.getRank(tx, user3.getUserId()));
+            assertEquals(OptionalInt.of(3), manager.getRank(tx, user4.getUserId()));
+            assertEquals(OptionalInt.of(4), manager.getRank(tx, user1.getUserId()));
+            assertEquals(OptionalDouble.of(50.0), manager.getPercentile(tx, user2.getUserId()));
+            assertEquals(OptionalDouble.of(25.0), manager.getPercentile(tx, user4.getUserId()));
+            assertEquals(OptionalDouble.of(0.0), manager.getPercentile(tx, user1.getUserId()));
+        });
+    }
+
+    @Test
+    public void noAccount() {
+        dataCenterInfo.runTransact((tx) -> {
+            assertEquals(OptionalInt.empty(), manager.getRank(tx, -1));
+            assertEquals(OptionalDouble.empty(), manager.getPercentile(tx, -1));
+        });
+    }
+}
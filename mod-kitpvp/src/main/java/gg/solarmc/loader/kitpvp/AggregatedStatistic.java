@@ -0,0 +1,45 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import org.jooq.Field;
+
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+
+/**
+ * Statistics which are only ever added to, and so can be aggregated in memory
+ *
+ */
+enum AggregatedStatistic {
+    KILLS(KITPVP_STATISTICS.KILLS),
+    DEATHS(KITPVP_STATISTICS.DEATHS),
+    ASSISTS(KITPVP_STATISTICS.ASSISTS),
+    EXPERIENCE(KITPVP_STATISTICS.EXPERIENCE);
+
+    private final Field<Integer> column;
+
+    AggregatedStatistic(Field<Integer> column) {
+        this.column = column;
+    }
+
+    Field<Integer> column() {
+        return column;
+    }
+}
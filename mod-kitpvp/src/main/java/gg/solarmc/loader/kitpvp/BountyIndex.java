@@ -0,0 +1,168 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import gg.solarmc.loader.impl.IndexReconciliation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * In-memory ranking of bounties for each currency, ordered by amount then user ID,
+ * both descending, the same order used when listing bounties in one currency. <br>
+ * <br>
+ * Pages are found by seeking past the last bounty of the previous page, so each page
+ * takes logarithmic time. The index reflects committed changes made on this node and
+ * is periodically reconciled with the database; between reconciliations it is approximate. <br>
+ * <br>
+ * Reconciliation follows {@link IndexReconciliation}, as for the credits leaderboard index. <br>
+ * <br>
+ * Amounts are held as longs scaled per {@link gg.solarmc.loader.impl.ScaledDecimals}.
+ */
+final class BountyIndex {
+
+    private static final Comparator<IndexedBounty> ORDER = Comparator
+            .comparingLong(IndexedBounty::amount)
+            .thenComparingInt(IndexedBounty::userId)
+            .reversed();
+
+    private final Map<BountyCurrency, Ranking> rankings = new EnumMap<>(BountyCurrency.class);
+    private final IndexReconciliation<UserCurrency> reconciliation = new IndexReconciliation<>();
+
+    BountyIndex() {
+        for (BountyCurrency currency : BountyCurrency.values()) {
+            rankings.put(currency, new Ranking());
+        }
+    }
+
+    record IndexedBounty(int userId, long amount) { }
+
+    private record UserCurrency(int userId, BountyCurrency currency) { }
+
+    private static final class Ranking {
+
+        final Map<Integer, Long> amounts = new HashMap<>();
+        final NavigableSet<IndexedBounty> ordered = new TreeSet<>(ORDER);
+
+        void update(int userId, long amount) {
+            Long previous = (amount == 0L) ? amounts.remove(userId) : amounts.put(userId, amount);
+            if (previous != null) {
+                ordered.remove(new IndexedBounty(userId, previous));
+            }
+            if (amount != 0L) {
+                ordered.add(new IndexedBounty(userId, amount));
+            }
+        }
+    }
+
+    /**
+     * Sets the bounty of a user. A zero amount removes the user from the ranking
+     *
+     * @param userId the user ID
+     * @param currency the currency
+     * @param amount the new amount
+     */
+    synchronized void update(int userId, BountyCurrency currency, long amount) {
+        reconciliation.updated(new UserCurrency(userId, currency));
+        rankings.get(currency).update(userId, amount);
+    }
+
+    /**
+     * Gets a page of bounties
+     *
+     * @param currency the currency
+     * @param after the last bounty of the previous page, or null for the first page
+     * @param limit the maximum number of bounties
+     * @return the bounties, highest first
+     */
+    synchronized List<IndexedBounty> page(BountyCurrency currency, IndexedBounty after, int limit) {
+        NavigableSet<IndexedBounty> ordered = rankings.get(currency).ordered;
+        if (after != null) {
+            ordered = ordered.tailSet(after, false);
+        }
+        List<IndexedBounty> page = new ArrayList<>(Math.min(limit, ordered.size()));
+        for (IndexedBounty bounty : ordered) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(bounty);
+        }
+        return page;
+    }
+
+    /**
+     * Begins a reconciliation, superseding any in progress. Updates made until it is
+     * finished take precedence over the scanned bounties
+     *
+     * @return the generation of the reconciliation
+     */
+    synchronized long beginReconcile() {
+        return reconciliation.begin();
+    }
+
+    /**
+     * Abandons a reconciliation begun with {@link #beginReconcile()}. Does nothing
+     * if it has been superseded
+     *
+     * @param generation the generation of the reconciliation
+     */
+    synchronized void cancelReconcile(long generation) {
+        reconciliation.cancel(generation);
+    }
+
+    /**
+     * Finishes a reconciliation begun with {@link #beginReconcile()}. The scanned bounties
+     * are discarded if the reconciliation has been superseded or abandoned
+     *
+     * @param generation the generation of the reconciliation
+     * @param scannedBounties all bounties as scanned from the database, by currency
+     */
+    synchronized void finishReconcile(long generation, Map<BountyCurrency, Map<Integer, Long>> scannedBounties) {
+        Set<UserCurrency> updated = reconciliation.finish(generation);
+        if (updated == null) {
+            return;
+        }
+        rankings.forEach((currency, ranking) -> {
+            Map<Integer, Long> scanned = scannedBounties.getOrDefault(currency, Map.of());
+            for (Integer userId : List.copyOf(ranking.amounts.keySet())) {
+                if (!scanned.containsKey(userId) && !updated.contains(new UserCurrency(userId, currency))) {
+                    ranking.update(userId, 0L);
+                }
+            }
+            scanned.forEach((userId, amount) -> {
+                if (updated.contains(new UserCurrency(userId, currency))) {
+                    return;
+                }
+                Long current = ranking.amounts.get(userId);
+                if (current == null || current != amount.longValue()) {
+                    ranking.update(userId, amount);
+                }
+            });
+        });
+    }
+
+}
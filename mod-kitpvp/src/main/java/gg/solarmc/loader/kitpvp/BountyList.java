@@ -20,24 +20,22 @@
 package gg.solarmc.loader.kitpvp;
 
 import gg.solarmc.loader.Transaction;
-import gg.solarmc.loader.schema.tables.KitpvpBounties;
+import gg.solarmc.loader.impl.ScaledDecimals;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.OrderField;
-import org.jooq.Record;
-import org.jooq.ResultQuery;
 import org.jooq.SelectFieldOrAsterisk;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 
 import static gg.solarmc.loader.schema.tables.KitpvpBounties.KITPVP_BOUNTIES;
@@ -53,10 +51,6 @@ record BountyList(KitPvpManager manager, BountyListOrder.Built listOrder) {
         return listBounties(tx, null);
     }
 
-    private KitpvpBounties aliasedBounties(BountyCurrency currency) {
-        return KITPVP_BOUNTIES.as("bounties_" + currency.name().toLowerCase(Locale.ROOT));
-    }
-
     /*
     Paginate according to currencies first, then use user ID to break ties
     Use the keyset pagination method
@@ -67,63 +61,15 @@ record BountyList(KitPvpManager manager, BountyListOrder.Built listOrder) {
 
     private Optional<BountyPage> listBounties(Transaction tx,
                                               @Nullable PaginationCursor cursor) {
-        DSLContext context = tx.getProperty(DSLContext.class);
-        List<SelectFieldOrAsterisk> selections;
-        {
-            // SELECT user_id, username, and all bounty values
-            selections = new ArrayList<>(2 + listOrder.includeCurrencies().size());
-            selections.add(LATEST_NAMES.USER_ID);
-            selections.add(LATEST_NAMES.USERNAME);
-            for (BountyCurrency currency : listOrder.includeCurrencies()) {
-                selections.add(aliasedBounties(currency).BOUNTY_AMOUNT);
-            }
-        }
-        Table<?> from = LATEST_NAMES;
-        // LEFT JOIN bounties table for each currency
-        for (BountyCurrency currency : listOrder.includeCurrencies()) {
-            KitpvpBounties bounties = aliasedBounties(currency);
-            from = from.leftJoin(bounties)
-                    .on(bounties.USER_ID.eq(LATEST_NAMES.USER_ID))
-                    .and(bounties.BOUNTY_CURRENCY.eq(currency.serialize()));
-        }
-        // WHERE any bounty value is non-null
-        Condition where = anyBountyValueIsNonNull();
-        if (cursor != null) {
-            // AND the cursor conditions are met
-            where = where.and(cursorSeekCondition(cursor));
-        }
-        List<OrderField<?>> orderBy;
-        {
-            // ORDER BY each currency DESC NULLS LAST
-            orderBy = new ArrayList<>(1 + listOrder.includeCurrencies().size());
-            for (BountyCurrency currency : listOrder.includeCurrencies()) {
-                orderBy.add(aliasedBounties(currency).BOUNTY_AMOUNT.desc().nullsLast());
-            }
-            // Break ties with user ID
-            orderBy.add(LATEST_NAMES.USER_ID);
+        List<BountyInternal> bounties;
+        if (listOrder.includeCurrencies().size() == 1) {
+            BountyCurrency currency = listOrder.includeCurrencies().get(0);
+            BountyIndex bountyIndex = manager.bountyIndex();
+            bounties = (bountyIndex == null) ?
+                    seekSingleCurrency(tx, currency, cursor) : listFromIndex(tx, bountyIndex, currency, cursor);
+        } else {
+            bounties = listMultipleCurrencies(tx, cursor);
         }
-        ResultQuery<Record> query = context
-                .select(selections)
-                .from(from)
-                .where(where)
-                .orderBy(orderBy)
-                .limit(listOrder.countPerPage());
-        List<BountyInternal> bounties = query.fetch((record) -> {
-            int userId = record.get(LATEST_NAMES.USER_ID);
-            String target = record.get(LATEST_NAMES.USERNAME);
-            return switch (listOrder.includeCurrencies().size()) {
-                case 1 -> {
-                    BountyCurrency currency = listOrder.includeCurrencies().get(0);
-                    BigDecimal bountyValue = record.get(aliasedBounties(currency).BOUNTY_AMOUNT);
-                    yield new BountySingleCurrency(userId, target, currency.createAmount(bountyValue));
-                }
-                case 2 -> BountyDoubleCurrency.from(userId, target, record, (rec, currency) -> {
-                    BigDecimal bountyAmount = rec.get(aliasedBounties(currency).BOUNTY_AMOUNT);
-                    return Objects.requireNonNullElse(bountyAmount, BigDecimal.ZERO);
-                });
-                default -> throw new UnsupportedOperationException("Not implemented for more than 2 currencies");
-            };
-        });
         if (bounties.isEmpty()) {
             return Optional.empty();
         }
@@ -140,39 +86,153 @@ record BountyList(KitPvpManager manager, BountyListOrder.Built listOrder) {
         return Optional.of(new BountyPageImpl(this, bounties));
     }
 
-    private Condition anyBountyValueIsNonNull() {
-        // (currency1 IS NOT NULL OR currency2 IS NOT NULL OR ...)
-        Condition anyBountyValueNotNull = null;
-        for (BountyCurrency currency : listOrder.includeCurrencies()) {
-            Condition thisCurrencyValueNotNull = aliasedBounties(currency).BOUNTY_AMOUNT.isNotNull();
-            if (anyBountyValueNotNull == null) {
-                anyBountyValueNotNull = thisCurrencyValueNotNull;
-            } else {
-                anyBountyValueNotNull = anyBountyValueNotNull.or(thisCurrencyValueNotNull);
+    /*
+    A single currency is listed from the bounties table alone, seeking on
+    bounty_ranking_index (bounty_currency, bounty_amount, user_id) in reverse
+     */
+
+    private List<BountyInternal> seekSingleCurrency(Transaction tx, BountyCurrency currency,
+                                                    @Nullable PaginationCursor cursor) {
+        Condition where = KITPVP_BOUNTIES.BOUNTY_CURRENCY.eq(currency.serialize());
+        if (cursor != null) {
+            // (amount < afterAmount) OR (amount = afterAmount AND user_id < afterUserId)
+            BigDecimal afterAmount = cursor.afterAmounts().get(currency);
+            where = where.and(KITPVP_BOUNTIES.BOUNTY_AMOUNT.lessThan(afterAmount)
+                    .or(KITPVP_BOUNTIES.BOUNTY_AMOUNT.eq(afterAmount)
+                            .and(KITPVP_BOUNTIES.USER_ID.lessThan(cursor.userId()))));
+        }
+        return tx.getProperty(DSLContext.class)
+                .select(KITPVP_BOUNTIES.USER_ID, LATEST_NAMES.USERNAME, KITPVP_BOUNTIES.BOUNTY_AMOUNT)
+                .from(KITPVP_BOUNTIES)
+                .innerJoin(LATEST_NAMES)
+                .on(LATEST_NAMES.USER_ID.eq(KITPVP_BOUNTIES.USER_ID))
+                .where(where)
+                .orderBy(KITPVP_BOUNTIES.BOUNTY_AMOUNT.desc(), KITPVP_BOUNTIES.USER_ID.desc())
+                .limit(listOrder.countPerPage())
+                .fetch((record) -> new BountySingleCurrency(
+                        record.value1(), record.value2(), currency.createAmount(record.value3())));
+    }
+
+    private List<BountyInternal> listFromIndex(Transaction tx, BountyIndex bountyIndex, BountyCurrency currency,
+                                               @Nullable PaginationCursor cursor) {
+        BountyIndex.IndexedBounty after = (cursor == null) ? null : new BountyIndex.IndexedBounty(
+                cursor.userId(), ScaledDecimals.toScaled(cursor.afterAmounts().get(currency)));
+        while (true) {
+            List<BountyIndex.IndexedBounty> indexedBounties = bountyIndex.page(currency, after, listOrder.countPerPage());
+            if (indexedBounties.isEmpty()) {
+                return List.of();
+            }
+            List<Integer> userIds = new ArrayList<>(indexedBounties.size());
+            for (BountyIndex.IndexedBounty indexedBounty : indexedBounties) {
+                userIds.add(indexedBounty.userId());
             }
+            Map<Integer, String> usernames = tx.getProperty(DSLContext.class)
+                    .select(LATEST_NAMES.USER_ID, LATEST_NAMES.USERNAME)
+                    .from(LATEST_NAMES)
+                    .where(LATEST_NAMES.USER_ID.in(userIds))
+                    .fetchMap(LATEST_NAMES.USER_ID, LATEST_NAMES.USERNAME);
+            List<BountyInternal> bounties = new ArrayList<>(indexedBounties.size());
+            for (BountyIndex.IndexedBounty indexedBounty : indexedBounties) {
+                // Users without a known username are omitted
+                String username = usernames.get(indexedBounty.userId());
+                if (username != null) {
+                    bounties.add(new BountySingleCurrency(indexedBounty.userId(), username,
+                            currency.createAmount(ScaledDecimals.toDecimal(indexedBounty.amount()))));
+                }
+            }
+            if (!bounties.isEmpty()) {
+                return bounties;
+            }
+            // Every user on this page was omitted
+            after = indexedBounties.get(indexedBounties.size() - 1);
         }
-        return anyBountyValueNotNull;
     }
 
-    private Condition cursorSeekCondition(PaginationCursor cursor) {
+    /*
+    Several currencies are pivoted in one pass over the bounties table, grouped by user,
+    into a column for each currency. A missing bounty counts as zero
+     */
+
+    private Field<BigDecimal> pivotedAmount(Table<?> pivoted, BountyCurrency currency) {
+        return pivoted.field(pivotedAmountName(currency), BigDecimal.class);
+    }
+
+    private String pivotedAmountName(BountyCurrency currency) {
+        return "bounty_" + currency.name().toLowerCase(Locale.ROOT);
+    }
+
+    private List<BountyInternal> listMultipleCurrencies(Transaction tx, @Nullable PaginationCursor cursor) {
+        List<BountyCurrency> currencies = listOrder.includeCurrencies();
+        Table<?> pivoted;
+        {
+            // SELECT user_id, SUM(CASE WHEN bounty_currency = ? THEN bounty_amount ELSE 0 END) for each currency
+            List<SelectFieldOrAsterisk> pivotSelections = new ArrayList<>(1 + currencies.size());
+            List<Byte> serializedCurrencies = new ArrayList<>(currencies.size());
+            pivotSelections.add(KITPVP_BOUNTIES.USER_ID);
+            for (BountyCurrency currency : currencies) {
+                pivotSelections.add(DSL.sum(DSL
+                        .when(KITPVP_BOUNTIES.BOUNTY_CURRENCY.eq(currency.serialize()), KITPVP_BOUNTIES.BOUNTY_AMOUNT)
+                        .else_(BigDecimal.ZERO)).as(pivotedAmountName(currency)));
+                serializedCurrencies.add(currency.serialize());
+            }
+            pivoted = DSL.select(pivotSelections)
+                    .from(KITPVP_BOUNTIES)
+                    .where(KITPVP_BOUNTIES.BOUNTY_CURRENCY.in(serializedCurrencies))
+                    .groupBy(KITPVP_BOUNTIES.USER_ID)
+                    .asTable("pivoted_bounties");
+        }
+        Field<Integer> userIdColumn = pivoted.field(KITPVP_BOUNTIES.USER_ID);
+        List<SelectFieldOrAsterisk> selections = new ArrayList<>(2 + currencies.size());
+        List<OrderField<?>> orderBy = new ArrayList<>(1 + currencies.size());
+        selections.add(userIdColumn);
+        selections.add(LATEST_NAMES.USERNAME);
+        for (BountyCurrency currency : currencies) {
+            Field<BigDecimal> amount = pivotedAmount(pivoted, currency);
+            selections.add(amount);
+            // ORDER BY each currency DESC
+            orderBy.add(amount.desc());
+        }
+        // Break ties with user ID
+        orderBy.add(userIdColumn.desc());
+        Condition where = (cursor == null) ?
+                DSL.noCondition() : cursorSeekCondition(pivoted, userIdColumn, cursor);
+        return tx.getProperty(DSLContext.class)
+                .select(selections)
+                .from(pivoted)
+                .innerJoin(LATEST_NAMES)
+                .on(LATEST_NAMES.USER_ID.eq(userIdColumn))
+                .where(where)
+                .orderBy(orderBy)
+                .limit(listOrder.countPerPage())
+                .fetch((record) -> {
+                    Map<BountyCurrency, BigDecimal> amounts = new EnumMap<>(BountyCurrency.class);
+                    for (BountyCurrency currency : currencies) {
+                        amounts.put(currency, record.get(pivotedAmount(pivoted, currency)));
+                    }
+                    return new BountyMultipleCurrency(
+                            record.get(userIdColumn), record.get(LATEST_NAMES.USERNAME), amounts);
+                });
+    }
+
+    private Condition cursorSeekCondition(Table<?> pivoted, Field<Integer> userIdColumn, PaginationCursor cursor) {
         /*
 	Dynamically build a predicate, e.g.
 	(currency1 < afterAmount1) OR
 	(currency1 = afterAmount1 AND currency2 < afterAmount2) OR
 	(currency1 = afterAmount1 AND currency2 = afterAmount2 AND currency3 < afterAmount3)
 
-	OR all currencies are equal and user ID is greater than cursor user ID
+	OR all currencies are equal and user ID is less than cursor user ID
         */
         Condition seekCondition = null;
         Condition currenciesSoFarAreEqual = null;
         for (BountyCurrency currency : listOrder.includeCurrencies()) {
-            KitpvpBounties bounties = aliasedBounties(currency);
+            Field<BigDecimal> amount = pivotedAmount(pivoted, currency);
             BigDecimal bountyValue = cursor.afterAmounts().get(currency);
 
             // currencyX < afterAmountX
-            Condition valueLessThanThisCurrencyValue = nullSafeLessThan(bounties.BOUNTY_AMOUNT, bountyValue);
+            Condition valueLessThanThisCurrencyValue = amount.lessThan(bountyValue);
             // currencyX = afterAmountX
-            Condition valueEqualToThisCurrencyValue = nullSafeEqual(bounties.BOUNTY_AMOUNT, bountyValue);
+            Condition valueEqualToThisCurrencyValue = amount.eq(bountyValue);
 
             if (seekCondition == null) {
                 // Primary currency
@@ -187,27 +247,6 @@ record BountyList(KitPvpManager manager, BountyListOrder.Built listOrder) {
         }
         assert seekCondition != null : "at least one currency";
         return seekCondition.or(
-                currenciesSoFarAreEqual.and(LATEST_NAMES.USER_ID.greaterThan(cursor.userId())));
-    }
-
-    // Helpers for treating NULL values as zero
-    // This is the same as NULLS LAST except NULLS LAST is only usable in ORDER BY
-
-    private Condition nullSafeLessThan(Field<BigDecimal> column, BigDecimal value) {
-        if (value.compareTo(BigDecimal.ZERO) == 0) {
-            // Nothing can be less than zero
-            return DSL.falseCondition();
-        }
-        // If the column value is non-null, it has to pass the lessThan
-        // If the column value is null, it is included
-        return column.lessThan(value).or(column.isNull());
-    }
-
-    private Condition nullSafeEqual(Field<BigDecimal> field, BigDecimal value) {
-        Condition equality = field.eq(value);
-        if (value.compareTo(BigDecimal.ZERO) == 0) {
-            return equality.or(field.isNull());
-        }
-        return equality;
+                currenciesSoFarAreEqual.and(userIdColumn.lessThan(cursor.userId())));
     }
 }
@@ -23,40 +23,26 @@ import java.math.BigDecimal;
 import java.util.Map;
 import java.util.Objects;
 
-record BountyDoubleCurrency(int userId,
-                            String target, BigDecimal creditsAmount,
-                            BigDecimal plainEcoAmount) implements BountyInternal {
+record BountyMultipleCurrency(int userId, String target,
+                              Map<BountyCurrency, BigDecimal> amounts) implements BountyInternal {
 
-    BountyDoubleCurrency {
+    BountyMultipleCurrency {
         Objects.requireNonNull(target, "target");
-        Objects.requireNonNull(creditsAmount, "creditsAmount");
-        Objects.requireNonNull(plainEcoAmount, "plainEcoAmount");
-    }
-
-    static <S> BountyInternal from(int userId, String target, S bountyDataSource, AmountFetcher<S> amountFetcher) {
-        return new BountyDoubleCurrency(userId, target,
-                amountFetcher.getAmount(bountyDataSource, BountyCurrency.CREDITS),
-                amountFetcher.getAmount(bountyDataSource, BountyCurrency.PLAIN_ECO));
-    }
-
-    interface AmountFetcher<S> {
-
-        BigDecimal getAmount(S bounyDataSource, BountyCurrency currency);
+        amounts = Map.copyOf(amounts);
     }
 
     @Override
     public BountyAmount amount(BountyCurrency currency) {
-        return currency.createAmount(switch (currency) {
-            case CREDITS -> creditsAmount;
-            case PLAIN_ECO -> plainEcoAmount;
-        });
+        BigDecimal value = amounts.get(currency);
+        if (value == null) {
+            throw new IllegalStateException("No bounty available in " + currency);
+        }
+        return currency.createAmount(value);
     }
 
     @Override
     public Map<BountyCurrency, BigDecimal> allAmounts() {
-        return Map.of(
-                BountyCurrency.CREDITS, creditsAmount,
-                BountyCurrency.PLAIN_ECO, plainEcoAmount);
+        return amounts;
     }
 
 }
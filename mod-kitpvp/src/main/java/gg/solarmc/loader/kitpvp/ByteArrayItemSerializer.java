@@ -0,0 +1,67 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link ItemSerializer} which works directly on byte arrays. <br>
+ * <br>
+ * A kit's items are stored packed together in one value, so implementing this interface
+ * lets the loader hand the serializer each item's region of the packed contents, without
+ * wrapping it in a stream. Deserialization receives a region of an array, which need not
+ * start at the beginning of the array nor extend to its end.
+ */
+public interface ByteArrayItemSerializer extends ItemSerializer {
+
+    /**
+     * Serializes an item to a new byte array
+     *
+     * @param item the item
+     * @return the serialized bytes
+     * @throws IOException if serialization failed
+     */
+    byte[] serialize(KitItem item) throws IOException;
+
+    /**
+     * Deserializes an item from a region of a byte array. The array must not be modified
+     *
+     * @param data the byte array
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return the item
+     * @throws IOException if deserialization failed
+     */
+    KitItem deserialize(byte[] data, int offset, int length) throws IOException;
+
+    @Override
+    default void serialize(KitItem item, OutputStream output) throws IOException {
+        output.write(serialize(item));
+    }
+
+    @Override
+    default KitItem deserialize(InputStream input) throws IOException {
+        byte[] data = input.readAllBytes();
+        return deserialize(data, 0, data.length);
+    }
+
+}
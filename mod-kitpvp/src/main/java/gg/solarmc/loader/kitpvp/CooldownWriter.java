@@ -0,0 +1,191 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.Transactor;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import gg.solarmc.loader.schema.tables.records.KitpvpKitsCooldownsRecord;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep3;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static gg.solarmc.loader.schema.tables.KitpvpKitsCooldowns.KITPVP_KITS_COOLDOWNS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsIds.KITPVP_KITS_IDS;
+
+/**
+ * Writes the kit cooldowns of online users in the background. Cooldowns are answered
+ * from memory, so the times kits were last used only need to be stored eventually. <br>
+ * <br>
+ * Times are written periodically in a single multi-row upsert, when the user logs out,
+ * and when the manager is closed. Only the latest time for each user and kit is kept. <br>
+ * <br>
+ * The write at logout happens in the logout transaction, so that another server the user
+ * joins sees the times once the logout from this server has completed.
+ */
+final class CooldownWriter implements AutoCloseable {
+
+    private final Transactor transactor;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<UserKit, Long> pending = new ConcurrentHashMap<>();
+
+    CooldownWriter(Transactor transactor, ScheduledExecutorService scheduler) {
+        this.transactor = transactor;
+        this.scheduler = scheduler;
+    }
+
+    private record UserKit(int userId, int kitId) { }
+
+    void start(Duration flushInterval) {
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records that a kit was used, to be written later
+     *
+     * @param userId the user ID
+     * @param kitId the kit ID
+     * @param lastUsed the time the kit was used, in unix seconds
+     */
+    void kitUsed(int userId, int kitId, long lastUsed) {
+        pending.merge(new UserKit(userId, kitId), lastUsed, Math::max);
+    }
+
+    /**
+     * Writes all pending times as soon as possible, in the background if still running
+     *
+     */
+    void flushSoon() {
+        try {
+            scheduler.execute(this::flush);
+        } catch (RejectedExecutionException ex) {
+            // Closing may already have written the pending times
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending times of a single user
+     *
+     * @param transaction the transaction
+     * @param userId the user ID
+     */
+    void flushUser(Transaction transaction, int userId) {
+        Map<UserKit, Long> entries = new HashMap<>();
+        pending.forEach((userKit, lastUsed) -> {
+            if (userKit.userId() == userId) {
+                entries.put(userKit, lastUsed);
+            }
+        });
+        write(transaction, entries);
+    }
+
+    private void write(Transaction transaction, Map<UserKit, Long> entries) {
+        List<UserKit> drained = new ArrayList<>(entries.size());
+        entries.forEach((userKit, lastUsed) -> {
+            // If a newer time has since been recorded, leave it for the next write
+            if (pending.remove(userKit, lastUsed)) {
+                drained.add(userKit);
+            }
+        });
+        if (drained.isEmpty()) {
+            return;
+        }
+        transaction.getProperty(TransactionCallbacks.class).afterRollback(() -> {
+            for (UserKit userKit : drained) {
+                kitUsed(userKit.userId(), userKit.kitId(), entries.get(userKit));
+            }
+        });
+        DSLContext context = transaction.getProperty(DSLContext.class);
+        // Kits deleted in the meantime would violate the foreign key
+        Set<Integer> existingKitIds = context
+                .select(KITPVP_KITS_IDS.KIT_ID)
+                .from(KITPVP_KITS_IDS)
+                .where(KITPVP_KITS_IDS.KIT_ID.in(drained.stream().map(UserKit::kitId).distinct().toList()))
+                .forShare()
+                .fetchSet(KITPVP_KITS_IDS.KIT_ID);
+        // Sorted, so that concurrent writes lock rows in the same order
+        drained.sort(Comparator.comparingInt(UserKit::userId).thenComparingInt(UserKit::kitId));
+
+        InsertValuesStep3<KitpvpKitsCooldownsRecord, Integer, Integer, Long> insert = context
+                .insertInto(KITPVP_KITS_COOLDOWNS)
+                .columns(KITPVP_KITS_COOLDOWNS.USER_ID, KITPVP_KITS_COOLDOWNS.KIT_ID, KITPVP_KITS_COOLDOWNS.LAST_USED);
+        boolean anyValues = false;
+        for (UserKit userKit : drained) {
+            if (existingKitIds.contains(userKit.kitId())) {
+                insert = insert.values(userKit.userId(), userKit.kitId(), entries.get(userKit));
+                anyValues = true;
+            }
+        }
+        if (!anyValues) {
+            return;
+        }
+        insert.onDuplicateKeyUpdate()
+                .set(KITPVP_KITS_COOLDOWNS.LAST_USED, DSL.greatest(
+                        KITPVP_KITS_COOLDOWNS.LAST_USED,
+                        DSL.field("VALUES({0})", Long.class, DSL.name(KITPVP_KITS_COOLDOWNS.LAST_USED.getName()))))
+                .execute();
+    }
+
+    private Logger logger() {
+        return LoggerFactory.getLogger(getClass());
+    }
+
+    private void flush() {
+        try {
+            transactor.runTransact((transaction) -> {
+                write(transaction, Map.copyOf(pending));
+            }).join();
+        } catch (RuntimeException ex) {
+            // Pending times were restored and will be retried with the next flush
+            logger().warn("Failed to write kit cooldowns", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10L, TimeUnit.SECONDS)) {
+                logger().warn("Failed to await termination of kit cooldown writing");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+}
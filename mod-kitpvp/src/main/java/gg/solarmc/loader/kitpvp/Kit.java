@@ -23,6 +23,7 @@ package gg.solarmc.loader.kitpvp;
 
 import java.time.Duration;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Represents a kit and its contents
@@ -32,10 +33,14 @@ public class Kit {
 
     private final int id;
     private final String name;
-    private final Set<ItemInSlot> contents;
+    private final Supplier<Set<ItemInSlot>> contents;
     private final Duration cooldown;
 
     Kit(int id, String name, Set<ItemInSlot> contents, Duration cooldown) {
+        this(id, name, () -> contents, cooldown);
+    }
+
+    Kit(int id, String name, Supplier<Set<ItemInSlot>> contents, Duration cooldown) {
         this.id = id;
         this.name = name;
         this.contents = contents;
@@ -50,8 +55,15 @@ public class Kit {
         return this.name;
     }
 
+    /**
+     * Gets the contents of this kit. Loaded kits decode their contents when
+     * first requested
+     *
+     * @return the contents
+     * @throws java.io.UncheckedIOException if the contents could not be deserialized
+     */
     public Set<ItemInSlot> getContents() {
-        return this.contents;
+        return this.contents.get();
     }
 
     public Duration getCooldown() {
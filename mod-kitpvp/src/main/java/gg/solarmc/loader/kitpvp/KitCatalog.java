@@ -0,0 +1,84 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of all kits, indexed by ID and by name. Names are
+ * indexed case-insensitively, matching the database collation
+ *
+ */
+record KitCatalog(Map<Integer, Kit> byId, Map<String, Kit> byName) {
+
+    KitCatalog {
+        byId = Map.copyOf(byId);
+        byName = Map.copyOf(byName);
+    }
+
+    static KitCatalog of(Iterable<Kit> kits) {
+        Map<Integer, Kit> byId = new HashMap<>();
+        Map<String, Kit> byName = new HashMap<>();
+        for (Kit kit : kits) {
+            byId.put(kit.getId(), kit);
+            byName.put(nameKey(kit.getName()), kit);
+        }
+        return new KitCatalog(byId, byName);
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    Kit getById(int id) {
+        return byId.get(id);
+    }
+
+    Kit getByName(String name) {
+        return byName.get(nameKey(name));
+    }
+
+    Set<Kit> allKits() {
+        return Set.copyOf(byId.values());
+    }
+
+    KitCatalog withKit(Kit kit) {
+        Map<Integer, Kit> newById = new HashMap<>(byId);
+        Map<String, Kit> newByName = new HashMap<>(byName);
+        newById.put(kit.getId(), kit);
+        newByName.put(nameKey(kit.getName()), kit);
+        return new KitCatalog(newById, newByName);
+    }
+
+    KitCatalog withoutKit(int id) {
+        Kit kit = byId.get(id);
+        if (kit == null) {
+            return this;
+        }
+        Map<Integer, Kit> newById = new HashMap<>(byId);
+        Map<String, Kit> newByName = new HashMap<>(byName);
+        newById.remove(id);
+        newByName.remove(nameKey(kit.getName()));
+        return new KitCatalog(newById, newByName);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packs the contents of a kit into a single value. <br>
+ * <br>
+ * Format version 1, all integers big endian: <br>
+ * - byte: the format version <br>
+ * - byte: flags. Bit 0 is set if the body is deflated <br>
+ * - int: the length of the inflated body, only if the body is deflated <br>
+ * - body: for each item, the slot as an unsigned byte, the item length as an int,
+ * and the serialized item itself <br>
+ * <br>
+ * The schema migration which introduced packed contents writes the same format,
+ * uncompressed. Both must be kept in agreement.
+ *
+ */
+final class KitContentsCodec {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte FLAG_DEFLATED = 1;
+    /** Bodies shorter than this are not worth deflating */
+    private static final int MINIMUM_DEFLATE_LENGTH = 256;
+
+    private final ItemSerializer serializer;
+    private final boolean compress;
+
+    KitContentsCodec(ItemSerializer serializer, boolean compress) {
+        this.serializer = serializer;
+        this.compress = compress;
+    }
+
+    byte[] encode(Set<ItemInSlot> contents) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            for (ItemInSlot itemInSlot : contents) {
+                int slot = itemInSlot.slot();
+                if (slot < 0 || slot > 255) {
+                    throw new IllegalArgumentException("Slot out of range: " + slot);
+                }
+                byte[] item = serializeItem(itemInSlot.item());
+                body.write(slot);
+                body.write(ByteBuffer.allocate(Integer.BYTES).putInt(item.length).array());
+                body.write(item);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to serialize kit item", ex);
+        }
+        byte[] bodyBytes = body.toByteArray();
+        if (compress && bodyBytes.length >= MINIMUM_DEFLATE_LENGTH) {
+            byte[] deflated = deflate(bodyBytes);
+            if (deflated.length + Integer.BYTES < bodyBytes.length) {
+                return ByteBuffer.allocate(2 + Integer.BYTES + deflated.length)
+                        .put(FORMAT_VERSION).put(FLAG_DEFLATED).putInt(bodyBytes.length).put(deflated)
+                        .array();
+            }
+        }
+        return ByteBuffer.allocate(2 + bodyBytes.length)
+                .put(FORMAT_VERSION).put((byte) 0).put(bodyBytes)
+                .array();
+    }
+
+    /**
+     * Decodes packed contents the first time they are requested
+     *
+     * @param packed the packed contents
+     * @return a supplier of the decoded contents, which decodes at most once
+     */
+    Supplier<Set<ItemInSlot>> decodeLazily(byte[] packed) {
+        return new LazyContents(packed);
+    }
+
+    Set<ItemInSlot> decode(byte[] packed) {
+        ByteBuffer header = ByteBuffer.wrap(packed);
+        byte version = header.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unknown kit contents format version " + version);
+        }
+        byte flags = header.get();
+        byte[] body;
+        int bodyOffset;
+        if ((flags & FLAG_DEFLATED) != 0) {
+            body = inflate(packed, header.position() + Integer.BYTES, header.getInt());
+            bodyOffset = 0;
+        } else {
+            body = packed;
+            bodyOffset = header.position();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body, bodyOffset, body.length - bodyOffset);
+        Set<ItemInSlot> contents = new HashSet<>();
+        try {
+            while (buffer.hasRemaining()) {
+                int slot = Byte.toUnsignedInt(buffer.get());
+                int length = buffer.getInt();
+                contents.add(new ItemInSlot(slot, deserializeItem(body, buffer.position(), length)));
+                buffer.position(buffer.position() + length);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to deserialize kit item", ex);
+        }
+        return Set.copyOf(contents);
+    }
+
+    private byte[] serializeItem(KitItem item) throws IOException {
+        if (serializer instanceof ByteArrayItemSerializer byteArraySerializer) {
+            return byteArraySerializer.serialize(item);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        serializer.serialize(item, output);
+        return output.toByteArray();
+    }
+
+    private KitItem deserializeItem(byte[] data, int offset, int length) throws IOException {
+        if (serializer instanceof ByteArrayItemSerializer byteArraySerializer) {
+            return byteArraySerializer.deserialize(data, offset, length);
+        }
+        return serializer.deserialize(new ByteArrayInputStream(data, offset, length));
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int inflatedLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            byte[] inflated = new byte[inflatedLength];
+            int written = 0;
+            while (written < inflatedLength && !inflater.finished()) {
+                int count = inflater.inflate(inflated, written, inflatedLength - written);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                written += count;
+            }
+            if (written != inflatedLength) {
+                throw new IllegalStateException("Truncated kit contents");
+            }
+            return inflated;
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt kit contents", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private final class LazyContents implements Supplier<Set<ItemInSlot>> {
+
+        private byte[] packed;
+        private volatile Set<ItemInSlot> contents;
+
+        LazyContents(byte[] packed) {
+            this.packed = packed;
+        }
+
+        @Override
+        public Set<ItemInSlot> get() {
+            Set<ItemInSlot> contents = this.contents;
+            if (contents == null) {
+                synchronized (this) {
+                    contents = this.contents;
+                    if (contents == null) {
+                        contents = decode(packed);
+                        this.contents = contents;
+                        // No longer needed
+                        packed = null;
+                    }
+                }
+            }
+            return contents;
+        }
+    }
+}
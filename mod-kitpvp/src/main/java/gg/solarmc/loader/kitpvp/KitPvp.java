@@ -21,12 +21,15 @@ package gg.solarmc.loader.kitpvp;
 
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.data.DataObject;
+import gg.solarmc.loader.impl.TransactionCallbacks;
 import gg.solarmc.loader.schema.routines.KitpvpAddKillstreak;
 import org.jooq.DSLContext;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 
@@ -54,6 +57,14 @@ public abstract class KitPvp implements DataObject {
         this.manager = manager;
     }
 
+    int userId() {
+        return userId;
+    }
+
+    KitPvpManager manager() {
+        return manager;
+    }
+
     abstract void updateKills(int i);
     abstract void updateDeaths(int i);
     abstract void updateAssists(int i);
@@ -63,6 +74,56 @@ public abstract class KitPvp implements DataObject {
 
     abstract void updateBounty(BountyCurrency currency, BigDecimal bounty);
 
+    /**
+     * Adds to a statistic in memory, if statistics are aggregated for this user
+     *
+     * @param transaction the transaction
+     * @param statistic the statistic
+     * @param amount the amount to add
+     * @return the result, or null if the amount must be written immediately
+     */
+    StatisticResult aggregate(Transaction transaction, AggregatedStatistic statistic, int amount) {
+        return null;
+    }
+
+    /**
+     * Attempts to use a kit using cooldowns kept in memory, if they are kept for this user
+     *
+     * @param transaction the transaction
+     * @param kit the kit, which has a cooldown
+     * @param now the current time
+     * @return the result, or null if the cooldown must be checked in the database
+     */
+    Optional<RemainingCooldown> attemptToUseKitInMemory(Transaction transaction, Kit kit, Instant now) {
+        return null;
+    }
+
+    /**
+     * Gets the IDs of owned kits, if they are kept in memory for this user
+     *
+     * @return the sorted kit IDs, or null if ownership must be checked in the database
+     */
+    int[] ownedKitIds() {
+        return null;
+    }
+
+    /**
+     * Updates the kits owned in memory, if they are kept for this user
+     *
+     * @param kitId the kit ID
+     * @param owned whether the kit is now owned
+     * @return true if changed, false otherwise
+     */
+    boolean setKitOwned(int kitId, boolean owned) {
+        return false;
+    }
+
+    void kitOwnershipChanged(Transaction transaction, int kitId, boolean owned) {
+        if (setKitOwned(kitId, owned)) {
+            transaction.getProperty(TransactionCallbacks.class).afterRollback(() -> setKitOwned(kitId, !owned));
+        }
+    }
+
     /**
      * Adds kills to the user account. Infallible.
      * @param transaction represents the transaction
@@ -73,6 +134,10 @@ public abstract class KitPvp implements DataObject {
         if (amount <= 0) {
             throw new IllegalArgumentException("amount must be positive");
         }
+        StatisticResult aggregated = aggregate(transaction, AggregatedStatistic.KILLS, amount);
+        if (aggregated != null) {
+            return aggregated;
+        }
         int newValue = transaction.getProperty(DSLContext.class)
                 .select(kitpvpAddKills(userId, amount))
                 .fetchSingle().value1();
@@ -91,6 +156,10 @@ public abstract class KitPvp implements DataObject {
         if (amount <= 0) {
             throw new IllegalArgumentException("amount must be positive");
         }
+        StatisticResult aggregated = aggregate(transaction, AggregatedStatistic.DEATHS, amount);
+        if (aggregated != null) {
+            return aggregated;
+        }
         int newValue = transaction.getProperty(DSLContext.class)
                 .select(kitpvpAddDeaths(userId, amount))
                 .fetchSingle().value1();
@@ -109,6 +178,10 @@ public abstract class KitPvp implements DataObject {
         if (amount <= 0) {
             throw new IllegalArgumentException("amount must be positive");
         }
+        StatisticResult aggregated = aggregate(transaction, AggregatedStatistic.ASSISTS, amount);
+        if (aggregated != null) {
+            return aggregated;
+        }
         int newValue = transaction.getProperty(DSLContext.class)
                 .select(kitpvpAddAssists(userId, amount))
                 .fetchSingle().value1();
@@ -128,6 +201,10 @@ public abstract class KitPvp implements DataObject {
         if (amount <= 0) {
             throw new IllegalArgumentException("amount must be positive");
         }
+        StatisticResult aggregated = aggregate(transaction, AggregatedStatistic.EXPERIENCE, amount);
+        if (aggregated != null) {
+            return aggregated;
+        }
         int newValue = transaction.getProperty(DSLContext.class)
                 .select(kitpvpAddExperience(userId, amount))
                 .fetchSingle().value1();
@@ -219,6 +296,7 @@ public abstract class KitPvp implements DataObject {
                 .fetchSingle().value1();
 
         this.updateBounty(currency, newValue);
+        manager.bountyChanged(transaction, userId, currency, newValue);
         return currency.createAmount(newValue);
     }
 
@@ -235,6 +313,7 @@ public abstract class KitPvp implements DataObject {
                 .fetchSingle().value1();
 
         this.updateBounty(currency, BigDecimal.ZERO);
+        manager.bountyChanged(transaction, userId, currency, BigDecimal.ZERO);
         return currency.createAmount(previousBounty);
     }
 
@@ -252,6 +331,7 @@ public abstract class KitPvp implements DataObject {
                 .values(userId, kit.getId())
                 .onConflictDoNothing()
                 .execute();
+        kitOwnershipChanged(transaction, kit.getId(), true);
         return updateCount != 0 ? ADDED_KIT : NO_CHANGE;
     }
 
@@ -267,15 +347,25 @@ public abstract class KitPvp implements DataObject {
                 .where(KITPVP_KITS_OWNERSHIP.USER_ID.eq(userId))
                 .and(KITPVP_KITS_OWNERSHIP.KIT_ID.eq(kit.getId()))
                 .execute();
+        kitOwnershipChanged(transaction, kit.getId(), false);
         return updateCount != 0 ? REMOVED_KIT : NO_CHANGE;
     }
 
     /**
-     * Gets all the kits the player owns
+     * Gets all the kits the player owns. For online players, this is answered from memory
      * @param transaction the transaction
      * @return result containing all owned kits
      */
     public Set<Kit> getKits(Transaction transaction) {
+        int[] ownedKitIds = ownedKitIds();
+        if (ownedKitIds != null) {
+            Set<Kit> kits = new HashSet<>(ownedKitIds.length);
+            for (int kitId : ownedKitIds) {
+                // Skip kits deleted since they were loaded
+                manager.getKitById(transaction, kitId).ifPresent(kits::add);
+            }
+            return Set.copyOf(kits);
+        }
         Set<Kit> kits = transaction.getProperty(DSLContext.class)
                 .select(KITPVP_KITS_OWNERSHIP.KIT_ID).from(KITPVP_KITS_OWNERSHIP)
                 .where(KITPVP_KITS_OWNERSHIP.USER_ID.eq(this.userId))
@@ -287,13 +377,17 @@ public abstract class KitPvp implements DataObject {
     }
 
     /**
-     * Determines if the user owns the specified kit
+     * Determines if the user owns the specified kit. For online players, this is answered from memory
      *
      * @param transaction the transaction
      * @param kit the kit
      * @return true if the user owns the kit, false otherwise
      */
     public boolean ownsKit(Transaction transaction, Kit kit) {
+        int[] ownedKitIds = ownedKitIds();
+        if (ownedKitIds != null) {
+            return Arrays.binarySearch(ownedKitIds, kit.getId()) >= 0;
+        }
         var context = transaction.getProperty(DSLContext.class);
         return context.fetchExists(
                 context.select(KITPVP_KITS_OWNERSHIP.KIT_ID).from(KITPVP_KITS_OWNERSHIP)
@@ -306,7 +400,10 @@ public abstract class KitPvp implements DataObject {
      * has passed since the kit was last used, updates the time the kit was last used
      * and returns an empty optional. Otherwise, returns the remaining cooldown. <br>
      * <br>
-     * <b>Does not check kit ownership.</b> Use {@link #ownsKit(Transaction, Kit)} to do that
+     * <b>Does not check kit ownership.</b> Use {@link #ownsKit(Transaction, Kit)} to do that <br>
+     * <br>
+     * For online players, cooldowns are kept in memory and the time of use is stored
+     * in the background once the transaction commits.
      *
      * @param transaction the transaction
      * @param kit the kit in question
@@ -318,6 +415,11 @@ public abstract class KitPvp implements DataObject {
         if (cooldown.isZero()) {
             return Optional.empty();
         }
+        Instant now = manager.clock().instant();
+        Optional<RemainingCooldown> fromMemory = attemptToUseKitInMemory(transaction, kit, now);
+        if (fromMemory != null) {
+            return fromMemory;
+        }
         DSLContext context = transaction.getProperty(DSLContext.class);
         Long lastUsed = context
                 .select(KITPVP_KITS_COOLDOWNS.LAST_USED)
@@ -325,7 +427,6 @@ public abstract class KitPvp implements DataObject {
                 .where(KITPVP_KITS_COOLDOWNS.USER_ID.eq(userId))
                 .and(KITPVP_KITS_COOLDOWNS.KIT_ID.eq(kit.getId()))
                 .fetchOne(KITPVP_KITS_COOLDOWNS.LAST_USED);
-        Instant now = manager.clock().instant();
         if (lastUsed != null) {
             Duration timeSinceLastUsed = Duration.between(Instant.ofEpochSecond(lastUsed), now);
             Duration remainingCooldown = cooldown.minus(timeSinceLastUsed);
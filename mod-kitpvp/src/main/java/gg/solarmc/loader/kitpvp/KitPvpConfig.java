@@ -0,0 +1,76 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import space.arim.dazzleconf.annote.ConfComments;
+import space.arim.dazzleconf.annote.ConfDefault;
+import space.arim.dazzleconf.annote.ConfHeader;
+import space.arim.dazzleconf.annote.ConfKey;
+
+@ConfHeader("Configuration details regarding kitpvp")
+public interface KitPvpConfig {
+
+    @ConfKey("enable-statistic-aggregation")
+    @ConfComments({"Whether kills, deaths, assists and experience added to online players are kept in memory",
+            "and written in batches, rather than written immediately. They are written periodically,",
+            "when the player logs out, and at shutdown."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableStatisticAggregation();
+
+    @ConfKey("statistic-flush-interval-millis")
+    @ConfComments("How often aggregated statistics are written, if aggregation is enabled")
+    @ConfDefault.DefaultLong(2000L)
+    long statisticFlushIntervalMillis();
+
+    @ConfKey("cooldown-flush-interval-millis")
+    @ConfComments({"How often the times at which online players used kits are written.",
+            "Kit cooldowns of online players are checked in memory.",
+            "A player's pending times are also written in the transaction which logs the player out.",
+            "A server the player switches to sees them once that logout completes, so the proxy",
+            "should finish disconnecting players from their previous server before connecting them",
+            "to the next, else a cooldown may be bypassed by switching servers."})
+    @ConfDefault.DefaultLong(1000L)
+    long cooldownFlushIntervalMillis();
+
+    @ConfKey("leaderboard-cache-size")
+    @ConfComments({"How many of the top entries of each statistic leaderboard are kept in memory.",
+            "Pages within these entries are answered without a query."})
+    @ConfDefault.DefaultInteger(100)
+    int leaderboardCacheSize();
+
+    @ConfKey("leaderboard-refresh-interval-millis")
+    @ConfComments({"How often the cached top entries of a leaderboard are refreshed in the background,",
+            "while the leaderboard is in use. Unused leaderboards are dropped after five intervals."})
+    @ConfDefault.DefaultLong(30000L)
+    long leaderboardRefreshIntervalMillis();
+
+    @ConfKey("compress-kit-contents")
+    @ConfComments({"Whether the stored contents of newly created kits are compressed, where doing so makes them smaller.",
+            "Kits stored either way can always be read."})
+    @ConfDefault.DefaultBoolean(true)
+    boolean compressKitContents();
+
+    @ConfKey("enable-bounty-index")
+    @ConfComments({"Whether to keep an in-memory ranking of bounties, used when listing bounties in a single currency.",
+            "It is built at startup and reconciled with the database whenever caches are refreshed."})
+    @ConfDefault.DefaultBoolean(false)
+    boolean enableBountyIndex();
+
+}
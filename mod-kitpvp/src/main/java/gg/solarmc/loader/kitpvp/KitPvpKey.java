@@ -22,10 +22,22 @@ package gg.solarmc.loader.kitpvp;
 import gg.solarmc.loader.data.DataKey;
 import gg.solarmc.loader.data.DataKeyInitializationContext;
 import gg.solarmc.loader.data.DataLoader;
+import space.arim.dazzleconf.ConfigurationOptions;
+import space.arim.dazzleconf.error.InvalidConfigException;
+import space.arim.dazzleconf.ext.snakeyaml.CommentMode;
+import space.arim.dazzleconf.ext.snakeyaml.SnakeYamlConfigurationFactory;
+import space.arim.dazzleconf.ext.snakeyaml.SnakeYamlOptions;
+import space.arim.dazzleconf.helper.ConfigurationHelper;
 import space.arim.omnibus.registry.Registry;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.ServiceLoader;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class KitPvpKey implements DataKey<OnlineKitPvp, KitPvp, KitPvpManager> {
 
@@ -40,10 +52,54 @@ public class KitPvpKey implements DataKey<OnlineKitPvp, KitPvp, KitPvpManager> {
 
     @Override
     public KitPvpManager createDataManager(DataKeyInitializationContext context) {
+        KitPvpConfig config = loadConfig(context.configFolder());
         Registry registry = context.omnibus().getRegistry();
-        return new KitPvpManager(
-                registry.getProvider(ItemSerializer.class).orElseGet(this::serviceLoadItemSerializer),
-                registry.getProvider(Clock.class).orElseGet(Clock::systemUTC));
+        StatisticAccumulator statisticAccumulator = null;
+        if (config.enableStatisticAggregation()) {
+            statisticAccumulator = new StatisticAccumulator(
+                    context.transactor(),
+                    backgroundScheduler("DataLoader-KitPvpStatistics"));
+            statisticAccumulator.start(Duration.ofMillis(config.statisticFlushIntervalMillis()));
+        }
+        CooldownWriter cooldownWriter = new CooldownWriter(
+                context.transactor(),
+                backgroundScheduler("DataLoader-KitPvpCooldowns"));
+        cooldownWriter.start(Duration.ofMillis(config.cooldownFlushIntervalMillis()));
+        KitPvpManager manager = new KitPvpManager(
+                config,
+                new KitContentsCodec(
+                        registry.getProvider(ItemSerializer.class).orElseGet(this::serviceLoadItemSerializer),
+                        config.compressKitContents()),
+                registry.getProvider(Clock.class).orElseGet(Clock::systemUTC),
+                statisticAccumulator,
+                new StatisticLeaderboards(
+                        context.transactor(),
+                        config.leaderboardCacheSize(),
+                        Duration.ofMillis(config.leaderboardRefreshIntervalMillis())),
+                cooldownWriter,
+                (config.enableBountyIndex()) ? new BountyIndex() : null);
+        manager.refreshCaches(context.transaction());
+        return manager;
+    }
+
+    private static ScheduledExecutorService backgroundScheduler(String threadName) {
+        return Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private KitPvpConfig loadConfig(Path path) {
+        try {
+            return new ConfigurationHelper<>(path, "kitpvp.yml",
+                    SnakeYamlConfigurationFactory.create(KitPvpConfig.class, ConfigurationOptions.defaults(),
+                            new SnakeYamlOptions.Builder().commentMode(CommentMode.alternativeWriter()).build())).reloadConfigData();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InvalidConfigException ex) {
+            throw new RuntimeException("Fix the configuration and restart", ex);
+        }
     }
 
     private ItemSerializer serviceLoadItemSerializer() {
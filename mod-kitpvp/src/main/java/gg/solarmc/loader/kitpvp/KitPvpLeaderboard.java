@@ -0,0 +1,74 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import org.jooq.Field;
+
+import java.math.BigDecimal;
+
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+
+/**
+ * The statistics by which players may be ranked
+ *
+ */
+public enum KitPvpLeaderboard {
+    /**
+     * Kills
+     *
+     */
+    KILLS(KITPVP_STATISTICS.KILLS),
+    /**
+     * Deaths
+     *
+     */
+    DEATHS(KITPVP_STATISTICS.DEATHS),
+    /**
+     * Assists
+     *
+     */
+    ASSISTS(KITPVP_STATISTICS.ASSISTS),
+    /**
+     * Experience
+     *
+     */
+    EXPERIENCE(KITPVP_STATISTICS.EXPERIENCE),
+    /**
+     * Highest killstreak
+     *
+     */
+    HIGHEST_KILLSTREAK(KITPVP_STATISTICS.HIGHEST_KILLSTREAK),
+    /**
+     * Kills per death, where having no deaths counts as having one death
+     *
+     */
+    KILL_DEATH_RATIO(KITPVP_STATISTICS.KILL_DEATH_RATIO);
+
+    private final Field<BigDecimal> column;
+
+    KitPvpLeaderboard(Field<? extends Number> column) {
+        // Coercion only changes the Java type, so that indexes remain usable
+        this.column = column.coerce(BigDecimal.class);
+    }
+
+    Field<BigDecimal> column() {
+        return column;
+    }
+}
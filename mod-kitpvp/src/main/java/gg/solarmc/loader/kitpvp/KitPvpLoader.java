@@ -33,6 +33,7 @@ import static gg.solarmc.loader.schema.tables.KitpvpKitsContents.KITPVP_KITS_CON
 import static gg.solarmc.loader.schema.tables.KitpvpKitsCooldowns.KITPVP_KITS_COOLDOWNS;
 import static gg.solarmc.loader.schema.tables.KitpvpKitsIds.KITPVP_KITS_IDS;
 import static gg.solarmc.loader.schema.tables.KitpvpKitsOwnership.KITPVP_KITS_OWNERSHIP;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsPackedContents.KITPVP_KITS_PACKED_CONTENTS;
 import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
 
 class KitPvpLoader implements DataLoader<OnlineKitPvp, KitPvp> {
@@ -58,18 +59,38 @@ class KitPvpLoader implements DataLoader<OnlineKitPvp, KitPvp> {
                     .from(KITPVP_BOUNTIES)
                     .where(KITPVP_BOUNTIES.USER_ID.eq(userId))
                     .fetchMap(record -> BountyCurrency.deserialize(record.value1()), Record2::value2);
-            return new OnlineKitPvp(
+            OnlineKitPvp data = new OnlineKitPvp(
                     userId, manager,
                     kitpvpRecord.value1(), kitpvpRecord.value2(), kitpvpRecord.value3(),
                     kitpvpRecord.value4(), kitpvpRecord.value5(), kitpvpRecord.value6(),
                     bounties.getOrDefault(BountyCurrency.CREDITS, BigDecimal.ZERO),
                     bounties.getOrDefault(BountyCurrency.PLAIN_ECO, BigDecimal.ZERO));
+            data.loadCooldowns(context
+                    .select(KITPVP_KITS_COOLDOWNS.KIT_ID, KITPVP_KITS_COOLDOWNS.LAST_USED)
+                    .from(KITPVP_KITS_COOLDOWNS)
+                    .where(KITPVP_KITS_COOLDOWNS.USER_ID.eq(userId))
+                    .fetchMap(KITPVP_KITS_COOLDOWNS.KIT_ID, KITPVP_KITS_COOLDOWNS.LAST_USED));
+            data.loadOwnedKits(context
+                    .select(KITPVP_KITS_OWNERSHIP.KIT_ID)
+                    .from(KITPVP_KITS_OWNERSHIP)
+                    .where(KITPVP_KITS_OWNERSHIP.USER_ID.eq(userId))
+                    .fetch(KITPVP_KITS_OWNERSHIP.KIT_ID)
+                    .stream().mapToInt(Integer::intValue).toArray());
+            manager.userLoaded(data);
+            return data;
         }
         context.insertInto(KITPVP_STATISTICS)
                 .columns(KITPVP_STATISTICS.USER_ID)
                 .values(userId)
                 .execute();
-        return new OnlineKitPvp(userId, manager, 0, 0, 0, 0, 0, 0, BigDecimal.ZERO, BigDecimal.ZERO);
+        OnlineKitPvp data = new OnlineKitPvp(userId, manager, 0, 0, 0, 0, 0, 0, BigDecimal.ZERO, BigDecimal.ZERO);
+        manager.userLoaded(data);
+        return data;
+    }
+
+    @Override
+    public void unloadData(Transaction transaction, int userId) {
+        manager.userUnloaded(transaction, userId);
     }
 
     @Override
@@ -85,6 +106,7 @@ class KitPvpLoader implements DataLoader<OnlineKitPvp, KitPvp> {
         context.deleteFrom(KITPVP_KITS_OWNERSHIP).execute();
         context.deleteFrom(KITPVP_KITS_COOLDOWNS).execute();
         context.deleteFrom(KITPVP_KITS_CONTENTS).execute();
+        context.deleteFrom(KITPVP_KITS_PACKED_CONTENTS).execute();
         context.deleteFrom(KITPVP_BOUNTIES).execute();
         context.deleteFrom(KITPVP_BOUNTY_LOGS).execute();
     }
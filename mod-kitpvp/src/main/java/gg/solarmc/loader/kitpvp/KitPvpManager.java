@@ -19,49 +19,149 @@
 
 package gg.solarmc.loader.kitpvp;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import gg.solarmc.loader.SolarPlayer;
 import gg.solarmc.loader.Transaction;
 import gg.solarmc.loader.data.DataManager;
-import org.jooq.BatchBindStep;
+import gg.solarmc.loader.impl.ScaledDecimals;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import gg.solarmc.loader.schema.routines.KitpvpRecordKill;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
-import org.jooq.DataType;
-import org.jooq.Field;
 import org.jooq.Record1;
-import org.jooq.Record2;
 import org.jooq.Record3;
-import org.jooq.impl.DSL;
 
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static gg.solarmc.loader.schema.Routines.kitpvpCreateKit;
+import static gg.solarmc.loader.schema.tables.KitpvpBounties.KITPVP_BOUNTIES;
 import static gg.solarmc.loader.schema.tables.KitpvpBountyLogs.KITPVP_BOUNTY_LOGS;
-import static gg.solarmc.loader.schema.tables.KitpvpKitsContents.KITPVP_KITS_CONTENTS;
 import static gg.solarmc.loader.schema.tables.KitpvpKitsIds.KITPVP_KITS_IDS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsOwnership.KITPVP_KITS_OWNERSHIP;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsPackedContents.KITPVP_KITS_PACKED_CONTENTS;
 
 public class KitPvpManager implements DataManager {
 
-	private final Cache<KitCacheKey, Kit> existingKits = Caffeine.newBuilder().expireAfterAccess(Duration.ofMinutes(15)).build();
-	private final ItemSerializer serializer;
+	// Null after caches are cleared, until next used
+	private final AtomicReference<KitCatalog> kitCatalog = new AtomicReference<>();
+	private final KitPvpConfig config;
+	private final KitContentsCodec contentsCodec;
 	private final Clock clock;
+	// Null if disabled
+	private final StatisticAccumulator statisticAccumulator;
+	private final StatisticLeaderboards leaderboards;
+	private final CooldownWriter cooldownWriter;
+	private final ConcurrentMap<Integer, OnlineKitPvp> onlineUsers = new ConcurrentHashMap<>();
+	// Null if disabled
+	private final BountyIndex bountyIndex;
 
-	KitPvpManager(ItemSerializer serializer, Clock clock) {
-		this.serializer = serializer;
+	KitPvpManager(KitPvpConfig config, KitContentsCodec contentsCodec, Clock clock,
+				  StatisticAccumulator statisticAccumulator, StatisticLeaderboards leaderboards,
+				  CooldownWriter cooldownWriter, BountyIndex bountyIndex) {
+		this.config = config;
+		this.contentsCodec = contentsCodec;
 		this.clock = clock;
+		this.statisticAccumulator = statisticAccumulator;
+		this.leaderboards = leaderboards;
+		this.cooldownWriter = cooldownWriter;
+		this.bountyIndex = bountyIndex;
+	}
+
+	/**
+	 * Gets the kitpvp configuration
+	 *
+	 * @return the configuration
+	 */
+	public KitPvpConfig getConfiguration() {
+		return config;
 	}
 
 	Clock clock() {
 		return clock;
 	}
 
-	private DataType<KitItem> kitItemDataType() {
-		return KITPVP_KITS_CONTENTS.ITEM.getDataType().asConvertedDataType(new ItemSerializerBinding(serializer));
+	boolean aggregatesStatistics() {
+		return statisticAccumulator != null;
+	}
+
+	void userLoaded(OnlineKitPvp user) {
+		onlineUsers.put(user.userId(), user);
+		if (statisticAccumulator != null) {
+			statisticAccumulator.register(user);
+		}
+	}
+
+	void userUnloaded(Transaction transaction, int userId) {
+		onlineUsers.remove(userId);
+		if (statisticAccumulator != null) {
+			statisticAccumulator.flushAndUnregister(transaction, userId);
+		}
+		cooldownWriter.flushUser(transaction, userId);
+	}
+
+	void kitUsed(int userId, int kitId, long lastUsed) {
+		cooldownWriter.kitUsed(userId, kitId, lastUsed);
+		if (!onlineUsers.containsKey(userId)) {
+			// The user logged out before this use was queued, so the logout did not write it
+			cooldownWriter.flushSoon();
+		}
+	}
+
+	BountyIndex bountyIndex() {
+		return bountyIndex;
+	}
+
+	void bountyChanged(Transaction transaction, int userId, BountyCurrency currency, BigDecimal newAmount) {
+		if (bountyIndex != null) {
+			long scaledAmount = ScaledDecimals.toScaled(newAmount);
+			transaction.getProperty(TransactionCallbacks.class).afterCommit(() -> {
+				bountyIndex.update(userId, currency, scaledAmount);
+			});
+		}
+	}
+
+	private KitCatalog kitCatalog(Transaction transaction) {
+		KitCatalog catalog = kitCatalog.get();
+		if (catalog == null) {
+			// Caches were cleared
+			catalog = loadKitCatalog(transaction);
+			kitCatalog.compareAndSet(null, catalog);
+		}
+		return catalog;
+	}
+
+	private KitCatalog loadKitCatalog(Transaction transaction) {
+		List<Kit> kits = transaction.getProperty(DSLContext.class)
+				.select(KITPVP_KITS_IDS.KIT_ID, KITPVP_KITS_IDS.KIT_NAME, KITPVP_KITS_IDS.KIT_COOLDOWN,
+						KITPVP_KITS_PACKED_CONTENTS.CONTENTS)
+				.from(KITPVP_KITS_IDS)
+				.leftJoin(KITPVP_KITS_PACKED_CONTENTS)
+				.on(KITPVP_KITS_PACKED_CONTENTS.KIT_ID.eq(KITPVP_KITS_IDS.KIT_ID))
+				.fetch((kitRecord) -> {
+					byte[] packedContents = kitRecord.value4();
+					// Contents are decoded when first requested
+					Supplier<Set<ItemInSlot>> contents = (packedContents == null) ?
+							Set::of : contentsCodec.decodeLazily(packedContents);
+					return new Kit(kitRecord.value1(), kitRecord.value2(), contents,
+							Duration.ofSeconds(kitRecord.value3()));
+				});
+		return KitCatalog.of(kits);
 	}
 
 	/**
@@ -72,66 +172,30 @@ public class KitPvpManager implements DataManager {
 	 * @return the kit if found, an empty optional otherwise
 	 */
 	public Optional<Kit> getKitById(Transaction transaction, int id) {
-		// IntelliJ needs to fix their broken inspection on this
-		// Cache provides the desired behavior of not caching nulls but returning them from get()
-		//noinspection ConstantConditions
-		return Optional.ofNullable(existingKits.get(new KitKeyId(id), num -> {
-			var jooq = transaction.getProperty(DSLContext.class);
-
-			Record2<String, Integer> kitRecord = jooq
-					.select(KITPVP_KITS_IDS.KIT_NAME, KITPVP_KITS_IDS.KIT_COOLDOWN)
-					.from(KITPVP_KITS_IDS)
-					.where(KITPVP_KITS_IDS.KIT_ID.eq(id))
-					.fetchOne();
-
-			if (kitRecord == null) {
-				return null;
-			}
-			return getKit(transaction, id, kitRecord.value1(), kitRecord.value2());
-		}));
+		return Optional.ofNullable(kitCatalog(transaction).getById(id));
 	}
 
 	/**
-	 * Gets a kit based on its name
+	 * Gets a kit based on its name. The name is matched case-insensitively
 	 *
 	 * @param transaction the transaction
 	 * @param name the name of the kit to find
 	 * @return the kit if found, an empty optional otherwise
-	 * @throws IllegalStateException if the kit does not exist
 	 */
 	public Optional<Kit> getKitByName(Transaction transaction, String name) {
-		//noinspection ConstantConditions
-		return Optional.ofNullable(existingKits.get(new KitKeyName(name), num -> {
-			var jooq = transaction.getProperty(DSLContext.class);
-
-			// Fetch name using correct case
-			Record3<Integer, String, Integer> kitRecord = jooq
-					.select(KITPVP_KITS_IDS.KIT_ID, KITPVP_KITS_IDS.KIT_NAME, KITPVP_KITS_IDS.KIT_COOLDOWN)
-					.from(KITPVP_KITS_IDS)
-					.where(KITPVP_KITS_IDS.KIT_NAME.eq(name))
-					.fetchOne();
-
-			if (kitRecord == null) {
-				return null;
-			}
-			return getKit(transaction, kitRecord.value1(), kitRecord.value2(), kitRecord.value3());
-		}));
+		return Optional.ofNullable(kitCatalog(transaction).getByName(name));
 	}
 
-	Kit getKit(Transaction transaction, int id, String name, int cooldown) {
-		var jooq = transaction.getProperty(DSLContext.class);
-
-		DataType<KitItem> itemType = kitItemDataType();
-		Field<KitItem> itemColumn = DSL.field(KITPVP_KITS_CONTENTS.ITEM.getName(), itemType);
-		Set<ItemInSlot> contents = jooq
-				.select(KITPVP_KITS_CONTENTS.SLOT, itemColumn)
-				.from(KITPVP_KITS_CONTENTS)
-				.where(KITPVP_KITS_CONTENTS.KIT_ID.eq(id))
-				.fetchSet((itemInSlotRecord) -> {
-					return new ItemInSlot(
-						itemInSlotRecord.value1(), itemInSlotRecord.value2());
-				});
-		return new Kit(id, name, Set.copyOf(contents), Duration.ofSeconds(cooldown));
+	/**
+	 * Gets all kits. Kits are kept in memory and reloaded when caches are refreshed,
+	 * so kits created or deleted by other servers are seen after the next refresh. Kits
+	 * created or deleted on this server are seen once the transaction doing so commits
+	 *
+	 * @param transaction the transaction
+	 * @return all kits, an immutable set
+	 */
+	public Set<Kit> getAllKits(Transaction transaction) {
+		return kitCatalog(transaction).allKits();
 	}
 
 	/**
@@ -160,35 +224,31 @@ public class KitPvpManager implements DataManager {
 		DSLContext context = transaction.getProperty(DSLContext.class);
 
 		String name = kitBuilder.name();
+		Set<ItemInSlot> contents = kitBuilder.contents();
 		int kitId = context.select(kitpvpCreateKit(name, (int) kitBuilder.cooldown().toSeconds()))
 				.fetchSingle().value1();
 		if (kitId == -1) { // Special return value
 			return Optional.empty();
 		}
 
-		Set<ItemInSlot> contents = kitBuilder.contents();
-		if (!contents.isEmpty()) {
-			DataType<KitItem> itemType = kitItemDataType();
-			Field<KitItem> itemColumn = DSL.field(KITPVP_KITS_CONTENTS.ITEM.getQualifiedName(), itemType);
-			BatchBindStep batch = context.batch(context
-					.insertInto(KITPVP_KITS_CONTENTS)
-					.columns(KITPVP_KITS_CONTENTS.KIT_ID, KITPVP_KITS_CONTENTS.SLOT, itemColumn)
-					.values((Integer) null, null, null));
-			for (ItemInSlot itemInSlot : contents) {
-				batch.bind(kitId, itemInSlot.slot(), itemInSlot.item());
-			}
-			batch.execute();
-		}
+		byte[] packedContents = contentsCodec.encode(contents);
+		context.insertInto(KITPVP_KITS_PACKED_CONTENTS)
+				.columns(KITPVP_KITS_PACKED_CONTENTS.KIT_ID, KITPVP_KITS_PACKED_CONTENTS.CONTENTS)
+				.values(kitId, packedContents)
+				.execute();
 
 		Kit kit = new Kit(kitId, name, contents, kitBuilder.cooldown());
-		existingKits.put(new KitKeyName(name), kit);
-		existingKits.put(new KitKeyId(kitId), kit);
+		// Other transactions must not see the kit before it is committed
+		transaction.getProperty(TransactionCallbacks.class).afterCommit(() -> {
+			kitCatalog.updateAndGet((catalog) -> (catalog == null) ? null : catalog.withKit(kit));
+		});
 		return Optional.of(kit);
 	}
 
-	private void invalidateKit(int id, String name) {
-		existingKits.invalidate(new KitKeyId(id));
-		existingKits.invalidate(new KitKeyName(name));
+	private void invalidateKit(Transaction transaction, int id) {
+		transaction.getProperty(TransactionCallbacks.class).afterCommit(() -> {
+			kitCatalog.updateAndGet((catalog) -> (catalog == null) ? null : catalog.withoutKit(id));
+		});
 	}
 
 	/**
@@ -207,7 +267,7 @@ public class KitPvpManager implements DataManager {
 		if (updateCount == 0) {
 			return false;
 		}
-		invalidateKit(kitId, kit.getName());
+		invalidateKit(transaction, kitId);
 		return true;
 	}
 
@@ -226,7 +286,7 @@ public class KitPvpManager implements DataManager {
 		if (kitNameRecord == null) {
 			return false;
 		}
-		invalidateKit(kitId, kitNameRecord.value1());
+		invalidateKit(transaction, kitId);
 		return true;
 	}
 
@@ -245,13 +305,53 @@ public class KitPvpManager implements DataManager {
 		if (kitIdRecord == null) {
 			return false;
 		}
-		invalidateKit(kitIdRecord.value1(), kitName);
+		invalidateKit(transaction, kitIdRecord.value1());
 		return true;
 	}
 
+	/**
+	 * Gives a kit to many users at once, using a few multi-row statements rather than
+	 * one statement per user. Users who already own the kit, or who do not exist, are skipped.
+	 *
+	 * @param transaction the transaction
+	 * @param kit the kit to give
+	 * @param userIds the user IDs
+	 * @return the amount of users who did not already own the kit
+	 */
+	public int addKitToUsers(Transaction transaction, Kit kit, int[] userIds) {
+		int kitId = kit.getId();
+		// Sorted, so that concurrent grants lock rows in the same order
+		int[] sortedUserIds = Arrays.stream(userIds).distinct().sorted().toArray();
+		DSLContext context = transaction.getProperty(DSLContext.class);
+		int addedCount = 0;
+		for (int start = 0; start < sortedUserIds.length; start += GRANT_CHUNK_SIZE) {
+			int end = Math.min(start + GRANT_CHUNK_SIZE, sortedUserIds.length);
+			var insert = context
+					.insertInto(KITPVP_KITS_OWNERSHIP)
+					.columns(KITPVP_KITS_OWNERSHIP.USER_ID, KITPVP_KITS_OWNERSHIP.KIT_ID);
+			for (int n = start; n < end; n++) {
+				insert = insert.values(sortedUserIds[n], kitId);
+			}
+			addedCount += insert.onConflictDoNothing().execute();
+		}
+		for (int userId : sortedUserIds) {
+			OnlineKitPvp user = onlineUsers.get(userId);
+			if (user != null) {
+				user.kitOwnershipChanged(transaction, kitId, true);
+			}
+		}
+		return addedCount;
+	}
+
+	private static final int GRANT_CHUNK_SIZE = 1000;
+
 	/**
 	 * Begins listing bounties according to the given order. Gives the first page,
-	 * from which it is possible to navigate to further pages
+	 * from which it is possible to navigate to further pages. <br>
+	 * <br>
+	 * Bounties are ordered by their amount in each currency in turn, then by user ID, all descending.
+	 * A missing bounty in one of several currencies counts as zero. If the bounty index is enabled,
+	 * bounties in a single currency are served from memory and only the usernames are queried.
 	 *
 	 * @param tx the transaction
 	 * @param listOrder the bounty list order
@@ -262,6 +362,27 @@ public class KitPvpManager implements DataManager {
 		return new BountyList(this, listOrder).beginToListBounties(tx);
 	}
 
+	/**
+	 * Begins listing a statistic leaderboard, highest first. Gives the first page,
+	 * from which it is possible to navigate to further pages. <br>
+	 * <br>
+	 * The top entries are cached and periodically refreshed, so they may be slightly out of date.
+	 * Statistics aggregated in memory are not included until written.
+	 *
+	 * @param tx the transaction
+	 * @param leaderboard the statistic to rank by
+	 * @param countPerPage the amount of entries on each page
+	 * @return the first page of the leaderboard, or an empty optional if there are no entries
+	 * @throws IllegalArgumentException if {@code countPerPage} is not positive
+	 */
+	public Optional<LeaderboardPage> listLeaderboard(Transaction tx, KitPvpLeaderboard leaderboard, int countPerPage) {
+		Objects.requireNonNull(leaderboard, "leaderboard");
+		if (countPerPage <= 0) {
+			throw new IllegalArgumentException("countPerPage must be positive");
+		}
+		return leaderboards.listLeaderboard(tx, leaderboard, countPerPage);
+	}
+
 	/**
 	 * Logs the bounty to ~~ariel's private reserve~~ for tracking
 	 * @param transaction transaction
@@ -284,13 +405,146 @@ public class KitPvpManager implements DataManager {
 				.execute();
 	}
 
+	/**
+	 * Records a whole kill in a single round trip. The killer gains a kill, a killstreak
+	 * and the given experience; the victim gains a death and has their current killstreak reset;
+	 * each assister gains an assist. The victim's bounties in the given currencies are claimed,
+	 * which resets them and logs them as if by {@link #logBounty(Transaction, SolarPlayer, SolarPlayer, BountyAmount)}. <br>
+	 * <br>
+	 * The cached values of all participants are updated.
+	 *
+	 * @param transaction the transaction
+	 * @param killer the killer
+	 * @param victim the victim
+	 * @param assisters the assisters, which may be empty
+	 * @param experience the experience given to the killer, may be zero
+	 * @param bountyCurrencies the currencies of the victim's bounties to claim
+	 * @return the new values of the statistics
+	 * @throws IllegalArgumentException if the experience is negative, or the killer, victim and assisters are not distinct
+	 */
+	public RecordedKill recordKill(Transaction transaction, SolarPlayer killer, SolarPlayer victim,
+								   Collection<? extends SolarPlayer> assisters, int experience,
+								   Set<BountyCurrency> bountyCurrencies) {
+		if (experience < 0) {
+			throw new IllegalArgumentException("experience must not be negative");
+		}
+		int killerId = killer.getUserId();
+		int victimId = victim.getUserId();
+		if (killerId == victimId) {
+			throw new IllegalArgumentException("killer and victim must be different");
+		}
+		Map<Integer, KitPvp> assisterData = new HashMap<>();
+		for (SolarPlayer assister : assisters) {
+			int assisterId = assister.getUserId();
+			if (assisterId == killerId || assisterId == victimId) {
+				throw new IllegalArgumentException("An assister cannot be the killer or the victim");
+			}
+			assisterData.put(assisterId, assister.getData(KitPvpKey.INSTANCE));
+		}
+		KitpvpRecordKill procedure = new KitpvpRecordKill();
+		procedure.setKillerIdentifier(killerId);
+		procedure.setVictimIdentifier(victimId);
+		procedure.setAssisterIdentifiers(assisterData.keySet().stream()
+				.map(String::valueOf).collect(Collectors.joining(",", "[", "]")));
+		procedure.setBountyCurrencies(bountyCurrencies.stream()
+				.map((currency) -> String.valueOf(currency.serialize())).collect(Collectors.joining(",", "[", "]")));
+		procedure.setExperienceAmount(experience);
+		procedure.setClaimTime(clock.instant().getEpochSecond());
+		procedure.execute(transaction.getProperty(DSLContext.class).configuration());
+
+		Map<Integer, Integer> assisterAssists = new HashMap<>();
+		forEachPair(procedure.getNewAssisterAssists(), (userId, assists) -> {
+			assisterAssists.put(Integer.parseInt(userId), Integer.parseInt(assists));
+		});
+		Map<BountyCurrency, BountyAmount> claimedBounties = new EnumMap<>(BountyCurrency.class);
+		forEachPair(procedure.getClaimedBounties(), (currency, amount) -> {
+			BountyCurrency bountyCurrency = BountyCurrency.deserialize(Byte.parseByte(currency));
+			claimedBounties.put(bountyCurrency, bountyCurrency.createAmount(new BigDecimal(amount)));
+		});
+		RecordedKill recordedKill = new RecordedKill(
+				procedure.getNewKillerKills(), procedure.getNewKillerCurrentKillstreak(),
+				procedure.getNewKillerHighestKillstreak(), procedure.getNewKillerExperience(),
+				procedure.getNewVictimDeaths(), procedure.getPreviousVictimKillstreak(),
+				assisterAssists, claimedBounties);
+
+		KitPvp killerData = killer.getData(KitPvpKey.INSTANCE);
+		killerData.updateKills(recordedKill.killerKills());
+		killerData.updateCurrentKillstreak(recordedKill.killerCurrentKillstreak());
+		killerData.updateHighestKillstreak(recordedKill.killerHighestKillstreak());
+		killerData.updateExperience(recordedKill.killerExperience());
+		KitPvp victimData = victim.getData(KitPvpKey.INSTANCE);
+		victimData.updateDeaths(recordedKill.victimDeaths());
+		victimData.updateCurrentKillstreak(0);
+		for (BountyCurrency currency : bountyCurrencies) {
+			victimData.updateBounty(currency, BigDecimal.ZERO);
+			bountyChanged(transaction, victimData.userId(), currency, BigDecimal.ZERO);
+		}
+		assisterAssists.forEach((userId, assists) -> assisterData.get(userId).updateAssists(assists));
+		return recordedKill;
+	}
+
+	/*
+	 * Parses the 'key:value' pairs returned from kitpvp_record_kill
+	 */
+	private static void forEachPair(String pairs, BiConsumer<String, String> action) {
+		if (pairs == null || pairs.isEmpty()) {
+			return;
+		}
+		for (String pair : pairs.split(",")) {
+			int separator = pair.indexOf(':');
+			action.accept(pair.substring(0, separator), pair.substring(separator + 1));
+		}
+	}
+
+	/**
+	 * Reloads all kits, so that kits created or deleted by other servers are seen, and reconciles
+	 * the bounty index, if enabled, with a scan of all bounties
+	 *
+	 * @param transaction the transaction
+	 */
+	@Override
+	public void refreshCaches(Transaction transaction) {
+		kitCatalog.set(loadKitCatalog(transaction));
+		if (bountyIndex != null) {
+			reconcileBountyIndex(transaction);
+		}
+	}
+
+	private void reconcileBountyIndex(Transaction transaction) {
+		long generation = bountyIndex.beginReconcile();
+		Map<BountyCurrency, Map<Integer, Long>> scannedBounties = new EnumMap<>(BountyCurrency.class);
+		try (Cursor<Record3<Integer, Byte, BigDecimal>> cursor = transaction.getProperty(DSLContext.class)
+				.select(KITPVP_BOUNTIES.USER_ID, KITPVP_BOUNTIES.BOUNTY_CURRENCY, KITPVP_BOUNTIES.BOUNTY_AMOUNT)
+				.from(KITPVP_BOUNTIES)
+				.fetchSize(1000)
+				.fetchLazy()) {
+			for (Record3<Integer, Byte, BigDecimal> record : cursor) {
+				scannedBounties.computeIfAbsent(BountyCurrency.deserialize(record.value2()), (c) -> new HashMap<>())
+						.put(record.value1(), ScaledDecimals.toScaled(record.value3()));
+			}
+		} catch (RuntimeException ex) {
+			bountyIndex.cancelReconcile(generation);
+			throw ex;
+		}
+		bountyIndex.finishReconcile(generation, scannedBounties);
+	}
+
 	/**
 	 * Clears all caches which may be in use. Primarily intended for testing purposes
 	 *
 	 */
 	@Override
 	public void clearCaches() {
-		existingKits.invalidateAll();
+		kitCatalog.set(null);
+		leaderboards.clearCaches();
+	}
+
+	@Override
+	public void close() {
+		if (statisticAccumulator != null) {
+			statisticAccumulator.close();
+		}
+		cooldownWriter.close();
 	}
 
 }
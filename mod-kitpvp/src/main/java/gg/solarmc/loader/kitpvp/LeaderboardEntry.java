@@ -0,0 +1,39 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * An entry on a statistic leaderboard
+ *
+ * @param userId the user ID
+ * @param username the user's latest name
+ * @param value the value of the statistic. Only the kill-death ratio has a fractional part
+ */
+public record LeaderboardEntry(int userId, String username, BigDecimal value) {
+
+    public LeaderboardEntry {
+        Objects.requireNonNull(username, "username");
+        Objects.requireNonNull(value, "value");
+    }
+
+}
@@ -21,7 +21,17 @@
 
 package gg.solarmc.loader.kitpvp;
 
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.impl.ScaledDecimals;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
 public class OnlineKitPvp extends KitPvp {
     private volatile int kills;
@@ -30,8 +40,15 @@ public class OnlineKitPvp extends KitPvp {
     private volatile int experience;
     private volatile int currentKillstreaks;
     private volatile int highestKillstreaks;
+    // Bounties are normalized to the scale of the bounty columns when changed, so reading them allocates nothing
     private volatile BigDecimal creditsBounty;
     private volatile BigDecimal plainEcoBounty;
+    // Null unless statistics are aggregated
+    private final StatisticCounters counters;
+    // Kit ID to the time the kit was last used, in unix seconds. Guarded by itself
+    private final Map<Integer, Long> kitLastUsed = new HashMap<>();
+    // Sorted IDs of owned kits. Replaced rather than mutated; writes are guarded by this
+    private volatile int[] ownedKitIds = new int[0];
 
     public OnlineKitPvp(int userID, KitPvpManager manager,
                         int kills, int deaths, int assists, int experience,
@@ -44,8 +61,109 @@ public class OnlineKitPvp extends KitPvp {
         this.experience = experience;
         this.currentKillstreaks = currentKillstreaks;
         this.highestKillstreaks = highestKillstreaks;
-        this.creditsBounty = creditsBounty;
-        this.plainEcoBounty = plainEcoBounty;
+        this.creditsBounty = normalize(creditsBounty);
+        this.plainEcoBounty = normalize(plainEcoBounty);
+        counters = (manager.aggregatesStatistics()) ? new StatisticCounters() : null;
+    }
+
+    void loadOwnedKits(int[] kitIds) {
+        int[] sorted = kitIds.clone();
+        Arrays.sort(sorted);
+        ownedKitIds = sorted;
+    }
+
+    @Override
+    int[] ownedKitIds() {
+        return ownedKitIds;
+    }
+
+    @Override
+    synchronized boolean setKitOwned(int kitId, boolean owned) {
+        int[] current = ownedKitIds;
+        int index = Arrays.binarySearch(current, kitId);
+        if (owned == (index >= 0)) {
+            return false;
+        }
+        int[] updated;
+        if (owned) {
+            int insertionPoint = -index - 1;
+            updated = new int[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertionPoint);
+            updated[insertionPoint] = kitId;
+            System.arraycopy(current, insertionPoint, updated, insertionPoint + 1, current.length - insertionPoint);
+        } else {
+            updated = new int[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        }
+        ownedKitIds = updated;
+        return true;
+    }
+
+    void loadCooldowns(Map<Integer, Long> lastUsed) {
+        synchronized (kitLastUsed) {
+            kitLastUsed.putAll(lastUsed);
+        }
+    }
+
+    @Override
+    Optional<RemainingCooldown> attemptToUseKitInMemory(Transaction transaction, Kit kit, Instant now) {
+        int kitId = kit.getId();
+        long nowSeconds = now.getEpochSecond();
+        Long previousLastUsed;
+        synchronized (kitLastUsed) {
+            previousLastUsed = kitLastUsed.get(kitId);
+            if (previousLastUsed != null) {
+                Duration timeSinceLastUsed = Duration.between(Instant.ofEpochSecond(previousLastUsed), now);
+                Duration remainingCooldown = kit.getCooldown().minus(timeSinceLastUsed);
+                if (remainingCooldown.compareTo(Duration.ZERO) > 0) {
+                    return Optional.of(new RemainingCooldown(remainingCooldown, now.plus(remainingCooldown)));
+                }
+            }
+            kitLastUsed.put(kitId, nowSeconds);
+        }
+        TransactionCallbacks callbacks = transaction.getProperty(TransactionCallbacks.class);
+        callbacks.afterCommit(() -> manager().kitUsed(userId(), kitId, nowSeconds));
+        callbacks.afterRollback(() -> {
+            synchronized (kitLastUsed) {
+                // Unless the kit was used again since
+                if (Long.valueOf(nowSeconds).equals(kitLastUsed.get(kitId))) {
+                    if (previousLastUsed == null) {
+                        kitLastUsed.remove(kitId);
+                    } else {
+                        kitLastUsed.put(kitId, previousLastUsed);
+                    }
+                }
+            }
+        });
+        return Optional.empty();
+    }
+
+    StatisticCounters counters() {
+        return counters;
+    }
+
+    private int withUnwritten(int storedValue, AggregatedStatistic statistic) {
+        if (counters == null) {
+            return storedValue;
+        }
+        return (int) (storedValue + counters.unwritten(statistic));
+    }
+
+    @Override
+    StatisticResult aggregate(Transaction transaction, AggregatedStatistic statistic, int amount) {
+        if (counters == null) {
+            return null;
+        }
+        counters.add(statistic, amount);
+        transaction.getProperty(TransactionCallbacks.class).afterRollback(() -> counters.add(statistic, -amount));
+        int newValue = switch (statistic) {
+        case KILLS -> currentKills();
+        case DEATHS -> currentDeaths();
+        case ASSISTS -> currentAssists();
+        case EXPERIENCE -> currentExperience();
+        };
+        return new StatisticResult(newValue, newValue - amount);
     }
 
     @Override
@@ -78,11 +196,16 @@ public class OnlineKitPvp extends KitPvp {
         this.currentKillstreaks = i;
     }
 
+    private static BigDecimal normalize(BigDecimal bounty) {
+        return ScaledDecimals.toDecimal(ScaledDecimals.toScaled(bounty));
+    }
+
     @Override
     void updateBounty(BountyCurrency currency, BigDecimal bounty) {
+        BigDecimal normalizedBounty = normalize(bounty);
         switch (currency) {
-        case CREDITS -> creditsBounty = bounty;
-        case PLAIN_ECO -> plainEcoBounty = bounty;
+        case CREDITS -> creditsBounty = normalizedBounty;
+        case PLAIN_ECO -> plainEcoBounty = normalizedBounty;
         }
     }
 
@@ -91,7 +214,7 @@ public class OnlineKitPvp extends KitPvp {
      * @return kills
      */
     public int currentKills() {
-        return kills;
+        return withUnwritten(kills, AggregatedStatistic.KILLS);
     }
 
     /**
@@ -99,7 +222,7 @@ public class OnlineKitPvp extends KitPvp {
      * @return deaths
      */
     public int currentDeaths() {
-        return deaths;
+        return withUnwritten(deaths, AggregatedStatistic.DEATHS);
     }
 
     /**
@@ -107,7 +230,7 @@ public class OnlineKitPvp extends KitPvp {
      * @return assists
      */
     public int currentAssists() {
-        return assists;
+        return withUnwritten(assists, AggregatedStatistic.ASSISTS);
     }
 
     public int currentCurrentKillstreaks() {
@@ -119,7 +242,7 @@ public class OnlineKitPvp extends KitPvp {
     }
 
     public int currentExperience() {
-        return experience;
+        return withUnwritten(experience, AggregatedStatistic.EXPERIENCE);
     }
 
     /**
@@ -0,0 +1,159 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The outcome of {@link KitPvpManager#recordKill}, containing the new values
+ * of every statistic touched by the kill
+ *
+ */
+public final class RecordedKill {
+
+    private final int killerKills;
+    private final int killerCurrentKillstreak;
+    private final int killerHighestKillstreak;
+    private final int killerExperience;
+    private final int victimDeaths;
+    private final int victimPreviousKillstreak;
+    private final Map<Integer, Integer> assisterAssists;
+    private final Map<BountyCurrency, BountyAmount> claimedBounties;
+
+    RecordedKill(int killerKills, int killerCurrentKillstreak, int killerHighestKillstreak, int killerExperience,
+                 int victimDeaths, int victimPreviousKillstreak,
+                 Map<Integer, Integer> assisterAssists, Map<BountyCurrency, BountyAmount> claimedBounties) {
+        this.killerKills = killerKills;
+        this.killerCurrentKillstreak = killerCurrentKillstreak;
+        this.killerHighestKillstreak = killerHighestKillstreak;
+        this.killerExperience = killerExperience;
+        this.victimDeaths = victimDeaths;
+        this.victimPreviousKillstreak = victimPreviousKillstreak;
+        this.assisterAssists = Map.copyOf(assisterAssists);
+        this.claimedBounties = Map.copyOf(claimedBounties);
+    }
+
+    /**
+     * The killer's new amount of kills
+     *
+     * @return the new kills
+     */
+    public int killerKills() {
+        return killerKills;
+    }
+
+    /**
+     * The killer's new current killstreak
+     *
+     * @return the new current killstreak
+     */
+    public int killerCurrentKillstreak() {
+        return killerCurrentKillstreak;
+    }
+
+    /**
+     * The killer's new highest killstreak
+     *
+     * @return the new highest killstreak
+     */
+    public int killerHighestKillstreak() {
+        return killerHighestKillstreak;
+    }
+
+    /**
+     * The killer's new experience
+     *
+     * @return the new experience
+     */
+    public int killerExperience() {
+        return killerExperience;
+    }
+
+    /**
+     * The victim's new amount of deaths
+     *
+     * @return the new deaths
+     */
+    public int victimDeaths() {
+        return victimDeaths;
+    }
+
+    /**
+     * The victim's current killstreak before it was reset by this kill
+     *
+     * @return the previous killstreak of the victim
+     */
+    public int victimPreviousKillstreak() {
+        return victimPreviousKillstreak;
+    }
+
+    /**
+     * The new amount of assists of each assister, keyed by user ID
+     *
+     * @return the new assists, an immutable map
+     */
+    public Map<Integer, Integer> assisterAssists() {
+        return assisterAssists;
+    }
+
+    /**
+     * The bounty claimed from the victim in the given currency. If the currency
+     * was not requested or the victim had no bounty in it, the amount is zero
+     *
+     * @param currency the bounty currency
+     * @return the claimed bounty
+     */
+    public BountyAmount claimedBounty(BountyCurrency currency) {
+        BountyAmount claimed = claimedBounties.get(currency);
+        return (claimed == null) ? currency.zero() : claimed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecordedKill that = (RecordedKill) o;
+        return killerKills == that.killerKills && killerCurrentKillstreak == that.killerCurrentKillstreak
+                && killerHighestKillstreak == that.killerHighestKillstreak && killerExperience == that.killerExperience
+                && victimDeaths == that.victimDeaths && victimPreviousKillstreak == that.victimPreviousKillstreak
+                && assisterAssists.equals(that.assisterAssists) && claimedBounties.equals(that.claimedBounties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(killerKills, killerCurrentKillstreak, killerHighestKillstreak, killerExperience,
+                victimDeaths, victimPreviousKillstreak, assisterAssists, claimedBounties);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedKill{" +
+                "killerKills=" + killerKills +
+                ", killerCurrentKillstreak=" + killerCurrentKillstreak +
+                ", killerHighestKillstreak=" + killerHighestKillstreak +
+                ", killerExperience=" + killerExperience +
+                ", victimDeaths=" + victimDeaths +
+                ", victimPreviousKillstreak=" + victimPreviousKillstreak +
+                ", assisterAssists=" + assisterAssists +
+                ", claimedBounties=" + claimedBounties +
+                '}';
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.Transactor;
+import gg.solarmc.loader.impl.TransactionCallbacks;
+import gg.solarmc.loader.schema.tables.records.KitpvpStatisticsRecord;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep5;
+import org.jooq.Record5;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+
+/**
+ * Writes the aggregated statistics of online users in batches. Every batch is a single
+ * multi-row upsert which adds the pending amounts to the stored values. <br>
+ * <br>
+ * Pending amounts are written periodically, when the user logs out, and when the manager
+ * is closed. If a write fails, the amounts are restored and retried with the next write.
+ */
+final class StatisticAccumulator implements AutoCloseable {
+
+    private final Transactor transactor;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<Integer, OnlineKitPvp> users = new ConcurrentHashMap<>();
+
+    StatisticAccumulator(Transactor transactor, ScheduledExecutorService scheduler) {
+        this.transactor = transactor;
+        this.scheduler = scheduler;
+    }
+
+    void start(Duration flushInterval) {
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void register(OnlineKitPvp user) {
+        users.put(user.userId(), user);
+    }
+
+    /**
+     * Writes the pending amounts of a user who is logging out, and stops tracking the user
+     * once the transaction commits. If it rolls back, the amounts are written with the next write
+     *
+     * @param transaction the transaction
+     * @param userId the user ID
+     */
+    void flushAndUnregister(Transaction transaction, int userId) {
+        OnlineKitPvp user = users.get(userId);
+        if (user != null) {
+            flushUsers(transaction, List.of(user));
+            transaction.getProperty(TransactionCallbacks.class).afterCommit(() -> users.remove(userId, user));
+        }
+    }
+
+    private record DrainedUser(OnlineKitPvp user, long[] amounts) { }
+
+    private void flushUsers(Transaction transaction, List<OnlineKitPvp> userList) {
+        List<DrainedUser> drainedUsers = new ArrayList<>();
+        for (OnlineKitPvp user : userList) {
+            StatisticCounters counters = user.counters();
+            long[] amounts = counters.drain();
+            if (amounts != null) {
+                drainedUsers.add(new DrainedUser(user, amounts));
+            }
+        }
+        if (drainedUsers.isEmpty()) {
+            return;
+        }
+        TransactionCallbacks callbacks = transaction.getProperty(TransactionCallbacks.class);
+        callbacks.afterRollback(() -> {
+            for (DrainedUser drainedUser : drainedUsers) {
+                drainedUser.user.counters().restore(drainedUser.amounts);
+            }
+        });
+        // Sorted, so that concurrent writes lock rows in the same order
+        drainedUsers.sort(Comparator.comparingInt((drainedUser) -> drainedUser.user.userId()));
+
+        DSLContext context = transaction.getProperty(DSLContext.class);
+        InsertValuesStep5<KitpvpStatisticsRecord, Integer, Integer, Integer, Integer, Integer> insert = context
+                .insertInto(KITPVP_STATISTICS)
+                .columns(KITPVP_STATISTICS.USER_ID, KITPVP_STATISTICS.KILLS, KITPVP_STATISTICS.DEATHS,
+                        KITPVP_STATISTICS.ASSISTS, KITPVP_STATISTICS.EXPERIENCE);
+        List<Integer> userIds = new ArrayList<>(drainedUsers.size());
+        for (DrainedUser drainedUser : drainedUsers) {
+            long[] amounts = drainedUser.amounts;
+            insert = insert.values(drainedUser.user.userId(),
+                    Math.toIntExact(amounts[AggregatedStatistic.KILLS.ordinal()]),
+                    Math.toIntExact(amounts[AggregatedStatistic.DEATHS.ordinal()]),
+                    Math.toIntExact(amounts[AggregatedStatistic.ASSISTS.ordinal()]),
+                    Math.toIntExact(amounts[AggregatedStatistic.EXPERIENCE.ordinal()]));
+            userIds.add(drainedUser.user.userId());
+        }
+        insert.onDuplicateKeyUpdate()
+                .set(KITPVP_STATISTICS.KILLS, KITPVP_STATISTICS.KILLS.plus(insertedValue(KITPVP_STATISTICS.KILLS)))
+                .set(KITPVP_STATISTICS.DEATHS, KITPVP_STATISTICS.DEATHS.plus(insertedValue(KITPVP_STATISTICS.DEATHS)))
+                .set(KITPVP_STATISTICS.ASSISTS, KITPVP_STATISTICS.ASSISTS.plus(insertedValue(KITPVP_STATISTICS.ASSISTS)))
+                .set(KITPVP_STATISTICS.EXPERIENCE, KITPVP_STATISTICS.EXPERIENCE.plus(insertedValue(KITPVP_STATISTICS.EXPERIENCE)))
+                .execute();
+        var newValues = context
+                .select(KITPVP_STATISTICS.USER_ID, KITPVP_STATISTICS.KILLS, KITPVP_STATISTICS.DEATHS,
+                        KITPVP_STATISTICS.ASSISTS, KITPVP_STATISTICS.EXPERIENCE)
+                .from(KITPVP_STATISTICS)
+                .where(KITPVP_STATISTICS.USER_ID.in(userIds))
+                .fetchMap(KITPVP_STATISTICS.USER_ID);
+        callbacks.afterCommit(() -> {
+            for (DrainedUser drainedUser : drainedUsers) {
+                OnlineKitPvp user = drainedUser.user;
+                Record5<Integer, Integer, Integer, Integer, Integer> stored = newValues.get(user.userId());
+                if (stored != null) {
+                    user.updateKills(stored.value2());
+                    user.updateDeaths(stored.value3());
+                    user.updateAssists(stored.value4());
+                    user.updateExperience(stored.value5());
+                }
+                user.counters().settle(drainedUser.amounts);
+            }
+        });
+    }
+
+    /*
+     * The value which would have been inserted, in ON DUPLICATE KEY UPDATE
+     */
+    private static Field<Integer> insertedValue(Field<Integer> column) {
+        return DSL.field("VALUES({0})", Integer.class, DSL.name(column.getName()));
+    }
+
+    private Logger logger() {
+        return LoggerFactory.getLogger(getClass());
+    }
+
+    private void flush() {
+        try {
+            transactor.runTransact((transaction) -> {
+                flushUsers(transaction, List.copyOf(users.values()));
+            }).join();
+        } catch (RuntimeException ex) {
+            // Pending amounts were restored and will be retried with the next flush
+            logger().warn("Failed to write aggregated kitpvp statistics", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10L, TimeUnit.SECONDS)) {
+                logger().warn("Failed to await termination of aggregated kitpvp statistics flushing");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A user's aggregated statistic amounts which have not yet been written. Additions
+ * go to striped counters, so that they do not contend with each other. Moving amounts
+ * in and out of flight is synchronized, since writes may overlap
+ *
+ */
+final class StatisticCounters {
+
+    private static final AggregatedStatistic[] STATISTICS = AggregatedStatistic.values();
+
+    /**
+     * Amounts not yet written
+     */
+    private final LongAdder[] pending = new LongAdder[STATISTICS.length];
+    /**
+     * Amounts being written by a transaction which has not yet completed
+     */
+    private final AtomicLongArray inFlight = new AtomicLongArray(STATISTICS.length);
+
+    StatisticCounters() {
+        for (int n = 0; n < pending.length; n++) {
+            pending[n] = new LongAdder();
+        }
+    }
+
+    void add(AggregatedStatistic statistic, long amount) {
+        pending[statistic.ordinal()].add(amount);
+    }
+
+    /**
+     * Gets the amount added but not yet committed to the database
+     *
+     * @param statistic the statistic
+     * @return the unwritten amount
+     */
+    long unwritten(AggregatedStatistic statistic) {
+        int index = statistic.ordinal();
+        return pending[index].sum() + inFlight.get(index);
+    }
+
+    /**
+     * Moves the pending amounts in flight
+     *
+     * @return the amounts, indexed by statistic ordinal, or null if all are zero
+     */
+    synchronized long[] drain() {
+        long[] amounts = null;
+        for (int n = 0; n < pending.length; n++) {
+            long amount = pending[n].sum();
+            if (amount == 0L) {
+                continue;
+            }
+            if (amounts == null) {
+                amounts = new long[pending.length];
+            }
+            // Never let the amount go unaccounted for while it moves
+            inFlight.addAndGet(n, amount);
+            pending[n].add(-amount);
+            amounts[n] = amount;
+        }
+        return amounts;
+    }
+
+    synchronized void settle(long[] amounts) {
+        for (int n = 0; n < amounts.length; n++) {
+            inFlight.addAndGet(n, -amounts[n]);
+        }
+    }
+
+    synchronized void restore(long[] amounts) {
+        for (int n = 0; n < amounts.length; n++) {
+            pending[n].add(amounts[n]);
+            inFlight.addAndGet(n, -amounts[n]);
+        }
+    }
+
+}
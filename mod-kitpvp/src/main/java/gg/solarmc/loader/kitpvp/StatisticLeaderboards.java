@@ -0,0 +1,142 @@
+/*
+ * DataLoader
+ * Copyright © 2021 SolarMC Developers
+ *
+ * DataLoader is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * DataLoader is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DataLoader. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU Affero General Public License.
+ */
+
+package gg.solarmc.loader.kitpvp;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import gg.solarmc.loader.Transaction;
+import gg.solarmc.loader.data.Transactor;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.impl.DSL;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+import static gg.solarmc.loader.schema.tables.LatestNames.LATEST_NAMES;
+
+/**
+ * Implementation of statistic leaderboards. <br>
+ * <br>
+ * The top entries of each leaderboard are cached and refreshed in the background before
+ * they become stale, so that the most viewed pages need no query. Further pages use
+ * keyset pagination, seeking past the last entry of the previous page. <br>
+ * <br>
+ * Entries are ordered by value descending, with ties broken by user ID descending.
+ * Both orders being descending lets the database scan the statistic index backwards,
+ * since the index implicitly ends with the primary key.
+ */
+final class StatisticLeaderboards {
+
+    private final int cacheSize;
+    private final LoadingCache<KitPvpLeaderboard, TopEntries> topEntries;
+
+    StatisticLeaderboards(Transactor transactor, int cacheSize, Duration refreshInterval) {
+        this.cacheSize = cacheSize;
+        topEntries = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .expireAfterWrite(refreshInterval.multipliedBy(5L))
+                .build((leaderboard) -> transactor.transact((tx) -> fetchTop(tx, leaderboard)).join());
+    }
+
+    /**
+     * The top entries of a leaderboard
+     *
+     * @param entries the entries
+     * @param complete whether these are all the entries in the leaderboard
+     */
+    private record TopEntries(List<LeaderboardEntry> entries, boolean complete) { }
+
+    private TopEntries fetchTop(Transaction tx, KitPvpLeaderboard leaderboard) {
+        List<LeaderboardEntry> entries = fetchEntries(tx, leaderboard, null, cacheSize);
+        return new TopEntries(entries, entries.size() < cacheSize);
+    }
+
+    private TopEntries topEntries(Transaction tx, KitPvpLeaderboard leaderboard) {
+        TopEntries top = topEntries.getIfPresent(leaderboard);
+        if (top == null) {
+            // Load using the caller's transaction rather than acquiring another connection
+            top = fetchTop(tx, leaderboard);
+            topEntries.put(leaderboard, top);
+        }
+        return top;
+    }
+
+    private List<LeaderboardEntry> fetchEntries(Transaction tx, KitPvpLeaderboard leaderboard,
+                                                @Nullable LeaderboardEntry after, int limit) {
+        Field<BigDecimal> column = leaderboard.column();
+        Condition where = DSL.noCondition();
+        if (after != null) {
+            // (value < afterValue) OR (value = afterValue AND user_id < afterUserId)
+            where = column.lessThan(after.value())
+                    .or(column.eq(after.value()).and(KITPVP_STATISTICS.USER_ID.lessThan(after.userId())));
+        }
+        return tx.getProperty(DSLContext.class)
+                .select(KITPVP_STATISTICS.USER_ID, LATEST_NAMES.USERNAME, column)
+                .from(KITPVP_STATISTICS)
+                .innerJoin(LATEST_NAMES)
+                .on(LATEST_NAMES.USER_ID.eq(KITPVP_STATISTICS.USER_ID))
+                .where(where)
+                .orderBy(column.desc(), KITPVP_STATISTICS.USER_ID.desc())
+                .limit(limit)
+                .fetch((record) -> new LeaderboardEntry(record.value1(), record.value2(), record.value3()));
+    }
+
+    Optional<LeaderboardPage> listLeaderboard(Transaction tx, KitPvpLeaderboard leaderboard, int countPerPage) {
+        return page(tx, leaderboard, countPerPage, 0, null);
+    }
+
+    private Optional<LeaderboardPage> page(Transaction tx, KitPvpLeaderboard leaderboard, int countPerPage,
+                                           int offset, @Nullable LeaderboardEntry after) {
+        TopEntries top = topEntries(tx, leaderboard);
+        List<LeaderboardEntry> cachedEntries = top.entries();
+        List<LeaderboardEntry> items;
+        if (offset + countPerPage <= cachedEntries.size() || top.complete()) {
+            int end = Math.min(offset + countPerPage, cachedEntries.size());
+            items = (offset >= end) ? List.of() : List.copyOf(cachedEntries.subList(offset, end));
+        } else {
+            items = fetchEntries(tx, leaderboard, after, countPerPage);
+        }
+        if (items.isEmpty()) {
+            return Optional.empty();
+        }
+        record LeaderboardPageImpl(StatisticLeaderboards leaderboards, KitPvpLeaderboard leaderboard,
+                                   int countPerPage, int nextOffset, List<LeaderboardEntry> itemsOnPage)
+                implements LeaderboardPage {
+
+            @Override
+            public Optional<LeaderboardPage> nextPage(Transaction tx) {
+                LeaderboardEntry lastEntry = itemsOnPage.get(itemsOnPage.size() - 1);
+                return leaderboards.page(tx, leaderboard, countPerPage, nextOffset, lastEntry);
+            }
+        }
+        return Optional.of(new LeaderboardPageImpl(this, leaderboard, countPerPage, offset + items.size(), items));
+    }
+
+    void clearCaches() {
+        topEntries.invalidateAll();
+    }
+
+}
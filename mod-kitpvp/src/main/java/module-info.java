@@ -2,6 +2,8 @@ module gg.solarmc.loader.kitpvp {
 	requires com.github.benmanes.caffeine;
 	requires transitive gg.solarmc.loader;
 	requires gg.solarmc.loader.impl;
+	requires org.slf4j;
+	requires space.arim.dazzleconf.ext.snakeyaml;
 	requires static org.checkerframework.checker.qual;
 	exports gg.solarmc.loader.kitpvp;
 	uses gg.solarmc.loader.kitpvp.ItemSerializer;
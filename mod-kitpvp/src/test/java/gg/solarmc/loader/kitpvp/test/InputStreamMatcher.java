@@ -15,7 +15,14 @@ record InputStreamMatcher(byte[] data) implements ArgumentMatcher<InputStream> {
             return false;
         }
         try {
-            return Arrays.equals(data, inputStream.readAllBytes());
+            // Leave the stream readable for other matchers
+            if (!inputStream.markSupported()) {
+                return Arrays.equals(data, inputStream.readAllBytes());
+            }
+            inputStream.mark(Integer.MAX_VALUE);
+            boolean matches = Arrays.equals(data, inputStream.readAllBytes());
+            inputStream.reset();
+            return matches;
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
         }
@@ -0,0 +1,136 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.Bounty;
+import gg.solarmc.loader.kitpvp.BountyListOrder;
+import gg.solarmc.loader.kitpvp.BountyPage;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.KitPvpManager;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static gg.solarmc.loader.kitpvp.BountyCurrency.CREDITS;
+import static gg.solarmc.loader.kitpvp.BountyCurrency.PLAIN_ECO;
+import static gg.solarmc.loader.schema.tables.KitpvpBounties.KITPVP_BOUNTIES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpBountyIndexIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private KitPvpManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials,
+                              @Mock ItemSerializer itemSerializer) throws IOException {
+        Files.writeString(folder.resolve("kitpvp.yml"), """
+                enable-bounty-index: true
+                """);
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(KitPvpKey.INSTANCE);
+    }
+
+    private OnlineSolarPlayer userWithBounty(int credits) {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            user.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.valueOf(credits)));
+        });
+        return user;
+    }
+
+    private List<List<String>> pagesOfTargets(int countPerPage) {
+        return dataCenterInfo.transact((tx) -> {
+            List<List<String>> pages = new ArrayList<>();
+            Optional<BountyPage> page = manager.listBounties(tx,
+                    BountyListOrder.countPerPage(countPerPage).includeCurrencies(CREDITS).build());
+            while (page.isPresent()) {
+                pages.add(page.get().itemsOnPage().stream().map(Bounty::target).toList());
+                page = page.get().nextPage(tx);
+            }
+            return pages;
+        });
+    }
+
+    @Test
+    public void pagesInBountyOrder() {
+        OnlineSolarPlayer user1 = userWithBounty(10);
+        OnlineSolarPlayer user2 = userWithBounty(20);
+        OnlineSolarPlayer user3 = userWithBounty(30);
+        OnlineSolarPlayer user4 = userWithBounty(20);
+        // Ties are broken by the higher user ID first
+        assertEquals(List.of(
+                List.of(user3.getMcUsername(), user4.getMcUsername()),
+                List.of(user2.getMcUsername(), user1.getMcUsername())), pagesOfTargets(2));
+    }
+
+    @Test
+    public void otherCurrenciesExcluded() {
+        OnlineSolarPlayer user1 = userWithBounty(10);
+        OnlineSolarPlayer user2 = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            user2.getData(KitPvpKey.INSTANCE).addBounty(tx, PLAIN_ECO.createAmount(BigDecimal.TEN));
+        });
+        assertEquals(List.of(List.of(user1.getMcUsername())), pagesOfTargets(5));
+    }
+
+    @Test
+    public void resetBountyRemoves() {
+        OnlineSolarPlayer user1 = userWithBounty(10);
+        OnlineSolarPlayer user2 = userWithBounty(20);
+        dataCenterInfo.runTransact((tx) -> {
+            user2.getData(KitPvpKey.INSTANCE).resetBounty(tx, CREDITS);
+        });
+        assertEquals(List.of(List.of(user1.getMcUsername())), pagesOfTargets(5));
+    }
+
+    @Test
+    public void rolledBackBountyNotIndexed() {
+        OnlineSolarPlayer user1 = userWithBounty(10);
+        OnlineSolarPlayer user2 = dataCenterInfo.loginNewRandomUser();
+        assertThrows(RuntimeException.class, () -> dataCenterInfo.runTransact((tx) -> {
+            user2.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.TEN));
+            throw new IllegalStateException("Rollback");
+        }));
+        assertEquals(List.of(List.of(user1.getMcUsername())), pagesOfTargets(5));
+    }
+
+    @Test
+    public void reconcileWithDatabase() {
+        OnlineSolarPlayer user1 = userWithBounty(10);
+        OnlineSolarPlayer user2 = userWithBounty(20);
+        // Simulate a change made by another node
+        dataCenterInfo.runTransact((tx) -> {
+            tx.getProperty(DSLContext.class)
+                    .update(KITPVP_BOUNTIES)
+                    .set(KITPVP_BOUNTIES.BOUNTY_AMOUNT, BigDecimal.valueOf(50))
+                    .where(KITPVP_BOUNTIES.USER_ID.eq(user1.getUserId()))
+                    .execute();
+        });
+        assertEquals(List.of(List.of(user2.getMcUsername(), user1.getMcUsername())), pagesOfTargets(5));
+        dataCenterInfo.icarus().refreshCaches().join();
+        assertEquals(List.of(List.of(user1.getMcUsername(), user2.getMcUsername())), pagesOfTargets(5));
+    }
+}
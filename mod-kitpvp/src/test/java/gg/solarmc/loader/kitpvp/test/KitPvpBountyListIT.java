@@ -218,4 +218,55 @@ public class KitPvpBountyListIT {
         BountyPage pageTwo = dataCenterInfo.transact(pageOne::nextPage).orElseThrow(AssertionError::new);
         assertPageValues(pageTwo, CREDITS, BigDecimal.ONE, BigDecimal.ZERO);
     }
+
+    @Test
+    public void singleCurrencyTiesByHigherUserId() {
+        OnlineSolarPlayer playerOne = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer playerTwo = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer playerThree = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            playerOne.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.ONE));
+            playerTwo.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.ONE));
+            playerThree.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.TEN));
+        });
+        BountyPage pageOne = dataCenterInfo.transact((tx) -> {
+            return manager.listBounties(tx, BountyListOrder.countPerPage(2).includeCurrencies(CREDITS).build());
+        }).orElseThrow(AssertionError::new);
+        assertEquals(List.of(playerThree.getMcUsername(), playerTwo.getMcUsername()),
+                pageOne.itemsOnPage().stream().map(Bounty::target).toList());
+
+        BountyPage pageTwo = dataCenterInfo.transact(pageOne::nextPage).orElseThrow(AssertionError::new);
+        assertEquals(List.of(playerOne.getMcUsername()),
+                pageTwo.itemsOnPage().stream().map(Bounty::target).toList());
+        assertEquals(Optional.empty(), dataCenterInfo.transact(pageTwo::nextPage));
+    }
+
+    @Test
+    public void multipleCurrenciesInGivenOrder() {
+        OnlineSolarPlayer playerOne = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer playerTwo = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer playerThree = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            // 10 credits on player1
+            playerOne.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.TEN));
+            // 5 plain eco 1 credit on player2
+            playerTwo.getData(KitPvpKey.INSTANCE).addBounty(tx, PLAIN_ECO.createAmount(BigDecimal.valueOf(5)));
+            playerTwo.getData(KitPvpKey.INSTANCE).addBounty(tx, CREDITS.createAmount(BigDecimal.ONE));
+            // 5 plain eco on player3
+            playerThree.getData(KitPvpKey.INSTANCE).addBounty(tx, PLAIN_ECO.createAmount(BigDecimal.valueOf(5)));
+        });
+        BountyPage pageOne = dataCenterInfo.transact((tx) -> {
+            return manager.listBounties(tx, BountyListOrder.countPerPage(2).includeCurrencies(PLAIN_ECO, CREDITS).build());
+        }).orElseThrow(AssertionError::new);
+        assertEquals(List.of(playerTwo.getMcUsername(), playerThree.getMcUsername()),
+                pageOne.itemsOnPage().stream().map(Bounty::target).toList());
+        assertPageValues(pageOne, PLAIN_ECO, BigDecimal.valueOf(5), BigDecimal.valueOf(5));
+        assertPageValues(pageOne, CREDITS, BigDecimal.ONE, BigDecimal.ZERO);
+
+        BountyPage pageTwo = dataCenterInfo.transact(pageOne::nextPage).orElseThrow(AssertionError::new);
+        assertEquals(List.of(playerOne.getMcUsername()),
+                pageTwo.itemsOnPage().stream().map(Bounty::target).toList());
+        assertPageValues(pageTwo, PLAIN_ECO, BigDecimal.ZERO);
+        assertEquals(Optional.empty(), dataCenterInfo.transact(pageTwo::nextPage));
+    }
 }
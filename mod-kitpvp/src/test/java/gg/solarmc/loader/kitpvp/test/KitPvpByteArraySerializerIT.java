@@ -0,0 +1,107 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DataGenerator;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.ByteArrayItemSerializer;
+import gg.solarmc.loader.kitpvp.ItemInSlot;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.Kit;
+import gg.solarmc.loader.kitpvp.KitBuilder;
+import gg.solarmc.loader.kitpvp.KitItem;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.KitPvpManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a {@link ByteArrayItemSerializer} is handed each item's region of the packed
+ * kit contents, rather than a copy of it
+ */
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpByteArraySerializerIT {
+
+    private final ByteArrayItemSerializer itemSerializer;
+    private DataCenterInfo dataCenterInfo;
+    private KitPvpManager manager;
+
+    public KitPvpByteArraySerializerIT(@Mock ByteArrayItemSerializer itemSerializer) {
+        this.itemSerializer = itemSerializer;
+    }
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(KitPvpKey.INSTANCE);
+    }
+
+    private record Region(byte[] data, int offset, int length) {
+
+        byte[] contents() {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+    }
+
+    @Test
+    public void deserializeFromRegions(@Mock KitItem item1, @Mock KitItem item2) throws IOException {
+        byte[] item1Data = DataGenerator.randomBytes(1, 15);
+        byte[] item2Data = new byte[300]; // Longer than one byte can count
+        Arrays.fill(item2Data, (byte) 2);
+        when(itemSerializer.serialize(item1)).thenReturn(item1Data);
+        when(itemSerializer.serialize(item2)).thenReturn(item2Data);
+        List<Region> regions = new ArrayList<>();
+        when(itemSerializer.deserialize(any(byte[].class), anyInt(), anyInt())).thenAnswer((invocation) -> {
+            Region region = new Region(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            regions.add(region);
+            byte[] contents = region.contents();
+            if (Arrays.equals(contents, item1Data)) {
+                return item1;
+            }
+            return (Arrays.equals(contents, item2Data)) ? item2 : null;
+        });
+
+        Set<ItemInSlot> contents = Set.of(new ItemInSlot(3, item1), new ItemInSlot(40, item2));
+        int kitId = dataCenterInfo.transact((tx) -> {
+            return manager.createKit(tx, new KitBuilder().name("RegionKit").contents(contents).build()).orElseThrow();
+        }).getId();
+        manager.clearCaches();
+        Kit kit = dataCenterInfo.transact((tx) -> manager.getKitById(tx, kitId)).orElseThrow();
+        assertEquals(contents, kit.getContents());
+
+        assertEquals(2, regions.size());
+        // Both items are read in place from the same packed body
+        assertSame(regions.get(0).data(), regions.get(1).data());
+        for (Region region : regions) {
+            // Each region follows its slot and its length
+            assertTrue(region.offset() >= 1 + Integer.BYTES, () -> "Offset " + region.offset());
+            assertTrue(region.offset() + region.length() <= region.data().length);
+            assertEquals(region.length(),
+                    ByteBuffer.wrap(region.data(), region.offset() - Integer.BYTES, Integer.BYTES).getInt());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package gg.solarmc.loader.kitpvp.test;
 
+import gg.solarmc.loader.OnlineSolarPlayer;
 import gg.solarmc.loader.impl.SolarDataConfig;
 import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
 import gg.solarmc.loader.impl.test.extension.DataGenerator;
@@ -14,6 +15,8 @@ import gg.solarmc.loader.kitpvp.KitPvp;
 import gg.solarmc.loader.kitpvp.KitPvpKey;
 import gg.solarmc.loader.kitpvp.KitPvpManager;
 import gg.solarmc.loader.kitpvp.RemainingCooldown;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,11 +32,17 @@ import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Set;
 
+import static gg.solarmc.loader.schema.tables.KitpvpKitsCooldowns.KITPVP_KITS_COOLDOWNS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsIds.KITPVP_KITS_IDS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsOwnership.KITPVP_KITS_OWNERSHIP;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsPackedContents.KITPVP_KITS_PACKED_CONTENTS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -133,6 +142,41 @@ public class KitPvpIT {
         assertFalse(kitOwnership.isChanged());
     }
 
+    @Test
+    public void ownsKitAfterAddAndRemove() {
+        KitPvp data = dataCenterInfo.loginNewRandomUser().getData(KitPvpKey.INSTANCE);
+        Kit kit = newKit("MyOwnedKit", Set.of());
+        assertFalse(dataCenterInfo.transact((tx) -> data.ownsKit(tx, kit)));
+        addKitAssumeSuccess(data, kit);
+        assertTrue(dataCenterInfo.transact((tx) -> data.ownsKit(tx, kit)));
+        assertEquals(Set.of(kit), dataCenterInfo.transact(data::getKits));
+        dataCenterInfo.runTransact((tx) -> data.removeKit(tx, kit));
+        assertFalse(dataCenterInfo.transact((tx) -> data.ownsKit(tx, kit)));
+        assertEquals(Set.of(), dataCenterInfo.transact(data::getKits));
+    }
+
+    @Test
+    public void addKitToUsers() {
+        OnlineSolarPlayer user1 = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer user2 = dataCenterInfo.loginNewRandomUser();
+        KitPvp data1 = user1.getData(KitPvpKey.INSTANCE);
+        KitPvp data2 = user2.getData(KitPvpKey.INSTANCE);
+        Kit kit = newKit("MyGrantedKit", Set.of());
+        addKitAssumeSuccess(data1, kit);
+
+        int addedCount = dataCenterInfo.transact((tx) -> {
+            return manager.addKitToUsers(tx, kit, new int[] {user1.getUserId(), user2.getUserId()});
+        });
+        assertEquals(1, addedCount);
+        assertTrue(dataCenterInfo.transact((tx) -> data1.ownsKit(tx, kit)));
+        assertTrue(dataCenterInfo.transact((tx) -> data2.ownsKit(tx, kit)));
+        int storedCount = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .fetchCount(KITPVP_KITS_OWNERSHIP, KITPVP_KITS_OWNERSHIP.KIT_ID.eq(kit.getId()));
+        });
+        assertEquals(2, storedCount);
+    }
+
     private void mockItemSerialization(KitItem item, byte[] data) throws IOException {
         doAnswer((invocation) -> {
             var output = invocation.getArgument(1, OutputStream.class);
@@ -156,12 +200,38 @@ public class KitPvpIT {
         KitPvp userData = dataCenterInfo.loginNewRandomUser().getData(KitPvpKey.INSTANCE);
         addKitAssumeSuccess(userData, originalKit);
 
+        manager.clearCaches();
         Set<Kit> kits = dataCenterInfo.transact(userData::getKits);
         assertEquals(1, kits.size(), () -> "" + kits);
         Kit reloadedKit = kits.iterator().next();
         assertEquals(contents, reloadedKit.getContents());
     }
 
+    @Test
+    public void serializeCompressibleItems(@Mock KitItem item1, @Mock KitItem item2) throws IOException {
+        // Large enough and repetitive enough to be stored compressed
+        byte[] item1Data = new byte[2048];
+        byte[] item2Data = new byte[1024];
+        Arrays.fill(item1Data, (byte) 1);
+        Arrays.fill(item2Data, (byte) 2);
+        mockItemSerialization(item1, item1Data);
+        mockItemSerialization(item2, item2Data);
+        Set<ItemInSlot> contents = Set.of(new ItemInSlot(0, item1), new ItemInSlot(40, item2));
+
+        Kit originalKit = newKit("MyCompressedKit", contents);
+        manager.clearCaches();
+        Kit reloadedKit = dataCenterInfo.transact((tx) -> manager.getKitById(tx, originalKit.getId())).orElseThrow();
+        assertEquals(contents, reloadedKit.getContents());
+        int storedLength = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(DSL.length(KITPVP_KITS_PACKED_CONTENTS.CONTENTS))
+                    .from(KITPVP_KITS_PACKED_CONTENTS)
+                    .where(KITPVP_KITS_PACKED_CONTENTS.KIT_ID.eq(originalKit.getId()))
+                    .fetchSingle().value1();
+        });
+        assertTrue(storedLength < item1Data.length, () -> "Stored length " + storedLength);
+    }
+
     private void assertKitExistence(
             @SuppressWarnings("OptionalUsedAsFieldOrParameterType") Optional<Kit> expected, Kit kit) {
         assertEquals(expected, dataCenterInfo.transact((tx) -> manager.getKitById(tx, kit.getId())));
@@ -195,6 +265,33 @@ public class KitPvpIT {
                 dataCenterInfo.transact((tx) -> manager.getKitByName(tx, "MyKitCASE")).map(Kit::getName));
     }
 
+    @Test
+    public void getAllKits() {
+        Kit kit1 = newKit("MyFirstKit", Set.of());
+        Kit kit2 = newKit("MySecondKit", Set.of());
+
+        assertEquals(Set.of(kit1, kit2), dataCenterInfo.transact(manager::getAllKits));
+        manager.clearCaches();
+        assertEquals(Set.of(kit1, kit2), dataCenterInfo.transact(manager::getAllKits));
+    }
+
+    @Test
+    public void refreshCachesSeesKitsCreatedElsewhere() {
+        int kitId = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .insertInto(KITPVP_KITS_IDS)
+                    .columns(KITPVP_KITS_IDS.KIT_NAME, KITPVP_KITS_IDS.KIT_COOLDOWN)
+                    .values("KitFromElsewhere", 0)
+                    .returningResult(KITPVP_KITS_IDS.KIT_ID)
+                    .fetchSingle().value1();
+        });
+        assertEquals(Optional.empty(), dataCenterInfo.transact((tx) -> manager.getKitById(tx, kitId)));
+        dataCenterInfo.icarus().refreshCaches().join();
+        assertEquals(
+                Optional.of("KitFromElsewhere"),
+                dataCenterInfo.transact((tx) -> manager.getKitById(tx, kitId)).map(Kit::getName));
+    }
+
     @Test
     public void deleteKit() {
         Kit kit = newKit("MyKitById", Set.of());
@@ -206,6 +303,26 @@ public class KitPvpIT {
         assertKitNotExists(kit);
     }
 
+    @Test
+    public void createKitRolledBack() {
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            manager.createKit(tx, new KitBuilder().name("RolledBackKit").contents(Set.of()).build());
+            throw new IllegalStateException("Abort");
+        }));
+        assertEquals(Optional.empty(), dataCenterInfo.transact((tx) -> manager.getKitByName(tx, "RolledBackKit")));
+    }
+
+    @Test
+    public void deleteKitRolledBack() {
+        Kit kit = newKit("KeptKit", Set.of());
+
+        assertThrows(Exception.class, () -> dataCenterInfo.runTransact((tx) -> {
+            assertTrue(manager.deleteKit(tx, kit));
+            throw new IllegalStateException("Abort");
+        }));
+        assertKitExists(kit);
+    }
+
     @Test
     public void deleteKitById() {
         Kit kit = newKit("MyKitById", Set.of());
@@ -255,4 +372,46 @@ public class KitPvpIT {
                 Optional.of(new RemainingCooldown(Duration.ofHours(22L), threeAugust)),
                 dataCenterInfo.transact((tx) -> data.attemptToUseKit(tx, kit)));
     }
+
+    @Test
+    public void kitCooldownWrittenAtLogout() {
+        Instant oneAugust = Instant.parse("2021-08-01T05:00:00+00:00");
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        KitPvp data = user.getData(KitPvpKey.INSTANCE);
+        Kit kit = newKit(new KitBuilder()
+                .name("KitWithCooldown").contents(Set.of()).cooldown(Duration.ofDays(1L)).build());
+
+        when(clock.instant()).thenReturn(oneAugust);
+        assertEquals(Optional.empty(), dataCenterInfo.transact((tx) -> data.attemptToUseKit(tx, kit)));
+        dataCenterInfo.logoutUser(user);
+        Long lastUsed = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(KITPVP_KITS_COOLDOWNS.LAST_USED)
+                    .from(KITPVP_KITS_COOLDOWNS)
+                    .where(KITPVP_KITS_COOLDOWNS.USER_ID.eq(user.getUserId()))
+                    .and(KITPVP_KITS_COOLDOWNS.KIT_ID.eq(kit.getId()))
+                    .fetchOne(KITPVP_KITS_COOLDOWNS.LAST_USED);
+        });
+        assertEquals(oneAugust.getEpochSecond(), lastUsed);
+    }
+
+    @Test
+    public void kitCooldownKeptAcrossRelogin() {
+        Instant oneAugust = Instant.parse("2021-08-01T05:00:00+00:00");
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        Kit kit = newKit(new KitBuilder()
+                .name("KitWithCooldown").contents(Set.of()).cooldown(Duration.ofDays(1L)).build());
+
+        when(clock.instant())
+                .thenReturn(oneAugust)
+                .thenReturn(oneAugust.plusSeconds(3600L));
+        KitPvp data = user.getData(KitPvpKey.INSTANCE);
+        assertEquals(Optional.empty(), dataCenterInfo.transact((tx) -> data.attemptToUseKit(tx, kit)));
+        // As if switching to another server, which loads the user anew
+        dataCenterInfo.logoutUser(user);
+        KitPvp reloggedData = dataCenterInfo.reloginUser(user).getData(KitPvpKey.INSTANCE);
+        assertEquals(
+                Optional.of(new RemainingCooldown(Duration.ofHours(23L), oneAugust.plus(Duration.ofDays(1L)))),
+                dataCenterInfo.transact((tx) -> reloggedData.attemptToUseKit(tx, kit)));
+    }
 }
@@ -0,0 +1,123 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.KitPvpLeaderboard;
+import gg.solarmc.loader.kitpvp.KitPvpManager;
+import gg.solarmc.loader.kitpvp.LeaderboardEntry;
+import gg.solarmc.loader.kitpvp.LeaderboardPage;
+import gg.solarmc.loader.kitpvp.OnlineKitPvp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpLeaderboardIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private KitPvpManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials,
+                              @Mock ItemSerializer itemSerializer) throws IOException {
+        // Small enough that later pages are queried
+        Files.writeString(folder.resolve("kitpvp.yml"), """
+                leaderboard-cache-size: 3
+                """);
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(KitPvpKey.INSTANCE);
+    }
+
+    private OnlineSolarPlayer userWith(int kills, int deaths) {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        OnlineKitPvp data = user.getData(KitPvpKey.INSTANCE);
+        dataCenterInfo.runTransact((tx) -> {
+            if (kills > 0) {
+                data.addKills(tx, kills);
+            }
+            if (deaths > 0) {
+                data.addDeaths(tx, deaths);
+            }
+        });
+        return user;
+    }
+
+    private List<List<Integer>> pagesOfUserIds(KitPvpLeaderboard leaderboard, int countPerPage) {
+        return dataCenterInfo.transact((tx) -> {
+            List<List<Integer>> pages = new ArrayList<>();
+            Optional<LeaderboardPage> page = manager.listLeaderboard(tx, leaderboard, countPerPage);
+            while (page.isPresent()) {
+                pages.add(page.get().itemsOnPage().stream().map(LeaderboardEntry::userId).toList());
+                page = page.get().nextPage(tx);
+            }
+            return pages;
+        });
+    }
+
+    @Test
+    public void noEntries() {
+        assertEquals(List.of(), pagesOfUserIds(KitPvpLeaderboard.KILLS, 2));
+    }
+
+    @Test
+    public void killsAcrossCachedAndQueriedPages() {
+        OnlineSolarPlayer user1 = userWith(10, 0);
+        OnlineSolarPlayer user2 = userWith(50, 0);
+        OnlineSolarPlayer user3 = userWith(30, 0);
+        OnlineSolarPlayer user4 = userWith(20, 0);
+        OnlineSolarPlayer user5 = userWith(40, 0);
+        assertEquals(List.of(
+                List.of(user2.getUserId(), user5.getUserId()),
+                List.of(user3.getUserId(), user4.getUserId()),
+                List.of(user1.getUserId())
+        ), pagesOfUserIds(KitPvpLeaderboard.KILLS, 2));
+    }
+
+    @Test
+    public void tiesBrokenByUserIdDescending() {
+        OnlineSolarPlayer user1 = userWith(5, 0);
+        OnlineSolarPlayer user2 = userWith(5, 0);
+        OnlineSolarPlayer user3 = userWith(5, 0);
+        OnlineSolarPlayer user4 = userWith(5, 0);
+        List<Integer> expected = List.of(user1.getUserId(), user2.getUserId(), user3.getUserId(), user4.getUserId())
+                .stream().sorted((id1, id2) -> Integer.compare(id2, id1)).toList();
+        assertEquals(List.of(expected.subList(0, 3), expected.subList(3, 4)),
+                pagesOfUserIds(KitPvpLeaderboard.KILLS, 3));
+    }
+
+    @Test
+    public void killDeathRatio() {
+        OnlineSolarPlayer user1 = userWith(10, 4);
+        OnlineSolarPlayer user2 = userWith(3, 0);
+        List<LeaderboardEntry> entries = dataCenterInfo.transact((tx) -> {
+            return manager.listLeaderboard(tx, KitPvpLeaderboard.KILL_DEATH_RATIO, 5).orElseThrow().itemsOnPage();
+        });
+        assertEquals(List.of(user2.getUserId(), user1.getUserId()),
+                entries.stream().map(LeaderboardEntry::userId).toList());
+        assertTrue(new BigDecimal("3").compareTo(entries.get(0).value()) == 0);
+        assertTrue(new BigDecimal("2.5").compareTo(entries.get(1).value()) == 0);
+    }
+}
@@ -0,0 +1,166 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DataGenerator;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.ItemInSlot;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.Kit;
+import gg.solarmc.loader.kitpvp.KitItem;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.KitPvpManager;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static gg.solarmc.loader.schema.tables.KitpvpKitsContents.KITPVP_KITS_CONTENTS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsIds.KITPVP_KITS_IDS;
+import static gg.solarmc.loader.schema.tables.KitpvpKitsPackedContents.KITPVP_KITS_PACKED_CONTENTS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the conversion statements of the packed kit contents migration against rows
+ * in the old one-row-per-slot layout, then decodes them through the manager
+ */
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpPackedContentsMigrationIT {
+
+    private static final String MIGRATION = "sql-schema/V14__Kitpvp_packed_kit_contents.sql";
+
+    private final ItemSerializer itemSerializer;
+    private DataCenterInfo dataCenterInfo;
+    private KitPvpManager manager;
+
+    public KitPvpPackedContentsMigrationIT(@Mock ItemSerializer itemSerializer) {
+        this.itemSerializer = itemSerializer;
+    }
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials) {
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(KitPvpKey.INSTANCE);
+    }
+
+    private void mockItemDeserialization(KitItem item, byte[] data) throws IOException {
+        when(itemSerializer.deserialize(argThat(new InputStreamMatcher(data))))
+                .thenAnswer((i) -> item);
+    }
+
+    private int insertOldKit(String name) {
+        return dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .insertInto(KITPVP_KITS_IDS)
+                    .columns(KITPVP_KITS_IDS.KIT_NAME, KITPVP_KITS_IDS.KIT_COOLDOWN)
+                    .values(name, 0)
+                    .returningResult(KITPVP_KITS_IDS.KIT_ID)
+                    .fetchOne().value1();
+        });
+    }
+
+    private void insertOldItem(int kitId, int slot, byte[] item) {
+        dataCenterInfo.runTransact((tx) -> {
+            tx.getProperty(DSLContext.class)
+                    .insertInto(KITPVP_KITS_CONTENTS)
+                    .columns(KITPVP_KITS_CONTENTS.KIT_ID, KITPVP_KITS_CONTENTS.SLOT, KITPVP_KITS_CONTENTS.ITEM)
+                    .values(kitId, (byte) slot, item)
+                    .execute();
+        });
+    }
+
+    private static List<String> conversionStatements() throws IOException {
+        String migration;
+        try (InputStream input = Objects.requireNonNull(
+                KitPvpManager.class.getClassLoader().getResourceAsStream(MIGRATION), MIGRATION)) {
+            migration = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String withoutComments = migration.lines()
+                .filter((line) -> !line.strip().startsWith("--"))
+                .collect(Collectors.joining("\n"));
+        // Only the conversion is run; the packed table already exists after launch
+        return Arrays.stream(withoutComments.split(";"))
+                .map(String::strip)
+                .filter((statement) -> statement.startsWith("SET SESSION")
+                        || statement.startsWith("INSERT INTO kitpvp_kits_packed_contents"))
+                .toList();
+    }
+
+    private void runConversion() throws IOException {
+        List<String> statements = conversionStatements();
+        assertEquals(2, statements.size(), () -> "" + statements);
+        dataCenterInfo.runTransact((tx) -> {
+            DSLContext context = tx.getProperty(DSLContext.class);
+            context.deleteFrom(KITPVP_KITS_PACKED_CONTENTS).execute();
+            for (String statement : statements) {
+                context.execute(statement);
+            }
+        });
+        manager.clearCaches();
+    }
+
+    @Test
+    public void convertOldContents(@Mock KitItem item1, @Mock KitItem item2, @Mock KitItem item3)
+            throws IOException {
+        byte[] item1Data = DataGenerator.randomBytes(1, 15);
+        byte[] item2Data = DataGenerator.randomBytes(1, 15);
+        byte[] item3Data = new byte[300]; // Longer than one byte can count
+        Arrays.fill(item3Data, (byte) 3);
+        mockItemDeserialization(item1, item1Data);
+        mockItemDeserialization(item2, item2Data);
+        mockItemDeserialization(item3, item3Data);
+
+        int kitId = insertOldKit("OldItemKit");
+        insertOldItem(kitId, 40, item3Data);
+        insertOldItem(kitId, 0, item1Data);
+        insertOldItem(kitId, 7, item2Data);
+        int emptyKitId = insertOldKit("OldEmptyKit");
+        runConversion();
+
+        Set<ItemInSlot> expected = Set.of(
+                new ItemInSlot(0, item1), new ItemInSlot(7, item2), new ItemInSlot(40, item3));
+        Kit kit = dataCenterInfo.transact((tx) -> manager.getKitByName(tx, "OldItemKit")).orElseThrow();
+        assertEquals(kitId, kit.getId());
+        assertEquals(expected, kit.getContents());
+        Kit emptyKit = dataCenterInfo.transact((tx) -> manager.getKitById(tx, emptyKitId)).orElseThrow();
+        assertEquals(Set.of(), emptyKit.getContents());
+    }
+
+    @Test
+    public void oldContentsAreKept() throws IOException {
+        byte[] itemData = DataGenerator.randomBytes(1, 15);
+        int kitId = insertOldKit("KeptKit");
+        insertOldItem(kitId, 2, itemData);
+        runConversion();
+
+        byte[] keptData = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(KITPVP_KITS_CONTENTS.ITEM)
+                    .from(KITPVP_KITS_CONTENTS)
+                    .where(KITPVP_KITS_CONTENTS.KIT_ID.eq(kitId))
+                    .fetchSingle().value1();
+        });
+        assertEquals(Arrays.toString(itemData), Arrays.toString(keptData));
+    }
+}
@@ -0,0 +1,155 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.BountyCurrency;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.KitPvpManager;
+import gg.solarmc.loader.kitpvp.OnlineKitPvp;
+import gg.solarmc.loader.kitpvp.RecordedKill;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+import space.arim.omnibus.util.concurrent.CentralisedFuture;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gg.solarmc.loader.schema.tables.KitpvpBountyLogs.KITPVP_BOUNTY_LOGS;
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpRecordKillIT {
+
+    private DataCenterInfo dataCenterInfo;
+    private KitPvpManager manager;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials,
+                              @Mock ItemSerializer itemSerializer) {
+        Omnibus omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        manager = dataCenterInfo.dataCenter().getDataManager(KitPvpKey.INSTANCE);
+    }
+
+    private int storedStatistic(OnlineSolarPlayer user, Field<Integer> statistic) {
+        return dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(statistic)
+                    .from(KITPVP_STATISTICS)
+                    .where(KITPVP_STATISTICS.USER_ID.eq(user.getUserId()))
+                    .fetchSingle().value1();
+        });
+    }
+
+    @Test
+    public void recordKill() {
+        OnlineSolarPlayer killer = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer victim = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer assister = dataCenterInfo.loginNewRandomUser();
+        OnlineKitPvp killerData = killer.getData(KitPvpKey.INSTANCE);
+        OnlineKitPvp victimData = victim.getData(KitPvpKey.INSTANCE);
+        OnlineKitPvp assisterData = assister.getData(KitPvpKey.INSTANCE);
+        dataCenterInfo.runTransact((tx) -> {
+            killerData.addKillstreaks(tx, 2);
+            victimData.addKillstreaks(tx, 3);
+            victimData.addBounty(tx, BountyCurrency.CREDITS.createAmount(BigDecimal.valueOf(25)));
+            victimData.addBounty(tx, BountyCurrency.PLAIN_ECO.createAmount(BigDecimal.valueOf(40)));
+        });
+
+        RecordedKill recordedKill = dataCenterInfo.transact((tx) -> {
+            return manager.recordKill(tx, killer, victim, List.of(assister), 10, Set.of(BountyCurrency.CREDITS));
+        });
+        assertEquals(1, recordedKill.killerKills());
+        assertEquals(3, recordedKill.killerCurrentKillstreak());
+        assertEquals(3, recordedKill.killerHighestKillstreak());
+        assertEquals(10, recordedKill.killerExperience());
+        assertEquals(1, recordedKill.victimDeaths());
+        assertEquals(3, recordedKill.victimPreviousKillstreak());
+        assertEquals(Map.of(assister.getUserId(), 1), recordedKill.assisterAssists());
+        assertEquals(BountyCurrency.CREDITS.createAmount(BigDecimal.valueOf(25)),
+                recordedKill.claimedBounty(BountyCurrency.CREDITS));
+        assertEquals(BountyCurrency.PLAIN_ECO.zero(), recordedKill.claimedBounty(BountyCurrency.PLAIN_ECO));
+
+        assertEquals(1, killerData.currentKills());
+        assertEquals(3, killerData.currentCurrentKillstreaks());
+        assertEquals(10, killerData.currentExperience());
+        assertEquals(1, victimData.currentDeaths());
+        assertEquals(0, victimData.currentCurrentKillstreaks());
+        assertEquals(3, victimData.currentHighestKillstreaks());
+        assertEquals(0, victimData.currentBounty(BountyCurrency.CREDITS).compareTo(BigDecimal.ZERO));
+        assertEquals(0, victimData.currentBounty(BountyCurrency.PLAIN_ECO).compareTo(BigDecimal.valueOf(40)));
+        assertEquals(1, assisterData.currentAssists());
+
+        assertEquals(1, storedStatistic(killer, KITPVP_STATISTICS.KILLS));
+        assertEquals(0, storedStatistic(victim, KITPVP_STATISTICS.CURRENT_KILLSTREAK));
+        assertEquals(1, storedStatistic(assister, KITPVP_STATISTICS.ASSISTS));
+        int bountyLogs = dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .fetchCount(KITPVP_BOUNTY_LOGS, KITPVP_BOUNTY_LOGS.VICTIM_ID.eq(victim.getUserId()));
+        });
+        assertEquals(1, bountyLogs);
+    }
+
+    @Test
+    public void recordKillWithoutAssistersOrBounties() {
+        OnlineSolarPlayer killer = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer victim = dataCenterInfo.loginNewRandomUser();
+        RecordedKill recordedKill = dataCenterInfo.transact((tx) -> {
+            return manager.recordKill(tx, killer, victim, List.of(), 0, Set.of(BountyCurrency.values()));
+        });
+        assertEquals(1, recordedKill.killerKills());
+        assertEquals(0, recordedKill.killerExperience());
+        assertEquals(0, recordedKill.victimPreviousKillstreak());
+        assertEquals(Map.of(), recordedKill.assisterAssists());
+        assertEquals(BountyCurrency.CREDITS.zero(), recordedKill.claimedBounty(BountyCurrency.CREDITS));
+    }
+
+    @Test
+    public void recordKillRejectsSelfKill() {
+        OnlineSolarPlayer user = dataCenterInfo.loginNewRandomUser();
+        dataCenterInfo.runTransact((tx) -> {
+            assertThrows(IllegalArgumentException.class,
+                    () -> manager.recordKill(tx, user, user, List.of(), 0, Set.of()));
+        });
+    }
+
+    @Test
+    public void simultaneousTradesDoNotDeadlock() {
+        OnlineSolarPlayer first = dataCenterInfo.loginNewRandomUser();
+        OnlineSolarPlayer second = dataCenterInfo.loginNewRandomUser();
+        int trades = 25;
+        for (int n = 0; n < trades; n++) {
+            // Each kill has the other's killer as its victim
+            CentralisedFuture<RecordedKill> firstKill = dataCenterInfo.dataCenter().transact((tx) -> {
+                return manager.recordKill(tx, first, second, List.of(), 1, Set.of());
+            });
+            CentralisedFuture<RecordedKill> secondKill = dataCenterInfo.dataCenter().transact((tx) -> {
+                return manager.recordKill(tx, second, first, List.of(), 1, Set.of());
+            });
+            firstKill.join();
+            secondKill.join();
+        }
+        assertEquals(trades, storedStatistic(first, KITPVP_STATISTICS.KILLS));
+        assertEquals(trades, storedStatistic(first, KITPVP_STATISTICS.DEATHS));
+        assertEquals(trades, storedStatistic(second, KITPVP_STATISTICS.KILLS));
+        assertEquals(trades, storedStatistic(second, KITPVP_STATISTICS.DEATHS));
+    }
+}
@@ -0,0 +1,124 @@
+package gg.solarmc.loader.kitpvp.test;
+
+import gg.solarmc.loader.OnlineSolarPlayer;
+import gg.solarmc.loader.impl.SolarDataConfig;
+import gg.solarmc.loader.impl.test.extension.DataCenterInfo;
+import gg.solarmc.loader.impl.test.extension.DatabaseExtension;
+import gg.solarmc.loader.kitpvp.ItemSerializer;
+import gg.solarmc.loader.kitpvp.KitPvpKey;
+import gg.solarmc.loader.kitpvp.OnlineKitPvp;
+import gg.solarmc.loader.kitpvp.StatisticResult;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import space.arim.omnibus.DefaultOmnibus;
+import space.arim.omnibus.Omnibus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gg.solarmc.loader.schema.tables.KitpvpStatistics.KITPVP_STATISTICS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(DatabaseExtension.class)
+@ExtendWith(MockitoExtension.class)
+public class KitPvpStatisticAggregationIT {
+
+    private Path folder;
+    private Omnibus omnibus;
+    private DataCenterInfo dataCenterInfo;
+    private OnlineSolarPlayer user;
+    private OnlineKitPvp data;
+
+    @BeforeEach
+    public void setDataCenter(@TempDir Path folder, SolarDataConfig.DatabaseCredentials credentials,
+                              @Mock ItemSerializer itemSerializer) throws IOException {
+        this.folder = folder;
+        // Flush only when the user logs out
+        Files.writeString(folder.resolve("kitpvp.yml"), """
+                enable-statistic-aggregation: true
+                statistic-flush-interval-millis: 600000
+                """);
+        omnibus = new DefaultOmnibus();
+        omnibus.getRegistry().register(ItemSerializer.class, (byte) 0, itemSerializer, "Serializer");
+        dataCenterInfo = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        user = dataCenterInfo.loginNewRandomUser();
+        data = user.getData(KitPvpKey.INSTANCE);
+    }
+
+    private int storedStatistic(Field<Integer> statistic) {
+        return storedStatistic(dataCenterInfo, statistic);
+    }
+
+    private int storedStatistic(DataCenterInfo dataCenterInfo, Field<Integer> statistic) {
+        return dataCenterInfo.transact((tx) -> {
+            return tx.getProperty(DSLContext.class)
+                    .select(statistic)
+                    .from(KITPVP_STATISTICS)
+                    .where(KITPVP_STATISTICS.USER_ID.eq(user.getUserId()))
+                    .fetchSingle().value1();
+        });
+    }
+
+    @Test
+    public void aggregateThenFlushAtLogout() {
+        StatisticResult kills = dataCenterInfo.transact((tx) -> {
+            data.addKills(tx, 2);
+            return data.addKills(tx, 3);
+        });
+        assertEquals(5, kills.newValue());
+        assertEquals(2, kills.oldValue());
+        dataCenterInfo.runTransact((tx) -> {
+            data.addDeaths(tx, 1);
+            data.addAssists(tx, 4);
+            data.addExperience(tx, 100);
+        });
+        assertEquals(5, data.currentKills());
+        assertEquals(1, data.currentDeaths());
+        assertEquals(4, data.currentAssists());
+        assertEquals(100, data.currentExperience());
+        assertEquals(0, storedStatistic(KITPVP_STATISTICS.KILLS));
+
+        dataCenterInfo.logoutUser(user);
+        assertEquals(5, storedStatistic(KITPVP_STATISTICS.KILLS));
+        assertEquals(1, storedStatistic(KITPVP_STATISTICS.DEATHS));
+        assertEquals(4, storedStatistic(KITPVP_STATISTICS.ASSISTS));
+        assertEquals(100, storedStatistic(KITPVP_STATISTICS.EXPERIENCE));
+        assertEquals(5, data.currentKills());
+    }
+
+    @Test
+    public void rolledBackAdditionIsDiscarded() {
+        dataCenterInfo.runTransact((tx) -> {
+            data.addKills(tx, 1);
+        });
+        assertThrows(RuntimeException.class, () -> dataCenterInfo.runTransact((tx) -> {
+            data.addKills(tx, 10);
+            throw new IllegalStateException("Rollback");
+        }));
+        assertEquals(1, data.currentKills());
+        dataCenterInfo.logoutUser(user);
+        assertEquals(1, storedStatistic(KITPVP_STATISTICS.KILLS));
+    }
+
+    @Test
+    public void closeWritesPending(SolarDataConfig.DatabaseCredentials credentials) {
+        dataCenterInfo.runTransact((tx) -> {
+            data.addKills(tx, 3);
+        });
+        dataCenterInfo.close();
+        DataCenterInfo restarted = DataCenterInfo.builder(folder, credentials).omnibus(omnibus).build();
+        try {
+            assertEquals(3, storedStatistic(restarted, KITPVP_STATISTICS.KILLS));
+        } finally {
+            restarted.close();
+        }
+    }
+}